@@ -0,0 +1,26 @@
+package benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of target/benchmarks.jar.
+ * Accepts the regular JMH command line (e.g. "HotPath -p ticketRows=1000000") and always
+ * writes machine-readable results to target/jmh-result.json (override with -Djmh.result)
+ * so runs from different versions can be diffed.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+                .parent(cli)
+                .resultFormat(ResultFormatType.JSON)
+                .result(System.getProperty("jmh.result", "target/jmh-result.json"))
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,64 @@
+package benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * End-to-end throughput of MergedRouteProcessor and TripGenerator over synthetic ticket files.
+ * Each fork gets a scratch copy of csv_output (from -Ddatafakker.source, default ".") and
+ * points the generators at it through -Ddatafakker.dir before they are loaded; the build
+ * cache is off so every iteration does the full work.
+ * Size the input with -p ticketRows=...; divide the score by ticketRows for per-row cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EndToEndBenchmarks {
+
+    @Param({ "10000", "100000" })
+    public int ticketRows;
+
+    @Param({ "42" })
+    public long seed;
+
+    private Path dataDir;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Path source = Paths.get(System.getProperty("datafakker.source", "."));
+        dataDir = TicketFixtures.create(source, ticketRows, seed);
+        // Must be set before TripGenerator / MergedRouteProcessor are class-initialised
+        System.setProperty("datafakker.dir", dataDir.toString());
+        // Time the stages themselves, not the "inputs unchanged" early return from the second iteration on
+        System.setProperty("build.cache", "false");
+    }
+
+    @Setup(Level.Iteration)
+    public void resetOutputs() throws Exception {
+        // Start every iteration without a previous trip.csv so ID reuse doesn't skew results
+        Files.deleteIfExists(dataDir.resolve("csv_output/trip.csv"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        TicketFixtures.delete(dataDir);
+    }
+
+    @Benchmark
+    public void mergedRouteProcessor() throws Throwable {
+        Object processor = Hooks.newInstance("MergedRouteProcessor");
+        Hooks.invoke(processor, "processRoutes");
+    }
+
+    @Benchmark
+    public void tripGenerator() throws Throwable {
+        Object generator = Hooks.newInstance("TripGenerator");
+        Hooks.invoke(generator, "generateTrips");
+    }
+}
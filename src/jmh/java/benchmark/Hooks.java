@@ -0,0 +1,33 @@
+package benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * Reflection access to the generators' private hot paths.
+ * TripGenerator and MergedRouteProcessor live in the default package, which can't be
+ * imported from a named package, so benchmarks resolve them by name.
+ */
+final class Hooks {
+
+    private Hooks() {
+    }
+
+    static Object newInstance(String className) throws Exception {
+        Constructor<?> constructor = Class.forName(className).getDeclaredConstructor();
+        constructor.setAccessible(true);
+        return constructor.newInstance();
+    }
+
+    static MethodHandle method(String className, String name, Class<?>... parameterTypes) throws Exception {
+        Method method = Class.forName(className).getDeclaredMethod(name, parameterTypes);
+        method.setAccessible(true);
+        return MethodHandles.lookup().unreflect(method);
+    }
+
+    static void invoke(Object target, String name) throws Throwable {
+        method(target.getClass().getName(), name).invoke(target);
+    }
+}
@@ -0,0 +1,102 @@
+package benchmark;
+
+import csvgenerator.DeterministicIds;
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Micro-benchmarks for the per-row hot paths of the generators.
+ * Reference data (route.csv) is read from -Ddatafakker.dir, default: the working directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotPathBenchmarks {
+
+    private static final String[] ADDRESSES = {
+            "Nam Kỳ Khởi Nghĩa, Thắng Tam, Vũng Tàu",
+            "43 Lý Nam Đế, phường Trà Bá, Pleiku",
+            "292 Đinh Bộ Lĩnh, Phường 26, Quận Bình Thạnh, Thành phố Hồ Chí Minh",
+            "Quốc lộ 1A, xã Hòa Phước, huyện Hòa Vang, Đà Nẵng"
+    };
+
+    private static final String[] CSV_LINES = {
+            "1540,1541,STANDARD_BUS_NORMAL,1.0,34A-44444,Hyundai,Standard bus route 6,ACTIVE,2025-10-07 18:44:51,,false,,",
+            "1500,\"Do Van G, Jr\",33,MALE,0945678901,ACTIVE,2025-10-07 18:44:51,,false,,"
+    };
+
+    private static final String[] ROUTE_INFOS = {
+            "Bến xe Miền Đông đi Bến xe Đà Lạt",
+            "Quận 1 - Hồ Chí Minh - Thành phố Đà Lạt - Lâm Đồng",
+            "Sài Gòn đi Bến xe trung tâm Đà Nẵng"
+    };
+
+    private Object addressProcessor;
+    private Object tripGenerator;
+    private MethodHandle normalizeText;
+    private MethodHandle parseCsvLine;
+    private MethodHandle generateRouteCodeFromInfo;
+    private MethodHandle findMatchingRoute;
+
+    private String exactRouteCode;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable {
+        addressProcessor = Hooks.newInstance("csvgenerator.AddressProcessor");
+        tripGenerator = Hooks.newInstance("TripGenerator");
+        normalizeText = Hooks.method("csvgenerator.AddressProcessor", "normalizeText", String.class);
+        parseCsvLine = Hooks.method("TripGenerator", "parseCsvLine", String.class);
+        generateRouteCodeFromInfo = Hooks.method("TripGenerator", "generateRouteCodeFromInfo", String.class);
+        findMatchingRoute = Hooks.method("TripGenerator", "findMatchingRoute", String.class);
+
+        Hooks.invoke(tripGenerator, "loadRouteData");
+        exactRouteCode = (String) generateRouteCodeFromInfo.invoke(tripGenerator, ROUTE_INFOS[0]);
+    }
+
+    private int next(int length) {
+        cursor = (cursor + 1) % length;
+        return cursor;
+    }
+
+    @Benchmark
+    public Object normalizeText() throws Throwable {
+        return normalizeText.invoke(addressProcessor, ADDRESSES[next(ADDRESSES.length)]);
+    }
+
+    @Benchmark
+    public Object parseCsvLine() throws Throwable {
+        return parseCsvLine.invoke(tripGenerator, CSV_LINES[next(CSV_LINES.length)]);
+    }
+
+    @Benchmark
+    public Object generateRouteCodeFromInfo() throws Throwable {
+        return generateRouteCodeFromInfo.invoke(tripGenerator, ROUTE_INFOS[next(ROUTE_INFOS.length)]);
+    }
+
+    @Benchmark
+    public Object findMatchingRouteExact() throws Throwable {
+        return findMatchingRoute.invoke(tripGenerator, exactRouteCode);
+    }
+
+    /** Unknown code: exercises the linear partial-match scan over every route. */
+    @Benchmark
+    public Object findMatchingRouteMiss() throws Throwable {
+        return findMatchingRoute.invoke(tripGenerator, "ZZZZZZZZZZ_QQQQQQQQQQ");
+    }
+
+    @Benchmark
+    public long deterministicId() {
+        return DeterministicIds.fastId("seatcount:" + next(1000) + ":1");
+    }
+
+    /** -Dids.hash=sha256 compatibility path (former generateBigIntId). */
+    @Benchmark
+    public long deterministicIdSha256() {
+        return DeterministicIds.sha256Id("seatcount:" + next(1000) + ":1");
+    }
+}
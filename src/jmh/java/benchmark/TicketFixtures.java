@@ -0,0 +1,51 @@
+package benchmark;
+
+import csvgenerator.TicketSynthesizer;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.stream.Stream;
+
+/** Copies the reference tables into a scratch directory and synthesizes ticket files into it. */
+final class TicketFixtures {
+
+    private static final String[] REFERENCE_TABLES = {
+            "province.csv", "district.csv", "ward.csv", "address.csv", "station.csv", "route.csv",
+            "vehicle.csv", "driver.csv", "attendant.csv"
+    };
+
+    private TicketFixtures() {
+    }
+
+    /** Creates a scratch data directory with csv_output reference tables and ticket files. */
+    static Path create(Path sourceDir, int rows, long seed) throws Exception {
+        Path dir = Files.createTempDirectory("datafakker-bench");
+        Path csvDir = Files.createDirectories(dir.resolve("csv_output"));
+        for (String table : REFERENCE_TABLES) {
+            Path source = sourceDir.resolve("csv_output").resolve(table);
+            if (Files.exists(source)) {
+                Files.copy(source, csvDir.resolve(table), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Path centroids = sourceDir.resolve("province_centroids.csv");
+        if (Files.exists(centroids)) {
+            Files.copy(centroids, dir.resolve("province_centroids.csv"), StandardCopyOption.REPLACE_EXISTING);
+        }
+        writeTickets(dir, csvDir, rows, seed);
+        return dir;
+    }
+
+    static void delete(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir))
+            return;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private static void writeTickets(Path dir, Path csvDir, int rows, long seed) throws Exception {
+        TicketSynthesizer synthesizer = new TicketSynthesizer(csvDir, seed);
+        synthesizer.synthesize(dir.resolve(TicketSynthesizer.Format.BENXE.fileName), TicketSynthesizer.Format.BENXE, rows, 1);
+        synthesizer.synthesize(dir.resolve(TicketSynthesizer.Format.NHAXE.fileName), TicketSynthesizer.Format.NHAXE, rows, 1);
+    }
+}
@@ -1,8 +1,7 @@
+import csvgenerator.CsvFiles;
+import csvgenerator.DeterministicIds;
 import java.io.*;
-import java.math.BigInteger;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.security.MessageDigest;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -99,11 +98,11 @@ public class GenerateMissingCsvs {
         Path floorCsvPath = dir.resolve(FLOOR_CSV);
         Path seatCsvPath = dir.resolve(SEAT_CSV);
 
-        List<Map<String, String>> existingSeatMaps = Files.exists(seatMapCsvPath) ? readCsv(seatMapCsvPath)
+        List<Map<String, String>> existingSeatMaps = CsvFiles.exists(seatMapCsvPath) ? readCsv(seatMapCsvPath)
                 : new ArrayList<>();
-        List<Map<String, String>> existingFloors = Files.exists(floorCsvPath) ? readCsv(floorCsvPath)
+        List<Map<String, String>> existingFloors = CsvFiles.exists(floorCsvPath) ? readCsv(floorCsvPath)
                 : new ArrayList<>();
-        List<Map<String, String>> existingSeats = Files.exists(seatCsvPath) ? readCsv(seatCsvPath) : new ArrayList<>();
+        List<Map<String, String>> existingSeats = CsvFiles.exists(seatCsvPath) ? readCsv(seatCsvPath) : new ArrayList<>();
 
         // Index existing seat_map ids
         Set<String> existingSeatMapIds = existingSeatMaps.stream()
@@ -221,7 +220,7 @@ public class GenerateMissingCsvs {
         }
 
         // 4) Write/append CSVs
-        if (!Files.exists(seatMapCsvPath)) {
+        if (!CsvFiles.exists(seatMapCsvPath)) {
             writeCsv(seatMapCsvPath, headersSeatMap(), newSeatMaps);
             System.out.println("Created " + SEAT_MAP_CSV + " with " + newSeatMaps.size() + " rows.");
         } else if (!newSeatMaps.isEmpty()) {
@@ -231,7 +230,7 @@ public class GenerateMissingCsvs {
             System.out.println("No new seat maps to append.");
         }
 
-        if (!Files.exists(floorCsvPath)) {
+        if (!CsvFiles.exists(floorCsvPath)) {
             writeCsv(floorCsvPath, headersFloor(), newFloors);
             System.out.println("Created " + FLOOR_CSV + " with " + newFloors.size() + " rows.");
         } else if (!newFloors.isEmpty()) {
@@ -241,7 +240,7 @@ public class GenerateMissingCsvs {
             System.out.println("No new floors to append.");
         }
 
-        if (!Files.exists(seatCsvPath)) {
+        if (!CsvFiles.exists(seatCsvPath)) {
             writeCsv(seatCsvPath, headersSeat(), newSeats);
             System.out.println("Created " + SEAT_CSV + " with " + newSeats.size() + " rows.");
         } else if (!newSeats.isEmpty()) {
@@ -288,8 +287,7 @@ public class GenerateMissingCsvs {
     // Deterministic seat count per (seatMapId, floorNo) — keeps your prior
     // variability
     private static int deterministicSeatCount(String seatMapId, int floorNo) {
-        BigInteger seed = generateBigIntId("seatcount:" + seatMapId + ":" + floorNo);
-        long n = Math.abs(seed.longValue());
+        long n = DeterministicIds.id("seatcount:" + seatMapId + ":" + floorNo);
         int span = MAX_SEATS_PER_FLOOR - MIN_SEATS_PER_FLOOR + 1;
         return (int) (n % span) + MIN_SEATS_PER_FLOOR;
     }
@@ -300,25 +298,11 @@ public class GenerateMissingCsvs {
         return String.format("%c%02d", rowChar, col);
     }
 
-    // Only used for deterministic seat count, not for IDs anymore
-    private static BigInteger generateBigIntId(String input) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-            byte[] idBytes = new byte[8];
-            System.arraycopy(hash, 0, idBytes, 0, 8);
-            idBytes[0] &= 0x7F; // positive
-            return new BigInteger(1, idBytes);
-        } catch (Exception e) {
-            return BigInteger.valueOf(Math.abs((long) input.hashCode()));
-        }
-    }
-
     // ---- CSV I/O ----
 
     private static List<Map<String, String>> readCsv(Path path) throws IOException {
         List<Map<String, String>> rows = new ArrayList<>();
-        try (BufferedReader br = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+        try (BufferedReader br = CsvFiles.reader(path)) {
             String headerLine = br.readLine();
             if (headerLine == null)
                 return rows;
@@ -341,8 +325,7 @@ public class GenerateMissingCsvs {
     }
 
     private static void writeCsv(Path path, List<String> headers, List<Map<String, String>> rows) throws IOException {
-        try (BufferedWriter bw = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
-                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        try (BufferedWriter bw = CsvFiles.writer(path)) {
             bw.write(String.join(",", headers));
             bw.newLine();
             for (Map<String, String> r : rows) {
@@ -353,8 +336,7 @@ public class GenerateMissingCsvs {
     }
 
     private static void appendCsv(Path path, List<String> headers, List<Map<String, String>> rows) throws IOException {
-        try (BufferedWriter bw = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
-                StandardOpenOption.APPEND)) {
+        try (BufferedWriter bw = CsvFiles.appendWriter(path)) {
             for (Map<String, String> r : rows) {
                 bw.write(rowToCsv(headers, r));
                 bw.newLine();
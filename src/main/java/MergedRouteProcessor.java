@@ -1,34 +1,69 @@
+import csvgenerator.BuildCache;
+import csvgenerator.CsvFiles;
+import csvgenerator.DistanceEngine;
+import csvgenerator.FuzzyNameIndex;
+import csvgenerator.PipelineMetrics;
+import csvgenerator.PipelineMetrics.Stage;
+import csvgenerator.ReferenceSnapshot;
+import csvgenerator.RouteRecord;
+import csvgenerator.RowEncoder;
 import java.io.*;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 
 public class MergedRouteProcessor {
     
-    private static final String BENXE_INPUT_FILE = "tickets_benxe.csv";
-    private static final String NHAXE_INPUT_FILE = "tickets_nhaxe.csv";
-    private static final String STATION_FILE = "csv_output/station.csv";
-    private static final String ADDRESS_FILE = "csv_output/address.csv";
-    private static final String DISTRICT_FILE = "csv_output/district.csv";
-    private static final String PROVINCE_FILE = "csv_output/province.csv";
-    private static final String OUTPUT_DIR = "csv_output";
+    // Base directory for inputs and csv_output; override with -Ddatafakker.dir (benchmarks)
+    private static final String BASE_DIR = System.getProperty("datafakker.dir", ".");
+    private static final String BENXE_INPUT_FILE = BASE_DIR + "/tickets_benxe.csv";
+    private static final String NHAXE_INPUT_FILE = BASE_DIR + "/tickets_nhaxe.csv";
+    private static final String STATION_FILE = BASE_DIR + "/csv_output/station.csv";
+    private static final String ADDRESS_FILE = BASE_DIR + "/csv_output/address.csv";
+    private static final String DISTRICT_FILE = BASE_DIR + "/csv_output/district.csv";
+    private static final String PROVINCE_FILE = BASE_DIR + "/csv_output/province.csv";
+    private static final String WARD_FILE = BASE_DIR + "/csv_output/ward.csv";
+    private static final String CENTROID_FILE = BASE_DIR + "/province_centroids.csv";
+    private static final String OUTPUT_DIR = BASE_DIR + "/csv_output";
     private static final String ROUTE_OUTPUT = OUTPUT_DIR + "/route.csv";
+    private static final int CACHE_VERSION = 4; // bump when route matching or the output format changes
 
     private Map<String, Long> stationNameToId = new HashMap<>();
     private Map<String, Long> provinceToStationId = new HashMap<>();
     private Map<String, List<Long>> provinceToAllStationIds = new HashMap<>();
-    private Map<Long, String> addressIdToAddress = new HashMap<>();
-    private Map<Long, Long> stationIdToAddressId = new HashMap<>();
+    private String[] stationAddresses; // lower-cased street address per station.csv row, null if none
     
     // New mappings for district/province lookup (for nhaxe)
     private Map<String, Long> districtNameToId = new HashMap<>();
     private Map<String, Long> provinceNameToId = new HashMap<>();
-    private Map<Long, Long> districtToProvinceId = new HashMap<>();
-    private Random random = new Random();
+
+    // Reference tables, memory-mapped; id lookups go through findRow instead of boxed maps
+    private ReferenceSnapshot stations;
+    private ReferenceSnapshot addresses;
+    private ReferenceSnapshot districts;
+    private ReferenceSnapshot provinces;
+
+    // Last-resort lookups for names no exact or substring match resolves (typos, accent variants)
+    private static final String[] ADMIN_PREFIXES = {
+            "Thành phố", "Tỉnh", "Thị xã", "Thị trấn", "Huyện", "Quận", "Phường", "Xã" };
+    private FuzzyNameIndex stationNameIndex = new FuzzyNameIndex();
+    private FuzzyNameIndex stationProvinceIndex = new FuzzyNameIndex(ADMIN_PREFIXES);
+    private FuzzyNameIndex provinceIndex = new FuzzyNameIndex(ADMIN_PREFIXES);
+    private FuzzyNameIndex districtIndex = new FuzzyNameIndex(ADMIN_PREFIXES);
+    private Map<Long, FuzzyNameIndex> districtIndexByProvince = new HashMap<>();
+    private boolean fuzzy; // true while resolve() retries a lookup with the fuzzy indexes
+    // Retried names per finder (a benxe name and an nhaxe location may be the same string); null if still unresolved
+    private Map<String, Long> fuzzyNameResults = new HashMap<>();
+    private Map<String, Long> fuzzyLocationResults = new HashMap<>();
+    private PipelineMetrics metrics;
+    private DistanceEngine distances; // null when province_centroids.csv is missing
+    private List<RouteRecord> writtenRoutes;
     
     public static void main(String[] args) {
         try {
@@ -42,14 +77,41 @@ public class MergedRouteProcessor {
     }
     
     public void processRoutes() throws IOException {
+        try (PipelineMetrics runMetrics = new PipelineMetrics("route")) {
+            metrics = runMetrics;
+            runStages();
+        }
+    }
+
+    private void runStages() throws IOException {
         // Create output directory if it doesn't exist
         Files.createDirectories(Paths.get(OUTPUT_DIR));
+
+        // Skip when tickets and reference tables are unchanged since the last run
+        BuildCache cache = BuildCache.in(Paths.get(OUTPUT_DIR));
+        BuildCache.Fingerprint fingerprint = cache.fingerprint("MergedRouteProcessor")
+                .file(Paths.get(BENXE_INPUT_FILE))
+                .file(Paths.get(NHAXE_INPUT_FILE))
+                .file(Paths.get(STATION_FILE))
+                .file(Paths.get(ADDRESS_FILE))
+                .file(Paths.get(DISTRICT_FILE))
+                .file(Paths.get(PROVINCE_FILE))
+                .file(Paths.get(WARD_FILE))
+                .file(Paths.get(CENTROID_FILE))
+                .config("version", CACHE_VERSION)
+                .config("roadFactor", DistanceEngine.ROAD_FACTOR);
+        Path output = Paths.get(ROUTE_OUTPUT);
+        if (cache.isUpToDate(fingerprint, output)) {
+            System.out.println("MergedRouteProcessor: inputs unchanged, route.csv is up to date");
+            return;
+        }
         
         // Load all mappings
-        loadStationMappings();
         loadAddressMappings();
+        loadStationMappings();
         loadDistrictMappings();
         loadProvinceMappings();
+        loadDistanceEngine();
         
         // Process routes from both sources
         Set<RouteData> allRoutes = new HashSet<>();
@@ -70,124 +132,108 @@ public class MergedRouteProcessor {
         
         // Generate unified route CSV
         generateRouteCsv(allRoutes);
+
+        cache.record(fingerprint, output);
     }
     
     private void loadStationMappings() throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(STATION_FILE))) {
-            String line = reader.readLine(); // Skip header
-            
-            while ((line = reader.readLine()) != null) {
-                String[] fields = line.split(";");
-                if (fields.length >= 4) {
-                    Long stationId = Long.parseLong(fields[0]);
-                    String stationName = fields[1];
-                    String description = fields[3];
-                    
-                    // Map station name to ID
-                    stationNameToId.put(stationName, stationId);
-                    
-                    // Extract province from description "Station in [Province]"
-                    if (description.startsWith("Station in ")) {
-                        String province = description.substring("Station in ".length());
-                        // Use the first station found for each province as default destination
-                        if (!provinceToStationId.containsKey(province)) {
-                            provinceToStationId.put(province, stationId);
-                        }
-
-                        // Store all stations for each province
-                        provinceToAllStationIds.computeIfAbsent(province, k -> new ArrayList<>()).add(stationId);
-                    }
+        stations = ReferenceSnapshot.forCsv(Paths.get(STATION_FILE));
+        stationAddresses = new String[stations.rowCount()];
+        if (stations.columnCount() < 4)
+            return;
+
+        for (int row = 0; row < stations.rowCount(); row++) {
+            long stationId = stations.getLong(row, 0);
+            if (stationId == ReferenceSnapshot.NULL_LONG)
+                continue;
+            String stationName = stations.getString(row, 1);
+            String description = stations.getString(row, 3);
+
+            // Map station name to ID
+            stationNameToId.put(stationName, stationId);
+            stationNameIndex.add(stationName, stationId);
+
+            // Extract province from description "Station in [Province]"
+            if (description.startsWith("Station in ")) {
+                String province = description.substring("Station in ".length());
+                // Use the first station found for each province as default destination
+                if (!provinceToStationId.containsKey(province)) {
+                    provinceToStationId.put(province, stationId);
                 }
-            }
-        }
+                stationProvinceIndex.add(province, stationId);
 
-        // Store station to address mapping
-        try (BufferedReader reader = new BufferedReader(new FileReader(STATION_FILE))) {
-            String line = reader.readLine(); // Skip header
+                // Store all stations for each province
+                provinceToAllStationIds.computeIfAbsent(province, k -> new ArrayList<>()).add(stationId);
+            }
 
-            while ((line = reader.readLine()) != null) {
-                String[] fields = line.split(";");
-                if (fields.length >= 11) {
-                    try {
-                        Long stationId = Long.parseLong(fields[0]);
-                        // Check if field 10 has address_id, otherwise assume address_id = station_id
-                        Long addressId;
-                        if (fields.length > 10 && !fields[10].trim().isEmpty()) {
-                            addressId = Long.parseLong(fields[10]);
-                        } else {
-                            // Fallback: assume address_id matches station_id
-                            addressId = stationId;
-                        }
-                        stationIdToAddressId.put(stationId, addressId);
-                    } catch (NumberFormatException e) {
-                        // Skip if IDs are not valid numbers
-                    }
-                }
+            // Station address for the address scans; without address_id assume address_id = station_id
+            long addressId = stations.columnCount() > 10 ? stations.getLong(row, 10) : ReferenceSnapshot.NULL_LONG;
+            int address = addresses.findRow(addressId != ReferenceSnapshot.NULL_LONG ? addressId : stationId);
+            if (address >= 0 && addresses.columnCount() >= 2) {
+                stationAddresses[row] = addresses.getString(address, 1).toLowerCase();
             }
         }
     }
 
+    private void loadDistanceEngine() throws IOException {
+        if (!CsvFiles.exists(Paths.get(CENTROID_FILE))) {
+            System.out.println("No " + CENTROID_FILE + ", distance_km will be left empty");
+            return;
+        }
+        distances = DistanceEngine.load(Paths.get(CENTROID_FILE), provinces, districts,
+                ReferenceSnapshot.forCsv(Paths.get(WARD_FILE)), addresses, stations);
+        System.out.println("Located " + distances.stationCount() + " stations on " + distances.pointCount() + " points");
+    }
+
     private void loadAddressMappings() throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(ADDRESS_FILE))) {
-            String line = reader.readLine(); // Skip header
+        addresses = ReferenceSnapshot.forCsv(Paths.get(ADDRESS_FILE));
+    }
 
-            while ((line = reader.readLine()) != null) {
-                String[] fields = line.split(";");
-                if (fields.length >= 2) {
-                    try {
-                        Long addressId = Long.parseLong(fields[0]);
-                        String address = fields[1];
-                        addressIdToAddress.put(addressId, address);
-                    } catch (NumberFormatException e) {
-                        // Skip if address_id is not a valid number
-                    }
-                }
-            }
+    private void loadDistrictMappings() throws IOException {
+        districts = ReferenceSnapshot.forCsv(Paths.get(DISTRICT_FILE));
+        if (districts.columnCount() < 14)
+            return;
+
+        for (int row = 0; row < districts.rowCount(); row++) {
+            long districtId = districts.getLong(row, 0);
+            long provinceId = districts.getLong(row, 13); // province_id field
+            if (districtId == ReferenceSnapshot.NULL_LONG || provinceId == ReferenceSnapshot.NULL_LONG)
+                continue; // Skip if IDs are not valid numbers
+            String districtName = districts.getString(row, 2); // name field
+
+            districtNameToId.put(districtName, districtId);
+            districtIndex.add(districtName, districtId);
+            districtIndexByProvince
+                    .computeIfAbsent(provinceId, k -> new FuzzyNameIndex(ADMIN_PREFIXES))
+                    .add(districtName, districtId);
         }
     }
-    
-    private void loadDistrictMappings() throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(DISTRICT_FILE))) {
-            String line = reader.readLine(); // Skip header
 
-            while ((line = reader.readLine()) != null) {
-                String[] fields = line.split(";");
-                if (fields.length >= 14) {
-                    try {
-                        Long districtId = Long.parseLong(fields[0]);
-                        String districtName = fields[2]; // name field
-                        Long provinceId = Long.parseLong(fields[13]); // province_id field
-                        
-                        districtNameToId.put(districtName, districtId);
-                        districtToProvinceId.put(districtId, provinceId);
-                    } catch (NumberFormatException e) {
-                        // Skip if IDs are not valid numbers
-                    }
-                }
-            }
+    private void loadProvinceMappings() throws IOException {
+        provinces = ReferenceSnapshot.forCsv(Paths.get(PROVINCE_FILE));
+        if (provinces.columnCount() < 3)
+            return;
+
+        for (int row = 0; row < provinces.rowCount(); row++) {
+            long provinceId = provinces.getLong(row, 0);
+            if (provinceId == ReferenceSnapshot.NULL_LONG)
+                continue; // Skip if IDs are not valid numbers
+            String provinceName = provinces.getString(row, 2); // name field
+
+            provinceNameToId.put(provinceName, provinceId);
+            provinceIndex.add(provinceName, provinceId);
         }
     }
-    
-    private void loadProvinceMappings() throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(PROVINCE_FILE))) {
-            String line = reader.readLine(); // Skip header
 
-            while ((line = reader.readLine()) != null) {
-                String[] fields = line.split(";");
-                if (fields.length >= 3) {
-                    try {
-                        Long provinceId = Long.parseLong(fields[0]);
-                        String provinceName = fields[2]; // name field
-                        
-                        provinceNameToId.put(provinceName, provinceId);
-                    } catch (NumberFormatException e) {
-                        // Skip if IDs are not valid numbers
-                    }
-                }
-            }
-        }
+    // Province of a district from district.csv, or null
+    private Long provinceOfDistrict(long districtId) {
+        int row = districts.findRow(districtId);
+        if (row < 0)
+            return null;
+        long provinceId = districts.getLong(row, 13);
+        return provinceId == ReferenceSnapshot.NULL_LONG ? null : provinceId;
     }
-    
+
     private Set<RouteData> extractBenxeRoutes() throws IOException {
         Set<RouteData> uniqueRoutes = new HashSet<>();
         Pattern routePattern = Pattern.compile("^([^|]+)\\s*\\|");
@@ -196,16 +242,22 @@ public class MergedRouteProcessor {
         int parsedRoutes = 0;
         int skippedRoutes = 0;
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(BENXE_INPUT_FILE))) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(metrics.meter(CsvFiles.open(Paths.get(BENXE_INPUT_FILE)))))) {
             String line = reader.readLine(); // Skip header
 
+            long t = metrics.start();
             while ((line = reader.readLine()) != null) {
+                t = metrics.stop(Stage.READ, t);
                 totalLines++;
                 Matcher matcher = routePattern.matcher(line);
-                if (matcher.find()) {
+                boolean found = matcher.find();
+                t = metrics.stop(Stage.PARSE, t);
+                if (found) {
                     matchedLines++;
                     String routeInfo = matcher.group(1).trim();
                     RouteData route = parseBenxeRouteInfo(routeInfo);
+                    t = metrics.stop(Stage.RESOLVE, t);
                     if (route != null) {
                         uniqueRoutes.add(route);
                         parsedRoutes++;
@@ -216,6 +268,10 @@ public class MergedRouteProcessor {
             }
         }
 
+        metrics.add(PipelineMetrics.ROWS_READ, totalLines);
+        metrics.add("benxe.parsed", parsedRoutes);
+        metrics.add("benxe.skipped", skippedRoutes);
+
         System.out.println("=== BENXE PROCESSING SUMMARY ===");
         System.out.println("Total lines processed: " + totalLines);
         System.out.println("Lines matching pattern: " + matchedLines);
@@ -234,16 +290,22 @@ public class MergedRouteProcessor {
         int parsedRoutes = 0;
         int skippedRoutes = 0;
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(NHAXE_INPUT_FILE))) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(metrics.meter(CsvFiles.open(Paths.get(NHAXE_INPUT_FILE)))))) {
             String line = reader.readLine(); // Skip header
 
+            long t = metrics.start();
             while ((line = reader.readLine()) != null) {
+                t = metrics.stop(Stage.READ, t);
                 totalLines++;
                 Matcher matcher = routePattern.matcher(line);
-                if (matcher.find()) {
+                boolean found = matcher.find();
+                t = metrics.stop(Stage.PARSE, t);
+                if (found) {
                     matchedLines++;
                     String routeInfo = matcher.group(1).trim();
                     RouteData route = parseNhaxeRouteInfo(routeInfo);
+                    t = metrics.stop(Stage.RESOLVE, t);
                     if (route != null) {
                         uniqueRoutes.add(route);
                         parsedRoutes++;
@@ -254,6 +316,10 @@ public class MergedRouteProcessor {
             }
         }
 
+        metrics.add(PipelineMetrics.ROWS_READ, totalLines);
+        metrics.add("nhaxe.parsed", parsedRoutes);
+        metrics.add("nhaxe.skipped", skippedRoutes);
+
         System.out.println("=== NHAXE PROCESSING SUMMARY ===");
         System.out.println("Total lines processed: " + totalLines);
         System.out.println("Lines matching pattern: " + matchedLines);
@@ -271,8 +337,8 @@ public class MergedRouteProcessor {
             String origin = parts[0].trim();
             String destination = parts[1].trim();
 
-            Long originId = findStationIdByName(origin);
-            Long destinationId = findStationIdByName(destination);
+            Long originId = resolveEnd(this::findStationIdByName, fuzzyNameResults, origin, routeInfo, 0);
+            Long destinationId = resolveEnd(this::findStationIdByName, fuzzyNameResults, destination, routeInfo, 1);
 
             if (originId != null && destinationId != null) {
                 RouteData route = new RouteData();
@@ -308,8 +374,9 @@ public class MergedRouteProcessor {
             String originInfo = parts[0].trim();
             String destinationInfo = parts[1].trim();
 
-            Long originId = findStationIdByLocation(originInfo);
-            Long destinationId = findStationIdByLocation(destinationInfo);
+            Long originId = resolveEnd(this::findStationIdByLocation, fuzzyLocationResults, originInfo, routeInfo, 0);
+            Long destinationId = resolveEnd(this::findStationIdByLocation, fuzzyLocationResults, destinationInfo,
+                    routeInfo, 1);
 
             if (originId != null && destinationId != null) {
                 RouteData route = new RouteData();
@@ -326,14 +393,6 @@ public class MergedRouteProcessor {
     }
 
     private Long findStationIdByName(String stationName) {
-        // Special handling for "Sài Gòn" - randomly select from Hồ Chí Minh stations
-        if (stationName.equals("Sài Gòn")) {
-            List<Long> hcmStations = provinceToAllStationIds.get("Hồ Chí Minh");
-            if (hcmStations != null && !hcmStations.isEmpty()) {
-                return hcmStations.get(random.nextInt(hcmStations.size()));
-            }
-        }
-
         // Direct station name match
         if (stationNameToId.containsKey(stationName)) {
             return stationNameToId.get(stationName);
@@ -345,28 +404,30 @@ public class MergedRouteProcessor {
         }
 
         // Check addresses for station name matches
-        for (Map.Entry<Long, Long> stationToAddress : stationIdToAddressId.entrySet()) {
-            Long candidateStationId = stationToAddress.getKey();
-            Long addressId = stationToAddress.getValue();
-            String address = addressIdToAddress.get(addressId);
-
-            if (address != null && address.toLowerCase().contains(stationName.toLowerCase())) {
-                return candidateStationId;
+        String needle = stationName.toLowerCase();
+        for (int row = 0; row < stationAddresses.length; row++) {
+            if (stationAddresses[row] != null && stationAddresses[row].contains(needle)) {
+                return stations.getLong(row, 0);
             }
         }
 
+        // Typos and accent variants: nearest station name
+        Long stationId = fuzzyLookup(stationNameIndex, stationName);
+        if (stationId != null) {
+            return stationId;
+        }
+        // A name that is a province up to accents and a "Tỉnh"/"Thành phố" prefix maps to one of
+        // its stations; no edits here, so a station name is never taken for a nearby province
+        if (fuzzy) {
+            long provinceId = provinceIndex.get(stationName);
+            if (provinceId != FuzzyNameIndex.MISSING) {
+                return findStationInProvince(provinceId);
+            }
+        }
         return null;
     }
 
     private Long findStationIdByLocation(String locationInfo) {
-        // Special handling for "Sài Gòn" - randomly select from Hồ Chí Minh stations
-        if (locationInfo.equals("Sài Gòn")) {
-            List<Long> hcmStations = provinceToAllStationIds.get("Hồ Chí Minh");
-            if (hcmStations != null && !hcmStations.isEmpty()) {
-                return hcmStations.get(random.nextInt(hcmStations.size()));
-            }
-        }
-
         // Parse "District - Province" format
         String[] locationParts = locationInfo.split(" - ");
         if (locationParts.length == 2) {
@@ -388,14 +449,6 @@ public class MergedRouteProcessor {
             // Only one part, could be district or province
             String location = locationParts[0].trim();
 
-            // Special handling for "Sài Gòn"
-            if (location.equals("Sài Gòn")) {
-                List<Long> hcmStations = provinceToAllStationIds.get("Hồ Chí Minh");
-                if (hcmStations != null && !hcmStations.isEmpty()) {
-                    return hcmStations.get(random.nextInt(hcmStations.size()));
-                }
-            }
-
             // Try district first
             Long stationId = findStationByDistrict(location, null);
             if (stationId != null) {
@@ -416,7 +469,10 @@ public class MergedRouteProcessor {
         // Try exact district name match
         if (districtNameToId.containsKey(district)) {
             Long districtId = districtNameToId.get(district);
-            Long provinceId = districtToProvinceId.get(districtId);
+            Long provinceId = provinceOfDistrict(districtId);
+            if (provinceId == null) {
+                return null; // District without a province in district.csv
+            }
 
             // If province is specified, verify it matches
             if (province != null) {
@@ -436,7 +492,10 @@ public class MergedRouteProcessor {
             // Check if the full name contains the district name (e.g., "Thị xã Trảng Bàng" contains "Trảng Bàng")
             if (fullDistrictName.contains(district) || district.contains(fullDistrictName)) {
                 Long districtId = entry.getValue();
-                Long provinceId = districtToProvinceId.get(districtId);
+                Long provinceId = provinceOfDistrict(districtId);
+                if (provinceId == null) {
+                    continue; // District without a province in district.csv
+                }
 
                 if (province != null) {
                     Long expectedProvinceId = findProvinceIdByName(province);
@@ -449,6 +508,17 @@ public class MergedRouteProcessor {
             }
         }
 
+        // Typos and accent variants: nearest district name, within the province when it is known
+        if (fuzzy) {
+            Long expectedProvinceId = province != null ? findProvinceIdByName(province) : null;
+            FuzzyNameIndex candidates = expectedProvinceId != null
+                    ? districtIndexByProvince.get(expectedProvinceId) : districtIndex;
+            Long districtId = fuzzyLookup(candidates, district);
+            if (districtId != null) {
+                return findStationInProvince(provinceOfDistrict(districtId));
+            }
+        }
+
         return null;
     }
 
@@ -467,7 +537,8 @@ public class MergedRouteProcessor {
             }
         }
 
-        return null;
+        // Typos and accent variants
+        return fuzzyLookup(provinceIndex, province);
     }
 
     private Long findStationByProvince(String province) {
@@ -485,36 +556,95 @@ public class MergedRouteProcessor {
         }
 
         // Check addresses for province name matches
-        for (Map.Entry<Long, Long> stationToAddress : stationIdToAddressId.entrySet()) {
-            Long candidateStationId = stationToAddress.getKey();
-            Long addressId = stationToAddress.getValue();
-            String address = addressIdToAddress.get(addressId);
-
-            if (address != null && address.toLowerCase().contains(province.toLowerCase())) {
-                return candidateStationId;
+        String needle = province.toLowerCase();
+        for (int row = 0; row < stationAddresses.length; row++) {
+            if (stationAddresses[row] != null && stationAddresses[row].contains(needle)) {
+                return stations.getLong(row, 0);
             }
         }
 
-        return null;
+        // Typos and accent variants: nearest known province, then its station if it has one
+        Long provinceId = fuzzyLookup(provinceIndex, province);
+        return provinceId != null ? findStationInProvince(provinceId) : null;
     }
 
     private Long findStationInProvince(Long provinceId) {
         // Find province name by ID
-        String provinceName = null;
-        for (Map.Entry<String, Long> entry : provinceNameToId.entrySet()) {
-            if (entry.getValue().equals(provinceId)) {
-                provinceName = entry.getKey();
-                break;
-            }
-        }
+        int row = provinceId != null ? provinces.findRow(provinceId) : -1;
+        String provinceName = row >= 0 ? provinces.getString(row, 2) : null;
 
         if (provinceName != null && provinceToStationId.containsKey(provinceName)) {
             return provinceToStationId.get(provinceName);
         }
 
+        // Station descriptions drop the "Tỉnh"/"Thành phố" prefix and may place tone marks
+        // differently ("Hòa Bình" vs "Tỉnh Hoà Bình"); no edits allowed here, since a near
+        // miss is another province ("Ninh Thuận" vs "Bình Thuận")
+        if (fuzzy && provinceName != null) {
+            long stationId = stationProvinceIndex.get(provinceName);
+            if (stationId != FuzzyNameIndex.MISSING) {
+                return stationId;
+            }
+        }
+
         return null;
     }
 
+    // Exact and substring matching first; only names it cannot resolve are retried with the
+    // fuzzy steps enabled, so existing matches never change. Retries are deterministic and
+    // remembered per name in the finder's own memo, as the same few hundred endpoints repeat
+    // across tickets.
+    // One end (0 = origin, 1 = destination) of a route; "Sài Gòn" is spread over the Hồ Chí Minh
+    // stations, picked by a hash of the route so its (origin, destination) key is the same every run
+    private Long resolveEnd(Function<String, Long> finder, Map<String, Long> memo, String name, String routeInfo,
+            int end) {
+        if (name.equals("Sài Gòn")) {
+            List<Long> hcmStations = provinceToAllStationIds.get("Hồ Chí Minh");
+            if (hcmStations != null && !hcmStations.isEmpty()) {
+                return hcmStations.get(Math.floorMod(31 * routeInfo.hashCode() + end, hcmStations.size()));
+            }
+        }
+        return resolve(finder, memo, name);
+    }
+
+    private Long resolve(Function<String, Long> finder, Map<String, Long> memo, String name) {
+        Long stationId = finder.apply(name);
+        if (stationId == null) {
+            if (memo.containsKey(name)) {
+                stationId = memo.get(name);
+            } else {
+                fuzzy = true;
+                try {
+                    stationId = finder.apply(name);
+                } finally {
+                    fuzzy = false;
+                }
+                memo.put(name, stationId);
+            }
+            if (stationId != null) {
+                metrics.increment("match.fuzzy");
+            }
+        }
+        return stationId;
+    }
+
+    // Value of the closest name in index, or null outside the fuzzy retry
+    private Long fuzzyLookup(FuzzyNameIndex index, String name) {
+        if (!fuzzy || index == null) {
+            return null;
+        }
+        long id = index.lookup(name);
+        return id == FuzzyNameIndex.MISSING ? null : id;
+    }
+
+    /**
+     * Routes written by the last processRoutes() run, for in-process handoff to TripGenerator,
+     * or null if route.csv was up to date and not rewritten.
+     */
+    public List<RouteRecord> writtenRoutes() {
+        return writtenRoutes;
+    }
+
     private String generateRouteCode(String origin, String destination) {
         // Generate a simple route code based on origin and destination
         String originCode = origin.replaceAll("[^a-zA-Z0-9]", "").toUpperCase();
@@ -528,30 +658,97 @@ public class MergedRouteProcessor {
     }
 
     private void generateRouteCsv(Set<RouteData> routes) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(ROUTE_OUTPUT))) {
+        // Read existing route.csv (if any) to reuse IDs per (origin, destination) and find current max
+        Path routePath = Paths.get(ROUTE_OUTPUT);
+        Map<String, Long> existingKeyToId = new HashMap<>();
+        Map<Long, String> existingCreatedAt = new HashMap<>();
+        long maxExistingId = 0L;
+        if (CsvFiles.exists(routePath)) {
+            try (BufferedReader br = CsvFiles.reader(routePath)) {
+                String header = br.readLine(); // skip header
+                String line;
+                while ((line = br.readLine()) != null) {
+                    if (line.isEmpty())
+                        continue;
+                    // id;route_code;distance_km;created_at;updated_at;is_deleted;deleted_at;deleted_by;origin_id;destination_id
+                    String[] cols = line.split(";", -1);
+                    if (cols.length < 10)
+                        continue;
+                    try {
+                        long id = Long.parseLong(cols[0].trim());
+                        String key = buildRouteKey(Long.parseLong(cols[8].trim()), Long.parseLong(cols[9].trim()));
+                        existingKeyToId.put(key, id);
+                        existingCreatedAt.put(id, cols[3]);
+                        if (id > maxExistingId)
+                            maxExistingId = id;
+                    } catch (NumberFormatException e) {
+                        // Skip rows without numeric ids
+                    }
+                }
+            }
+        }
+
+        // Start sequence at max(existing, 999)+1
+        long nextId = Math.max(maxExistingId, 999L) + 1L;
+
+        // Assign/reuse IDs; new routes are numbered in (origin, destination) order so runs are repeatable
+        List<RouteData> ordered = new ArrayList<>(routes);
+        ordered.sort(Comparator.comparing((RouteData r) -> r.originId).thenComparing(r -> r.destinationId));
+        Map<Long, RouteData> idToRoute = new TreeMap<>();
+        int reused = 0;
+        for (RouteData route : ordered) {
+            Long id = existingKeyToId.get(buildRouteKey(route.originId, route.destinationId));
+            if (id != null) {
+                reused++;
+            } else {
+                id = nextId++;
+            }
+            idToRoute.put(id, route);
+        }
+        System.out.println("Route IDs reused: " + reused + ", new: " + (idToRoute.size() - reused));
+
+        // Now write (overwrite) route.csv in id order
+        try (RowEncoder writer = CsvFiles.encoder(routePath, ';')) {
             // Write header based on changelog schema
-            writer.println("id;route_code;distance_km;created_at;updated_at;is_deleted;deleted_at;deleted_by;origin_id;destination_id");
+            writer.writeLine("id;route_code;distance_km;created_at;updated_at;is_deleted;deleted_at;deleted_by;origin_id;destination_id");
 
             String currentTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-            long routeId = 1000; // Starting ID for merged routes
-
-            for (RouteData route : routes) {
-                writer.printf("%d;%s;%s;%s;%s;%s;%s;%s;%d;%d%n",
-                    routeId++,
-                    escapeForCsv(route.routeCode),
-                    "", // distance_km - empty for now
-                    currentTime,
-                    "", // updated_at - empty
-                    "false", // is_deleted
-                    "", // deleted_at - empty
-                    "\\N", // deleted_by - empty
-                    route.originId,
-                    route.destinationId
-                );
+
+            writtenRoutes = new ArrayList<>(idToRoute.size());
+            long t = metrics.start();
+            for (Map.Entry<Long, RouteData> entry : idToRoute.entrySet()) {
+                long routeId = entry.getKey();
+                RouteData route = entry.getValue();
+                String routeCode = escapeForCsv(route.routeCode);
+                writtenRoutes.add(new RouteRecord(routeId, routeCode, route.originId, route.destinationId));
+                writer.appendLong(routeId)
+                    .appendString(routeCode);
+                double km = distances == null ? Double.NaN : distances.distanceKm(route.originId, route.destinationId);
+                if (Double.isNaN(km)) {
+                    writer.appendEmpty(); // distance_km - station not located
+                } else {
+                    writer.appendDecimal(Math.round(km * 100), 2);
+                }
+                writer.appendString(existingCreatedAt.getOrDefault(routeId, currentTime)) // keep original created_at
+                    .appendEmpty() // updated_at - empty
+                    .appendString("false") // is_deleted
+                    .appendEmpty() // deleted_at - empty
+                    .appendString("\\N") // deleted_by - empty
+                    .appendLong(route.originId)
+                    .appendLong(route.destinationId)
+                    .endRow();
+                t = metrics.stop(Stage.WRITE, t);
             }
+            metrics.add(PipelineMetrics.ROWS_WRITTEN, writer.rowCount());
+            metrics.add(PipelineMetrics.BYTES_WRITTEN, writer.bytesWritten());
         }
     }
 
+    private static String buildRouteKey(long originId, long destinationId) {
+        // same identity as RouteData.equals
+        return originId + "|" + destinationId;
+    }
+
     private String escapeForCsv(String value) {
         if (value == null) return "";
         // Replace quotes with double quotes and wrap in quotes if contains semicolon or quotes
@@ -0,0 +1,173 @@
+import csvgenerator.AddressProcessor;
+import csvgenerator.BuildCache;
+import csvgenerator.CsvGenerator;
+import csvgenerator.CsvProcessor;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs all generators as one dependency graph instead of seven hand-ordered mains:
+ *
+ *   CsvGenerator -> AddressProcessor -> CsvProcessor -> MergedRouteProcessor --+
+ *                                                                              +-> TripGenerator
+ *   StaffGenerator -> GenerateMissingCsvs              StaffGenerator ---------+
+ *
+ * - Stages start as soon as their dependencies finish, so the staff branch runs alongside
+ *   the address chain.
+ * - A stage is skipped when BuildCache reports its input files unchanged and its outputs
+ *   untouched since its last successful run. Use --force to run everything.
+ * - Routes from MergedRouteProcessor are handed to TripGenerator in memory when both run
+ *   in this process; the other stages still exchange data through csv_output files.
+ */
+public class PipelineRunner {
+
+    private interface StageAction {
+        void run() throws Exception;
+    }
+
+    private static final class Stage {
+        final String name;
+        final List<String> dependsOn;
+        final List<String> inputs;
+        final List<String> outputs;
+        final StageAction action;
+
+        Stage(String name, List<String> dependsOn, List<String> inputs, List<String> outputs, StageAction action) {
+            this.name = name;
+            this.dependsOn = dependsOn;
+            this.inputs = inputs;
+            this.outputs = outputs;
+            this.action = action;
+        }
+    }
+
+    // Declaration order is a valid topological order
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+    private final BuildCache cache = BuildCache.in(Paths.get("csv_output"));
+    private volatile MergedRouteProcessor routeProcessor; // set when routes were built in this process
+
+    public PipelineRunner() {
+        stage("CsvGenerator", List.of(),
+                List.of("provinces.open-api.vn.json"),
+                List.of("csv_output/province.csv", "csv_output/district.csv", "csv_output/ward.csv"),
+                () -> new CsvGenerator().generateCsvFiles());
+        stage("AddressProcessor", List.of("CsvGenerator"),
+                List.of("benxe_addresses.csv", "csv_output/province.csv", "csv_output/district.csv",
+                        "csv_output/ward.csv"),
+                List.of("benxe_addresses_with_ward_ids.csv"),
+                () -> new AddressProcessor().processAddresses());
+        stage("CsvProcessor", List.of("AddressProcessor"),
+                List.of("benxe_addresses_with_ward_ids.csv"),
+                List.of("csv_output/address.csv", "csv_output/station.csv"),
+                () -> new CsvProcessor().processData());
+        stage("MergedRouteProcessor", List.of("CsvProcessor"),
+                List.of("tickets_benxe.csv", "tickets_nhaxe.csv", "csv_output/station.csv",
+                        "csv_output/address.csv", "csv_output/district.csv", "csv_output/province.csv",
+                        "csv_output/ward.csv", "province_centroids.csv"),
+                List.of("csv_output/route.csv"),
+                () -> {
+                    MergedRouteProcessor processor = new MergedRouteProcessor();
+                    processor.processRoutes();
+                    routeProcessor = processor;
+                });
+        stage("StaffGenerator", List.of(),
+                List.of(),
+                List.of("csv_output/staff.csv", "csv_output/driver.csv", "csv_output/attendant.csv",
+                        "csv_output/vehicle.csv"),
+                () -> new StaffGenerator().generateAdditionalStaff());
+        stage("GenerateMissingCsvs", List.of("StaffGenerator"),
+                List.of("csv_output/vehicle.csv"),
+                List.of("csv_output/seat_map.csv", "csv_output/floor.csv", "csv_output/seat.csv"),
+                () -> GenerateMissingCsvs.main(new String[0]));
+        stage("TripGenerator", List.of("MergedRouteProcessor", "StaffGenerator"),
+                List.of("tickets_benxe.csv", "tickets_nhaxe.csv", "csv_output/route.csv",
+                        "csv_output/vehicle.csv", "csv_output/driver.csv", "csv_output/attendant.csv"),
+                List.of("csv_output/trip.csv"),
+                () -> {
+                    TripGenerator generator = new TripGenerator();
+                    MergedRouteProcessor routes = routeProcessor;
+                    if (routes != null) {
+                        generator.useRoutes(routes.writtenRoutes());
+                    }
+                    generator.generateTrips();
+                });
+    }
+
+    public static void main(String[] args) {
+        boolean force = Arrays.asList(args).contains("--force");
+        try {
+            if (force) {
+                // Forget all fingerprints so every stage (and each generator's own cache check) reruns
+                Files.deleteIfExists(Paths.get("csv_output", BuildCache.MANIFEST_NAME));
+            }
+            new PipelineRunner().run();
+            System.out.println("Pipeline finished successfully!");
+        } catch (Exception e) {
+            System.err.println("Pipeline failed: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private void stage(String name, List<String> dependsOn, List<String> inputs, List<String> outputs,
+            StageAction action) {
+        for (String dependency : dependsOn) {
+            if (!stages.containsKey(dependency))
+                throw new IllegalArgumentException(name + " depends on undeclared stage " + dependency);
+        }
+        stages.put(name, new Stage(name, dependsOn, inputs, outputs, action));
+    }
+
+    public void run() throws Exception {
+        Files.createDirectories(Paths.get("csv_output"));
+        long start = System.nanoTime();
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        Map<String, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+        try {
+            for (Stage stage : stages.values()) {
+                CompletableFuture<?>[] dependencies = stage.dependsOn.stream()
+                        .map(futures::get)
+                        .toArray(CompletableFuture[]::new);
+                futures.put(stage.name, CompletableFuture.allOf(dependencies)
+                        .thenRunAsync(() -> runStage(stage), pool));
+            }
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            pool.shutdown();
+        }
+        System.out.printf(Locale.ROOT, "Pipeline completed in %.2f s%n", (System.nanoTime() - start) / 1e9);
+    }
+
+    private void runStage(Stage stage) {
+        try {
+            BuildCache.Fingerprint fingerprint = cache.fingerprint("pipeline:" + stage.name);
+            for (String input : stage.inputs) {
+                fingerprint.file(Paths.get(input));
+            }
+            Path[] outputs = stage.outputs.stream().map(Paths::get).toArray(Path[]::new);
+            if (cache.isUpToDate(fingerprint, outputs)) {
+                System.out.println("[pipeline] " + stage.name + ": inputs unchanged, skipped");
+                return;
+            }
+
+            System.out.println("[pipeline] " + stage.name + ": running");
+            long start = System.nanoTime();
+            stage.action.run();
+            cache.record(fingerprint, outputs);
+            System.out.printf(Locale.ROOT, "[pipeline] %s: done in %.2f s%n", stage.name,
+                    (System.nanoTime() - start) / 1e9);
+        } catch (Exception e) {
+            throw new CompletionException(new IOException("Stage " + stage.name + " failed: " + e.getMessage(), e));
+        }
+    }
+}
@@ -1,5 +1,9 @@
+import csvgenerator.CsvFiles;
+import csvgenerator.RowEncoder;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -42,10 +46,10 @@ public class StaffGenerator {
         }
     }
 
-    private static void writeHeaderIfNew(File file, String header) throws IOException {
-        if (!file.exists() || file.length() == 0) {
-            try (PrintWriter w = new PrintWriter(new FileWriter(file, false))) {
-                w.println(header);
+    private static void writeHeaderIfNew(Path file, String header) throws IOException {
+        if (CsvFiles.size(file) == 0) {
+            try (RowEncoder w = CsvFiles.encoder(file, ',')) {
+                w.writeLine(header);
             }
         }
     }
@@ -53,16 +57,16 @@ public class StaffGenerator {
     public void generateAdditionalStaff() throws IOException {
         ensureOutputDir();
 
-        writeHeaderIfNew(new File(OUTPUT_DIR, "staff.csv"),
+        writeHeaderIfNew(Paths.get(OUTPUT_DIR, "staff.csv"),
                 "id,name,age,gender,phone_number,status,created_at,updated_at,is_deleted,deleted_at,deleted_by");
 
-        writeHeaderIfNew(new File(OUTPUT_DIR, "driver.csv"),
+        writeHeaderIfNew(Paths.get(OUTPUT_DIR, "driver.csv"),
                 "id,staff_id,license_class,years_experience,created_at,updated_at,is_deleted,deleted_at,deleted_by");
 
-        writeHeaderIfNew(new File(OUTPUT_DIR, "attendant.csv"),
+        writeHeaderIfNew(Paths.get(OUTPUT_DIR, "attendant.csv"),
                 "id,staff_id,created_at,updated_at,is_deleted,deleted_at,deleted_by");
 
-        writeHeaderIfNew(new File(OUTPUT_DIR, "vehicle.csv"),
+        writeHeaderIfNew(Paths.get(OUTPUT_DIR, "vehicle.csv"),
                 "id,seat_map_id,type,type_factor,plate_number,brand,description,status,created_at,updated_at,is_deleted,deleted_at,deleted_by");
 
         generateAdditionalStaffCsv();
@@ -72,7 +76,7 @@ public class StaffGenerator {
     }
 
     private void generateAdditionalStaffCsv() throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(OUTPUT_DIR + "/staff.csv", true))) {
+        try (RowEncoder writer = CsvFiles.appender(Paths.get(OUTPUT_DIR, "staff.csv"), ',')) {
             String[][] additionalStaff = {
                     { "Do Van G", "33", "MALE", "0945678901", "ACTIVE" },
                     { "Bui Thi H", "29", "FEMALE", "0956789012", "ACTIVE" },
@@ -108,15 +112,16 @@ public class StaffGenerator {
 
                 // 11 columns:
                 // id,name,age,gender,phone_number,status,created_at,updated_at,is_deleted,deleted_at,deleted_by
-                writer.printf("%d,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s%n",
-                        staffId, name, age, gender, phone, status,
-                        now, "", "false", "", "");
+                writer.appendLong(staffId).appendString(name).appendString(age).appendString(gender)
+                        .appendString(phone).appendString(status)
+                        .appendString(now).appendEmpty().appendString("false").appendEmpty().appendEmpty()
+                        .endRow();
             }
         }
     }
 
     private void generateAdditionalDriverCsv() throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(OUTPUT_DIR + "/driver.csv", true))) {
+        try (RowEncoder writer = CsvFiles.appender(Paths.get(OUTPUT_DIR, "driver.csv"), ',')) {
             String[] driverNames = {
                     "Do Van G", "Ngo Van I", "Vu Van K", "Ly Van M", "Dinh Van O",
                     "Tong Van Q", "Huynh Van S", "Quach Van U", "Phan Van W", "Luu Van Y"
@@ -138,15 +143,16 @@ public class StaffGenerator {
 
                 // 9 columns:
                 // id,staff_id,license_class,years_experience,created_at,updated_at,is_deleted,deleted_at,deleted_by
-                writer.printf("%d,%d,%s,%s,%s,%s,%s,%s,%s%n",
-                        driverId, staffId, licenseClasses[i], experiences[i],
-                        now, "", "false", "", "");
+                writer.appendLong(driverId).appendLong(staffId).appendString(licenseClasses[i])
+                        .appendString(experiences[i])
+                        .appendString(now).appendEmpty().appendString("false").appendEmpty().appendEmpty()
+                        .endRow();
             }
         }
     }
 
     private void generateAdditionalAttendantCsv() throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(OUTPUT_DIR + "/attendant.csv", true))) {
+        try (RowEncoder writer = CsvFiles.appender(Paths.get(OUTPUT_DIR, "attendant.csv"), ',')) {
             String[] attendantNames = {
                     "Bui Thi H", "Dang Thi J", "Cao Thi L", "Truong Thi N", "Mai Thi P",
                     "Lam Thi R", "Chau Thi T", "Duong Thi V", "Tang Thi X", "Hoa Thi Z"
@@ -165,14 +171,15 @@ public class StaffGenerator {
                 long attendantId = ids.getId("attendant:" + name + ":" + phone); // attendant row id
 
                 // 7 columns: id,staff_id,created_at,updated_at,is_deleted,deleted_at,deleted_by
-                writer.printf("%d,%d,%s,%s,%s,%s,%s%n",
-                        attendantId, staffId, now, "", "false", "", "");
+                writer.appendLong(attendantId).appendLong(staffId)
+                        .appendString(now).appendEmpty().appendString("false").appendEmpty().appendEmpty()
+                        .endRow();
             }
         }
     }
 
     private void generateAdditionalVehicleCsv() throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(OUTPUT_DIR + "/vehicle.csv", true))) {
+        try (RowEncoder writer = CsvFiles.appender(Paths.get(OUTPUT_DIR, "vehicle.csv"), ',')) {
             String[][] additionalVehicles = {
                     { "STANDARD_BUS_NORMAL", "1.0", "34A-44444", "Hyundai", "Standard bus route 6" },
                     { "LIMOUSINE", "1.5", "35A-55555", "Mercedes", "Luxury bus route 7" },
@@ -205,9 +212,10 @@ public class StaffGenerator {
 
                 // 13 columns:
                 // id,seat_map_id,type,type_factor,plate_number,brand,description,status,created_at,updated_at,is_deleted,deleted_at,deleted_by
-                writer.printf("%d,%d,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s%n",
-                        vehicleId, seatMapId, type, typeFactor, plate, brand, description, status,
-                        now, "", "false", "", "");
+                writer.appendLong(vehicleId).appendLong(seatMapId).appendString(type).appendString(typeFactor)
+                        .appendString(plate).appendString(brand).appendString(description).appendString(status)
+                        .appendString(now).appendEmpty().appendString("false").appendEmpty().appendEmpty()
+                        .endRow();
             }
         }
     }
@@ -1,40 +1,117 @@
+import csvgenerator.CsvFiles;
+import csvgenerator.DeterministicIds;
+import csvgenerator.FareCodec;
+import csvgenerator.Hash64;
+import csvgenerator.PipelineMetrics;
+import csvgenerator.PipelineMetrics.Stage;
+import csvgenerator.ReferenceSnapshot;
+import csvgenerator.RouteRecord;
+import csvgenerator.RowEncoder;
+import csvgenerator.RunCheckpoint;
+import csvgenerator.ShardedTableWriter;
+import csvgenerator.StagedLinePipeline;
+import csvgenerator.TimestampCodec;
+import csvgenerator.TimetableExpander;
+import csvgenerator.StringDictionary;
+import csvgenerator.TripStore;
+import csvgenerator.TripTiming;
 import java.io.*;
-import java.math.BigDecimal;
-import java.math.BigInteger;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.MessageDigest;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
 import java.util.*;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 public class TripGenerator {
-    private static final String BENXE_INPUT_FILE = "tickets_benxe.csv";
-    private static final String NHAXE_INPUT_FILE = "tickets_nhaxe.csv";
-    private static final String ROUTE_FILE = "csv_output/route.csv";
-    private static final String VEHICLE_FILE = "csv_output/vehicle.csv";
-    private static final String DRIVER_FILE = "csv_output/driver.csv";
-    private static final String ATTENDANT_FILE = "csv_output/attendant.csv";
-    private static final String OUTPUT_DIR = "csv_output";
+    // Base directory for inputs and csv_output; override with -Ddatafakker.dir (benchmarks)
+    private static final String BASE_DIR = System.getProperty("datafakker.dir", ".");
+    private static final String BENXE_INPUT_FILE = BASE_DIR + "/tickets_benxe.csv";
+    private static final String NHAXE_INPUT_FILE = BASE_DIR + "/tickets_nhaxe.csv";
+    private static final String ROUTE_FILE = BASE_DIR + "/csv_output/route.csv";
+    private static final String VEHICLE_FILE = BASE_DIR + "/csv_output/vehicle.csv";
+    private static final String DRIVER_FILE = BASE_DIR + "/csv_output/driver.csv";
+    private static final String ATTENDANT_FILE = BASE_DIR + "/csv_output/attendant.csv";
+    private static final String OUTPUT_DIR = BASE_DIR + "/csv_output";
     private static final String TRIP_OUTPUT = OUTPUT_DIR + "/trip.csv";
-
-    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String TRIP_SHARD_DIR = OUTPUT_DIR + "/trip";
+    private static final String TRIP_HEADER =
+            "id,route_id,vehicle_id,driver_id,attendant_id,trip_code,departure_time,arrival_time,base_fare,created_at,updated_at,is_deleted,deleted_at,deleted_by";
+    private static final List<String> SHARD_KEYS = List.of("route_id", "vehicle_id", "driver_id", "attendant_id", "id");
+    private static final int PHASE_BENXE = 0; // checkpoint phases: the ticket file being read
+    private static final int PHASE_NHAXE = 1;
+    // Ticket durations are rounded ("7h45"); the arrival clock time decides within this margin
+    private static final long DURATION_SLACK_SECONDS = 3600L;
 
     // Data storage
     private Map<String, RouteInfo> routeCodeToInfo = new HashMap<>();
-    private List<String> vehicleIds = new ArrayList<>();
-    private List<String> driverIds = new ArrayList<>();
-    private List<String> attendantIds = new ArrayList<>();
+    private final TripStore trips = new TripStore(1 << 16); // its staff dictionaries hold the loaded IDs
     private Random random = new Random();
-    private Set<String> generatedTripCodes = new HashSet<>();
-
+    private BitSet generatedTripCodes = new BitSet();
+    private int tripCodeSpace = 1000000; // "TRIP%06d"; widened when half used
+    private TimestampCodec timestamps = new TimestampCodec(); // replaced on resume to keep created_at
+    private long malformedTickets; // skipped for an unparseable date/time, counted in file order by addTrip
+    private final TripTiming timing = new TripTiming();
+    private PipelineMetrics metrics;
+    private List<RouteRecord> routeHandoff; // set by PipelineRunner when MergedRouteProcessor ran in-process
+    private final Set<String> fallbackStaff = new HashSet<>(); // staff kinds picked from fallback IDs only
+    private boolean randomRouteFallback = true; // off while learning timetables: unmatched tickets are skipped
+    private int stagedWorkers; // > 0: read tickets through StagedLinePipeline with this many workers
+    private boolean resume; // continue from the last checkpoint instead of starting over
+    private RunCheckpoint checkpoint; // null: no checkpoints (timetable learning)
+    private long checkpointFingerprint;
+    private int shards; // > 0: write csv_output/trip/trip-NNN.csv shards instead of trip.csv
+    private String shardKey = "route_id";
+
+    // Usage: TripGenerator [--staged N] [--resume] [--shards N [--shard-key COLUMN]] [--seed S]
+    //                      [--timetable FROM TO [--threads N]]   (dates as yyyy-MM-dd; timetable seed defaults to 42)
     public static void main(String[] args) {
         try {
             TripGenerator generator = new TripGenerator();
+            List<String> options = Arrays.asList(args);
+            int staged = options.indexOf("--staged");
+            if (staged >= 0) {
+                if (staged + 1 >= args.length)
+                    throw new IllegalArgumentException("--staged needs a worker count");
+                generator.useStagedPipeline(Integer.parseInt(args[staged + 1]));
+            }
+            generator.resumeFromCheckpoint(options.contains("--resume"));
+            int seeded = options.indexOf("--seed");
+            if (seeded >= 0) {
+                if (seeded + 1 >= args.length)
+                    throw new IllegalArgumentException("--seed needs a value");
+                generator.useSeed(Long.parseLong(args[seeded + 1]));
+            }
+            int sharded = options.indexOf("--shards");
+            if (sharded >= 0) {
+                if (sharded + 1 >= args.length)
+                    throw new IllegalArgumentException("--shards needs a shard count");
+                int key = options.indexOf("--shard-key");
+                generator.useShardedOutput(Integer.parseInt(args[sharded + 1]),
+                        key >= 0 && key + 1 < args.length ? args[key + 1] : "route_id");
+            }
+            int timetable = options.indexOf("--timetable");
+            if (timetable >= 0) {
+                if (timetable + 2 >= args.length)
+                    throw new IllegalArgumentException("--timetable needs FROM and TO dates (yyyy-MM-dd)");
+                int threads = Runtime.getRuntime().availableProcessors();
+                long seed = 42L;
+                for (int i = 0; i < args.length - 1; i++) {
+                    if (args[i].equals("--threads"))
+                        threads = Integer.parseInt(args[i + 1]);
+                    if (args[i].equals("--seed"))
+                        seed = Long.parseLong(args[i + 1]);
+                }
+                generator.generateTimetable(LocalDate.parse(args[timetable + 1]), LocalDate.parse(args[timetable + 2]),
+                        threads, seed);
+                System.out.println("Timetable trip CSV file generated successfully!");
+                return;
+            }
             generator.generateTrips();
             System.out.println("Trip CSV file generated successfully!");
         } catch (Exception e) {
@@ -43,27 +120,14 @@ public class TripGenerator {
         }
     }
 
-    // Generate deterministic BigInteger ID from string using SHA-256
-    private static BigInteger generateBigIntId(String input) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-
-            // Take first 8 bytes to create a positive BigInteger
-            byte[] idBytes = new byte[8];
-            System.arraycopy(hash, 0, idBytes, 0, 8);
-
-            // Ensure positive by clearing the sign bit
-            idBytes[0] &= 0x7F;
-
-            return new BigInteger(1, idBytes);
-        } catch (Exception e) {
-            // Fallback: use hashCode
-            return BigInteger.valueOf(Math.abs((long) input.hashCode()));
+    public void generateTrips() throws IOException {
+        try (PipelineMetrics runMetrics = new PipelineMetrics("trip")) {
+            metrics = runMetrics;
+            runStages();
         }
     }
 
-    public void generateTrips() throws IOException {
+    private void runStages() throws IOException {
         // Load reference data
         loadRouteData();
         loadVehicleData();
@@ -73,50 +137,169 @@ public class TripGenerator {
         // Generate additional staff if needed
         ensureMinimumStaff();
 
-        // Process tickets and generate trips
-        List<TripData> trips = new ArrayList<>();
+        // Periodic checkpoints hold the ticket position, RNG state and the trips so far
+        checkpoint = RunCheckpoint.in(Paths.get(OUTPUT_DIR), "trip");
+        checkpointFingerprint = checkpointFingerprint();
+        long[] position = { PHASE_BENXE, 0L }; // phase, lines of that ticket file already processed
+        if (resume && checkpoint.restore(checkpointFingerprint, in -> readCheckpoint(in, position))) {
+            System.out.println("Resuming from " + checkpoint.file() + ": " + trips.size() + " trips, "
+                    + (position[0] == PHASE_BENXE ? "benxe" : "nhaxe") + " tickets after line " + position[1]);
+        }
 
         // Process benxe tickets
-        System.out.println("Processing benxe tickets...");
-        trips.addAll(processBenxeTickets());
+        if (position[0] == PHASE_BENXE) {
+            System.out.println("Processing benxe tickets...");
+            processBenxeTickets(position[1]);
+        }
 
         // Process nhaxe tickets
         System.out.println("Processing nhaxe tickets...");
-        trips.addAll(processNhaxeTickets());
+        processNhaxeTickets(position[0] == PHASE_NHAXE ? position[1] : 0L);
 
         System.out.println("Total trips generated: " + trips.size());
+        if (malformedTickets > 0) {
+            System.out.println("Tickets skipped for malformed date/time: " + malformedTickets);
+        }
+        timing.printSummary();
 
         // Write trip CSV
-        generateTripCsv(trips);
+        generateTripCsv();
+        checkpoint.clear();
     }
 
-    private void loadRouteData() throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(ROUTE_FILE))) {
-            String line = reader.readLine(); // Skip header
-
-            while ((line = reader.readLine()) != null) {
-                String[] fields = line.split(";");
-                if (fields.length >= 10) {
-                    String routeId = fields[0];
-                    String routeCode = fields[1];
-                    String originId = fields[8];
-                    String destinationId = fields[9];
-
-                    RouteInfo info = new RouteInfo();
-                    info.routeId = routeId;
-                    info.routeCode = routeCode;
-                    info.originId = originId;
-                    info.destinationId = destinationId;
-
-                    routeCodeToInfo.put(routeCode, info);
+    /**
+     * Timetable mode: instead of one trip per ticket, every route in route.csv gets its
+     * learned departure pattern on each day in [from, to]. trip.csv is overwritten; ids are
+     * assigned per route block starting at 1500, so reruns with the same inputs match.
+     */
+    public void generateTimetable(LocalDate from, LocalDate to, int threads, long seed) throws Exception {
+        try (PipelineMetrics runMetrics = new PipelineMetrics("trip-timetable")) {
+            metrics = runMetrics;
+            loadRouteData();
+            loadVehicleData();
+            loadDriverData();
+            loadAttendantData();
+            ensureMinimumStaff();
+
+            // Learn departure minutes, durations and fares per route from the ticket trips
+            randomRouteFallback = false;
+            TimetableExpander expander = new TimetableExpander(trips.vehicles().values(), trips.drivers().values(),
+                    trips.attendants().values(), seed);
+            System.out.println("Learning departure patterns from tickets...");
+            processBenxeTickets(0L);
+            processNhaxeTickets(0L);
+            for (int i = 0; i < trips.size(); i++) {
+                expander.observe(parseLongSafe(trips.routes().get(trips.route(i))), trips.departure(i),
+                        trips.arrival(i), trips.fare(i));
+            }
+            System.out.println("Ticket trips observed: " + trips.size() + " on " + expander.learnedRouteCount()
+                    + " routes");
+
+            long[] routeIds = routeCodeToInfo.values().stream()
+                    .mapToLong(route -> parseLongSafe(route.routeId))
+                    .filter(id -> id > 0)
+                    .distinct()
+                    .sorted()
+                    .toArray();
+            if (shards > 0) {
+                if (!shardKey.equals("route_id"))
+                    throw new IllegalArgumentException("Timetable shards are keyed by route_id only");
+                try (ShardedTableWriter writer = new ShardedTableWriter(Paths.get(TRIP_SHARD_DIR), "trip",
+                        TRIP_HEADER, ',', shards, shardKey)) {
+                    expander.expandSharded(writer, routeIds, from.toEpochDay(), to.toEpochDay(),
+                            timestamps.createdAt(), threads);
+                    metrics.add(PipelineMetrics.ROWS_WRITTEN, writer.rowCount());
+                    metrics.add(PipelineMetrics.BYTES_WRITTEN, writer.bytesWritten());
                 }
+                removeStaleTripOutput();
+                return;
+            }
+            Path tripPath = CsvFiles.prepareTarget(Paths.get(TRIP_OUTPUT));
+            long written = expander.expand(tripPath, routeIds, from.toEpochDay(), to.toEpochDay(),
+                    timestamps.createdAt(), threads);
+            metrics.add(PipelineMetrics.ROWS_WRITTEN, written);
+            metrics.add(PipelineMetrics.BYTES_WRITTEN, Files.size(tripPath));
+            removeStaleTripOutput();
+        }
+    }
+
+    /**
+     * Reads tickets with a reader thread, workers parser/resolver threads and an ordered
+     * consumer (StagedLinePipeline) instead of one loop; 0 restores the sequential loop.
+     * Results are the same either way.
+     */
+    public void useStagedPipeline(int workers) {
+        this.stagedWorkers = Math.max(0, workers);
+    }
+
+    /**
+     * Seeds the random route fallback, staff and trip code draws, so two runs over the same
+     * inputs write the same trips (created_at aside). Unseeded runs differ every time.
+     */
+    public void useSeed(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Continues an interrupted generateTrips() run from csv_output/.checkpoints/trip.ckpt
+     * (when one exists for the same inputs). The resulting trip.csv is the one the
+     * uninterrupted run would have written.
+     */
+    public void resumeFromCheckpoint(boolean resume) {
+        this.resume = resume;
+    }
+
+    /**
+     * Writes trips as count hash-partitioned shards plus manifest.json in csv_output/trip/
+     * (ShardedTableWriter) instead of trip.csv; key is the trip column to partition on
+     * (route_id, vehicle_id, driver_id, attendant_id or id; timetable mode: route_id only).
+     * 0 restores the single trip.csv. Either output removes the other once it is written.
+     */
+    public void useShardedOutput(int count, String key) {
+        if (!SHARD_KEYS.contains(key))
+            throw new IllegalArgumentException("Shard key must be one of " + SHARD_KEYS + ": " + key);
+        this.shards = Math.max(0, count);
+        this.shardKey = key;
+    }
+
+    /** Uses routes produced in the same process instead of reading route.csv (null: read the file). */
+    public void useRoutes(List<RouteRecord> routes) {
+        this.routeHandoff = routes;
+    }
+
+    private void loadRouteData() throws IOException {
+        if (routeHandoff != null) {
+            for (RouteRecord route : routeHandoff) {
+                RouteInfo info = new RouteInfo();
+                info.routeId = String.valueOf(route.id);
+                info.routeCode = route.routeCode;
+                info.originId = String.valueOf(route.originId);
+                info.destinationId = String.valueOf(route.destinationId);
+                info.routeIndex = trips.routes().intern(info.routeId);
+                routeCodeToInfo.put(route.routeCode, info);
+            }
+            System.out.println("Loaded " + routeCodeToInfo.size() + " routes (in-memory)");
+            return;
+        }
+        // route.csv through its memory-mapped snapshot, reused while route.csv is unchanged
+        ReferenceSnapshot routes = ReferenceSnapshot.forCsv(Paths.get(ROUTE_FILE));
+        if (routes.columnCount() >= 10) {
+            for (int row = 0; row < routes.rowCount(); row++) {
+                RouteInfo info = new RouteInfo();
+                info.routeId = routes.getString(row, 0);
+                info.routeCode = routes.getString(row, 1);
+                info.originId = routes.getString(row, 8);
+                info.destinationId = routes.getString(row, 9);
+                info.routeIndex = trips.routes().intern(info.routeId);
+
+                routeCodeToInfo.put(info.routeCode, info);
             }
         }
         System.out.println("Loaded " + routeCodeToInfo.size() + " routes");
     }
 
     private void loadVehicleData() throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(VEHICLE_FILE))) {
+        try (BufferedReader reader = CsvFiles.reader(Paths.get(VEHICLE_FILE))) {
             String line = reader.readLine(); // Skip header
 
             while ((line = reader.readLine()) != null) {
@@ -126,18 +309,19 @@ public class TripGenerator {
                 // Handle CSV parsing with potential quotes and commas
                 String[] fields = parseCsvLine(line);
                 if (fields.length >= 1 && !fields[0].trim().isEmpty()) {
-                    vehicleIds.add(fields[0].trim());
+                    trips.vehicles().intern(fields[0].trim());
                 }
             }
         }
-        System.out.println("Loaded " + vehicleIds.size() + " vehicles");
-        if (!vehicleIds.isEmpty()) {
-            System.out.println("Sample vehicle IDs: " + vehicleIds.subList(0, Math.min(3, vehicleIds.size())));
+        StringDictionary vehicles = trips.vehicles();
+        System.out.println("Loaded " + vehicles.size() + " vehicles");
+        if (!vehicles.isEmpty()) {
+            System.out.println("Sample vehicle IDs: " + vehicles.values().subList(0, Math.min(3, vehicles.size())));
         }
     }
 
     private void loadDriverData() throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(DRIVER_FILE))) {
+        try (BufferedReader reader = CsvFiles.reader(Paths.get(DRIVER_FILE))) {
             String line = reader.readLine(); // Skip header
 
             while ((line = reader.readLine()) != null) {
@@ -146,18 +330,19 @@ public class TripGenerator {
 
                 String[] fields = parseCsvLine(line);
                 if (fields.length >= 1 && !fields[0].trim().isEmpty()) {
-                    driverIds.add(fields[0].trim());
+                    trips.drivers().intern(fields[0].trim());
                 }
             }
         }
-        System.out.println("Loaded " + driverIds.size() + " drivers");
-        if (!driverIds.isEmpty()) {
-            System.out.println("Sample driver IDs: " + driverIds.subList(0, Math.min(3, driverIds.size())));
+        StringDictionary drivers = trips.drivers();
+        System.out.println("Loaded " + drivers.size() + " drivers");
+        if (!drivers.isEmpty()) {
+            System.out.println("Sample driver IDs: " + drivers.values().subList(0, Math.min(3, drivers.size())));
         }
     }
 
     private void loadAttendantData() throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(ATTENDANT_FILE))) {
+        try (BufferedReader reader = CsvFiles.reader(Paths.get(ATTENDANT_FILE))) {
             String line = reader.readLine(); // Skip header
 
             while ((line = reader.readLine()) != null) {
@@ -166,13 +351,14 @@ public class TripGenerator {
 
                 String[] fields = parseCsvLine(line);
                 if (fields.length >= 1 && !fields[0].trim().isEmpty()) {
-                    attendantIds.add(fields[0].trim());
+                    trips.attendants().intern(fields[0].trim());
                 }
             }
         }
-        System.out.println("Loaded " + attendantIds.size() + " attendants");
-        if (!attendantIds.isEmpty()) {
-            System.out.println("Sample attendant IDs: " + attendantIds.subList(0, Math.min(3, attendantIds.size())));
+        StringDictionary attendants = trips.attendants();
+        System.out.println("Loaded " + attendants.size() + " attendants");
+        if (!attendants.isEmpty()) {
+            System.out.println("Sample attendant IDs: " + attendants.values().subList(0, Math.min(3, attendants.size())));
         }
     }
 
@@ -204,162 +390,292 @@ public class TripGenerator {
     private void ensureMinimumStaff() throws IOException {
         // This method is kept for compatibility but now focuses on validation
         // All vehicle, driver, and attendant IDs should come from csv_output files
-        if (vehicleIds.isEmpty()) {
+        if (trips.vehicles().isEmpty()) {
             System.err.println("Warning: No vehicles found in csv_output/vehicle.csv");
             System.err.println("Please ensure vehicle.csv exists and contains vehicle data.");
         }
 
-        if (driverIds.isEmpty()) {
+        if (trips.drivers().isEmpty()) {
             System.err.println("Warning: No drivers found in csv_output/driver.csv");
             System.err.println("Please ensure driver.csv exists and contains driver data.");
         }
 
-        if (attendantIds.isEmpty()) {
+        if (trips.attendants().isEmpty()) {
             System.err.println("Warning: No attendants found in csv_output/attendant.csv");
             System.err.println("Please ensure attendant.csv exists and contains attendant data.");
         }
 
         System.out.println("Loaded staff summary:");
-        System.out.println("  Vehicles: " + vehicleIds.size());
-        System.out.println("  Drivers: " + driverIds.size());
-        System.out.println("  Attendants: " + attendantIds.size());
+        System.out.println("  Vehicles: " + trips.vehicles().size());
+        System.out.println("  Drivers: " + trips.drivers().size());
+        System.out.println("  Attendants: " + trips.attendants().size());
     }
 
-    private List<TripData> processBenxeTickets() throws IOException {
-        List<TripData> trips = new ArrayList<>();
-        Pattern routePattern = Pattern.compile("^([^|]+)\\s*\\|");
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(BENXE_INPUT_FILE))) {
+    // skipLines: tickets already processed by the run being resumed
+    private void processBenxeTickets(long skipLines) throws IOException {
+        if (stagedWorkers > 0) {
+            processTicketsStaged(BENXE_INPUT_FILE, "benxe", this::parseBenxeTicket, PHASE_BENXE, skipLines);
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(metrics.meter(CsvFiles.open(Paths.get(BENXE_INPUT_FILE)))))) {
             String line = reader.readLine(); // Skip header
+            long lineNumber = 0;
+            while (lineNumber < skipLines && reader.readLine() != null)
+                lineNumber++;
 
+            long t = metrics.start();
             while ((line = reader.readLine()) != null) {
+                t = metrics.stop(Stage.READ, t);
+                metrics.increment(PipelineMetrics.ROWS_READ);
                 String[] fields = line.split("\\|");
+                t = metrics.stop(Stage.PARSE, t);
                 if (fields.length >= 13) {
                     try {
-                        TripData trip = parseBenxeTicket(fields);
-                        if (trip != null) {
-                            trips.add(trip);
+                        ParsedTicket ticket = parseBenxeTicket(fields);
+                        if (ticket == null || !addTrip(ticket)) {
+                            metrics.increment("benxe.skipped");
                         }
                     } catch (Exception e) {
                         // Skip malformed lines
-                        continue;
+                        metrics.increment("benxe.skipped");
                     }
+                    t = metrics.stop(Stage.RESOLVE, t);
                 }
+                checkpointIfDue(PHASE_BENXE, ++lineNumber);
             }
         }
-
-        return trips;
     }
 
-    private List<TripData> processNhaxeTickets() throws IOException {
-        List<TripData> trips = new ArrayList<>();
-        Pattern routePattern = Pattern.compile("^\\[.*?\\]\\s*([^|]+)\\s*\\|");
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(NHAXE_INPUT_FILE))) {
+    // skipLines: tickets already processed by the run being resumed
+    private void processNhaxeTickets(long skipLines) throws IOException {
+        if (stagedWorkers > 0) {
+            processTicketsStaged(NHAXE_INPUT_FILE, "nhaxe", this::parseNhaxeTicket, PHASE_NHAXE, skipLines);
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(metrics.meter(CsvFiles.open(Paths.get(NHAXE_INPUT_FILE)))))) {
             String line = reader.readLine(); // Skip header
+            long lineNumber = 0;
+            while (lineNumber < skipLines && reader.readLine() != null)
+                lineNumber++;
 
+            long t = metrics.start();
             while ((line = reader.readLine()) != null) {
+                t = metrics.stop(Stage.READ, t);
+                metrics.increment(PipelineMetrics.ROWS_READ);
                 String[] fields = line.split("\\|");
+                t = metrics.stop(Stage.PARSE, t);
                 if (fields.length >= 13) {
                     try {
-                        TripData trip = parseNhaxeTicket(fields);
-                        if (trip != null) {
-                            trips.add(trip);
+                        ParsedTicket ticket = parseNhaxeTicket(fields);
+                        if (ticket == null || !addTrip(ticket)) {
+                            metrics.increment("nhaxe.skipped");
                         }
                     } catch (Exception e) {
                         // Skip malformed lines
-                        continue;
+                        metrics.increment("nhaxe.skipped");
                     }
+                    t = metrics.stop(Stage.RESOLVE, t);
                 }
+                checkpointIfDue(PHASE_NHAXE, ++lineNumber);
             }
         }
+    }
 
-        return trips;
+    /**
+     * Staged variant of the loops above: a reader thread, stagedWorkers threads splitting
+     * lines and resolving routes, and this thread adding trips in file order. addTrip (RNG,
+     * timing stats, trip codes) only runs here, so the trips match a sequential run.
+     */
+    private void processTicketsStaged(String file, String name, Function<String[], ParsedTicket> parser, int phase,
+            long skipLines) throws IOException {
+        StagedLinePipeline<ParsedTicket> pipeline = new StagedLinePipeline<>(stagedWorkers,
+                StagedLinePipeline.DEFAULT_CHUNK_BYTES, metrics);
+        try (InputStream in = metrics.meter(CsvFiles.open(Paths.get(file)))) {
+            pipeline.run(in, 1 + skipLines, line -> {
+                long t = metrics.start();
+                String[] fields = line.split("\\|");
+                t = metrics.stop(Stage.PARSE, t);
+                if (fields.length < 13)
+                    return null;
+                ParsedTicket ticket;
+                try {
+                    ticket = parser.apply(fields);
+                } catch (Exception e) {
+                    ticket = null; // Skip malformed lines
+                }
+                metrics.stop(Stage.RESOLVE, t);
+                if (ticket == null)
+                    metrics.increment(name + ".skipped");
+                return ticket;
+            }, ticket -> {
+                if (!addTrip(ticket))
+                    metrics.increment(name + ".skipped");
+            }, lines -> {
+                try {
+                    checkpointIfDue(phase, skipLines + lines);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
 
-    private TripData parseBenxeTicket(String[] fields) {
-        try {
-            // Extract route info from first field
-            String routeInfo = fields[0].trim();
-            String routeCode = generateRouteCodeFromInfo(routeInfo);
+    // ---- checkpoints ----
+
+    private void checkpointIfDue(int phase, long lines) throws IOException {
+        if (checkpoint == null || !checkpoint.due())
+            return;
+        checkpoint.save(checkpointFingerprint, out -> {
+            out.writeInt(phase);
+            out.writeLong(lines);
+            out.writeLong(timestamps.createdAtEpoch());
+            out.writeLong(malformedTickets); // up to lines, unlike the codec's count (workers run ahead)
+            RunCheckpoint.writeRandom(out, random);
+            out.writeInt(tripCodeSpace);
+            trips.writeTo(out);
+        });
+        System.out.println("Checkpoint: " + trips.size() + " trips, " + (phase == PHASE_BENXE ? "benxe" : "nhaxe")
+                + " line " + lines);
+    }
 
-            RouteInfo route = findMatchingRoute(routeCode, routeInfo);
-            if (route == null)
-                return null;
+    private void readCheckpoint(DataInputStream in, long[] position) throws IOException {
+        position[0] = in.readInt();
+        position[1] = in.readLong();
+        timestamps = new TimestampCodec(in.readLong());
+        malformedTickets = in.readLong();
+        random = RunCheckpoint.readRandom(in);
+        tripCodeSpace = in.readInt();
+        trips.readFrom(in);
+        // Trip codes and timing statistics follow from the restored trips
+        for (int i = 0; i < trips.size(); i++) {
+            generatedTripCodes.set(trips.tripCode(i));
+            timing.recordResolved(parseLongSafe(trips.routes().get(trips.route(i))), trips.departure(i),
+                    trips.arrival(i));
+        }
+    }
 
-            // Extract time and price information
-            String departureTime = fields[5].trim(); // fromHour
-            String arrivalTime = fields[7].trim(); // toHour
-            String priceStr = fields[2].trim(); // price
-            String dateStr = fields[11].trim(); // date
+    // Ticket files, route matching table and staff IDs: a checkpoint only applies to the same inputs
+    private long checkpointFingerprint() throws IOException {
+        long h = Hash64.mix(RunCheckpoint.fileStamp(CsvFiles.resolve(Paths.get(BENXE_INPUT_FILE))),
+                RunCheckpoint.fileStamp(CsvFiles.resolve(Paths.get(NHAXE_INPUT_FILE))));
+        h = Hash64.mix(h, randomRouteFallback ? 1 : 0);
+        for (Map.Entry<String, RouteInfo> entry : routeCodeToInfo.entrySet()) {
+            h = Hash64.mix(h, Hash64.hashChars(entry.getKey(), 0));
+            h = Hash64.mix(h, Hash64.hashChars(entry.getValue().routeId, 0));
+        }
+        for (StringDictionary ids : List.of(trips.vehicles(), trips.drivers(), trips.attendants())) {
+            for (String id : ids.values()) {
+                h = Hash64.mix(h, Hash64.hashChars(id, 0));
+            }
+            h = Hash64.mix(h, ids.size());
+        }
+        return h;
+    }
 
-            // Parse price
-            BigDecimal baseFare = parsePrice(priceStr);
-            if (baseFare == null)
-                return null;
+    private ParsedTicket parseBenxeTicket(String[] fields) {
+        // Extract route info from first field
+        String routeInfo = fields[0].trim();
 
-            // Create trip data
-            TripData trip = new TripData();
-            trip.routeId = route.routeId;
-            trip.vehicleId = getRandomVehicleId();
-            trip.driverId = getRandomDriverId();
-            trip.attendantId = getRandomAttendantId();
-            trip.tripCode = generateUniqueTripCode();
-            trip.departureTime = formatDateTime(dateStr, departureTime);
-            trip.arrivalTime = formatDateTime(dateStr, arrivalTime);
-            trip.baseFare = baseFare;
-
-            return trip;
-        } catch (Exception e) {
-            return null;
-        }
+        // Extract time and price information
+        String departureTime = fields[5].trim(); // fromHour
+        String arrivalTime = fields[7].trim(); // toHour
+        String priceStr = fields[2].trim(); // price
+        String durationStr = fields[9].trim(); // duration
+        String dateStr = fields[11].trim(); // date
+
+        return parseTicket(routeInfo, departureTime, arrivalTime, durationStr, priceStr, dateStr);
     }
 
-    private TripData parseNhaxeTicket(String[] fields) {
-        try {
-            // Extract route info from first field
-            String routeInfo = fields[0].trim();
-            // Remove the [company] prefix
-            if (routeInfo.startsWith("[")) {
-                int endBracket = routeInfo.indexOf("]");
-                if (endBracket != -1) {
-                    routeInfo = routeInfo.substring(endBracket + 1).trim();
-                }
+    private ParsedTicket parseNhaxeTicket(String[] fields) {
+        // Extract route info from first field
+        String routeInfo = fields[0].trim();
+        // Remove the [company] prefix
+        if (routeInfo.startsWith("[")) {
+            int endBracket = routeInfo.indexOf("]");
+            if (endBracket != -1) {
+                routeInfo = routeInfo.substring(endBracket + 1).trim();
             }
+        }
 
+        // Extract time and price information
+        String departureTime = fields[4].trim(); // fromHour
+        String arrivalTime = fields[6].trim(); // toHour
+        String durationStr = fields[8].trim(); // duration
+        String priceStr = fields[9].trim(); // price
+        String dateStr = fields[11].trim(); // date
+
+        return parseTicket(routeInfo, departureTime, arrivalTime, durationStr, priceStr, dateStr);
+    }
+
+    /**
+     * Thread-safe half of ticket processing: route matching and parsing. Returns null when the
+     * ticket can't get a route; an unmatched ticket is still returned (invalid or not) when
+     * random fallback is on, so addTrip draws its route exactly as often as before.
+     */
+    private ParsedTicket parseTicket(String routeInfo, String departureTime, String arrivalTime, String durationStr,
+            String priceStr, String dateStr) {
+        try {
             String routeCode = generateRouteCodeFromInfo(routeInfo);
-            RouteInfo route = findMatchingRoute(routeCode, routeInfo);
-            if (route == null)
+            if (routeCode == null)
                 return null;
 
-            // Extract time and price information
-            String departureTime = fields[4].trim(); // fromHour
-            String arrivalTime = fields[6].trim(); // toHour
-            String priceStr = fields[9].trim(); // price
-            String dateStr = fields[11].trim(); // date
+            ParsedTicket ticket = new ParsedTicket();
+            ticket.route = findMatchingRoute(routeCode);
+            if (ticket.route == null && !(randomRouteFallback && !routeCodeToInfo.isEmpty()))
+                return null;
 
             // Parse price
-            BigDecimal baseFare = parsePrice(priceStr);
-            if (baseFare == null)
-                return null;
+            ticket.baseFare = parsePrice(priceStr);
+            if (ticket.baseFare == FareCodec.INVALID)
+                return ticket;
+
+            // Parse times; malformed dates are counted and the ticket skipped
+            ticket.departure = timestamps.parse(dateStr, departureTime);
+            if (ticket.departure == TimestampCodec.INVALID) {
+                ticket.malformedTime = true;
+                return ticket;
+            }
+            ticket.arrivalMinute = timestamps.parseMinuteOfDay(arrivalTime);
+            if (ticket.arrivalMinute < 0) {
+                ticket.malformedTime = true;
+                return ticket;
+            }
+            // Optional; lets trips of a day or more roll over several days
+            int durationMinutes = TimestampCodec.parseDurationMinutes(durationStr);
+            if (durationMinutes > 0)
+                ticket.minDurationSeconds = Math.max(0L, durationMinutes * 60L - DURATION_SLACK_SECONDS);
 
-            // Create trip data
-            TripData trip = new TripData();
-            trip.routeId = route.routeId;
-            trip.vehicleId = getRandomVehicleId();
-            trip.driverId = getRandomDriverId();
-            trip.attendantId = getRandomAttendantId();
-            trip.tripCode = generateUniqueTripCode();
-            trip.departureTime = formatDateTime(dateStr, departureTime);
-            trip.arrivalTime = formatDateTime(dateStr, arrivalTime);
-            trip.baseFare = baseFare;
-
-            return trip;
+            ticket.valid = true;
+            return ticket;
         } catch (Exception e) {
             return null;
         }
     }
 
+    // Ordered half: random route fallback, arrival, staff and trip code; false if the ticket is skipped
+    private boolean addTrip(ParsedTicket ticket) {
+        RouteInfo route = ticket.route != null ? ticket.route : randomRoute();
+        if (!ticket.valid) {
+            if (ticket.malformedTime)
+                malformedTickets++;
+            return false;
+        }
+
+        // Arrival clock time is relative to departure; overnight trips roll to the next day,
+        // trips of a day or more as many days as the ticket duration needs
+        long arrival = timing.resolveArrival(parseLongSafe(route.routeId), ticket.departure, ticket.arrivalMinute,
+                ticket.minDurationSeconds);
+
+        // Create trip data
+        trips.add(route.routeIndex, getRandomVehicleId(), getRandomDriverId(), getRandomAttendantId(),
+                generateUniqueTripCode(), ticket.departure, arrival, ticket.baseFare);
+        return true;
+    }
+
     private String generateRouteCodeFromInfo(String routeInfo) {
         // Extract origin and destination from route info
         String[] parts = null;
@@ -394,10 +710,12 @@ public class TripGenerator {
         return null;
     }
 
-    private RouteInfo findMatchingRoute(String routeCode, String routeInfo) {
+    // Read-only over routeCodeToInfo, so staged workers can call it concurrently
+    private RouteInfo findMatchingRoute(String routeCode) {
         // Try exact match first
-        if (routeCode != null && routeCodeToInfo.containsKey(routeCode)) {
-            return routeCodeToInfo.get(routeCode);
+        RouteInfo exact = routeCodeToInfo.get(routeCode);
+        if (exact != null) {
+            return exact;
         }
 
         // Try partial matching
@@ -407,100 +725,67 @@ public class TripGenerator {
                 return entry.getValue();
             }
         }
+        return null;
+    }
 
-        // If no match found, use a random route
-        if (!routeCodeToInfo.isEmpty()) {
-            List<RouteInfo> routes = new ArrayList<>(routeCodeToInfo.values());
-            return routes.get(random.nextInt(routes.size()));
-        }
+    // If no match found, use a random route
+    private RouteInfo randomRoute() {
+        List<RouteInfo> routes = new ArrayList<>(routeCodeToInfo.values());
+        return routes.get(random.nextInt(routes.size()));
+    }
 
-        return null;
+    // Prices are VND with '.' grouping ("250.000đ"); returns minor units at FareCodec.SCALE
+    private long parsePrice(String priceStr) {
+        return FareCodec.VND.parseMinorUnits(priceStr);
     }
 
-    private BigDecimal parsePrice(String priceStr) {
-        try {
-            // Remove currency symbols and formatting
-            String cleanPrice = priceStr.replaceAll("[^0-9.]", "");
-            if (cleanPrice.isEmpty())
-                return null;
-            return new BigDecimal(cleanPrice);
-        } catch (Exception e) {
-            return null;
-        }
+    // Staff pickers return dictionary codes in the TripStore columns
+    private int getRandomVehicleId() {
+        return pick(trips.vehicles(), "vehicle");
     }
 
-    private String getRandomVehicleId() {
-        if (vehicleIds.isEmpty()) {
-            System.err.println("Warning: No vehicle IDs loaded from csv_output/vehicle.csv");
-            return generateBigIntId("fallback_vehicle:" + System.nanoTime()).toString();
-        }
-        return vehicleIds.get(random.nextInt(vehicleIds.size()));
+    private int getRandomDriverId() {
+        return pick(trips.drivers(), "driver");
     }
 
-    private String getRandomDriverId() {
-        if (driverIds.isEmpty()) {
-            System.err.println("Warning: No driver IDs loaded from csv_output/driver.csv");
-            return generateBigIntId("fallback_driver:" + System.nanoTime()).toString();
-        }
-        return driverIds.get(random.nextInt(driverIds.size()));
+    private int getRandomAttendantId() {
+        return pick(trips.attendants(), "attendant");
     }
 
-    private String getRandomAttendantId() {
-        if (attendantIds.isEmpty()) {
-            System.err.println("Warning: No attendant IDs loaded from csv_output/attendant.csv");
-            return generateBigIntId("fallback_attendant:" + System.nanoTime()).toString();
+    private int pick(StringDictionary ids, String kind) {
+        // No IDs loaded: a fresh fallback ID per trip, without a draw from random so seeded runs keep their sequence
+        if (ids.isEmpty() || fallbackStaff.contains(kind)) {
+            System.err.println("Warning: No " + kind + " IDs loaded from csv_output/" + kind + ".csv");
+            fallbackStaff.add(kind);
+            return ids.intern(String.valueOf(DeterministicIds.id("fallback_" + kind + ":" + System.nanoTime())));
         }
-        return attendantIds.get(random.nextInt(attendantIds.size()));
+        return random.nextInt(ids.size());
     }
 
-    private String generateUniqueTripCode() {
-        String tripCode;
+    private int generateUniqueTripCode() {
+        if (trips.size() >= tripCodeSpace / 2 && tripCodeSpace <= Integer.MAX_VALUE / 10)
+            tripCodeSpace *= 10; // keeps the retry loop short; codes just get more digits
+        int tripCode;
         do {
-            tripCode = "TRIP" + String.format("%06d", random.nextInt(1000000));
-        } while (generatedTripCodes.contains(tripCode));
-        generatedTripCodes.add(tripCode);
+            tripCode = random.nextInt(tripCodeSpace);
+        } while (generatedTripCodes.get(tripCode));
+        generatedTripCodes.set(tripCode);
         return tripCode;
     }
 
-    private String formatDateTime(String dateStr, String timeStr) {
-        try {
-            // Parse date (format: dd-MM-yyyy)
-            String[] dateParts = dateStr.split("-");
-            if (dateParts.length != 3)
-                return LocalDateTime.now().format(TIMESTAMP_FORMAT);
-
-            String day = dateParts[0];
-            String month = dateParts[1];
-            String year = dateParts[2];
+    private void generateTripCsv() throws IOException {
+        // Stable order: by route id, then trip code (codes are unique, so this also identifies a trip)
+        TripStore.Order order = trips.orderByRouteAndCode();
 
-            // Parse time (format: HH:mm)
-            String[] timeParts = timeStr.split(":");
-            if (timeParts.length != 2)
-                return LocalDateTime.now().format(TIMESTAMP_FORMAT);
-
-            String hour = timeParts[0];
-            String minute = timeParts[1];
-
-            return String.format("%s-%s-%s %s:%s:00", year, month, day, hour, minute);
-        } catch (Exception e) {
-            return LocalDateTime.now().format(TIMESTAMP_FORMAT);
-        }
-    }
-
-    private void generateTripCsv(List<TripData> trips) throws IOException {
-        // Build a stable key for each trip
-        Map<String, TripData> keyToTrip = new LinkedHashMap<>();
-        for (TripData t : trips) {
-            String key = buildTripKey(t);
-            keyToTrip.put(key, t);
-        }
-
-        // Read existing trip.csv (if any) to reuse IDs and find current max
+        // Read existing trip.csv and trip shards (if any) to reuse IDs and find current max
         Path tripPath = Paths.get(TRIP_OUTPUT);
-        Map<String, Long> existingKeyToId = new HashMap<>();
+        long[] reusedIds = new long[trips.size()]; // by sorted position; 0 = new trip
         long maxExistingId = 0L;
-        if (Files.exists(tripPath)) {
-            try (BufferedReader br = Files.newBufferedReader(tripPath, StandardCharsets.UTF_8)) {
+        List<Path> existing = new ArrayList<>(ShardedTableWriter.existingShards(Paths.get(TRIP_SHARD_DIR), "trip"));
+        if (CsvFiles.exists(tripPath))
+            existing.add(CsvFiles.resolve(tripPath));
+        for (Path existingPath : existing) {
+            try (BufferedReader br = CsvFiles.reader(existingPath)) {
                 String header = br.readLine(); // skip header
                 String line;
                 while ((line = br.readLine()) != null) {
@@ -512,17 +797,21 @@ public class TripGenerator {
                         continue;
 
                     // id,route_id,vehicle_id,driver_id,attendant_id,trip_code,departure_time,arrival_time,base_fare,created_at,updated_at,is_deleted,deleted_at,deleted_by
-                    String idStr = cols[0].trim();
-                    String routeId = cols[1].trim();
-                    String tripCode = cols[5].trim();
-                    String departureTime = cols[6].trim();
-
-                    String key = routeId + "|" + tripCode + "|" + departureTime;
-                    long id = parseLongSafe(idStr);
-                    if (id > 0) {
-                        existingKeyToId.put(key, id);
-                        if (id > maxExistingId)
-                            maxExistingId = id;
+                    long id = parseLongSafe(cols[0].trim());
+                    if (id <= 0)
+                        continue;
+                    if (id > maxExistingId)
+                        maxExistingId = id;
+
+                    // Same trip = same route, trip code and departure time
+                    int routeIndex = trips.routes().indexOf(cols[1].trim());
+                    int tripCode = TripStore.parseTripCode(cols[5].trim());
+                    if (routeIndex < 0 || tripCode < 0)
+                        continue;
+                    int position = order.find(routeIndex, tripCode);
+                    if (position >= 0
+                            && TimestampCodec.format(trips.departure(order.trip(position))).equals(cols[6].trim())) {
+                        reusedIds[position] = id;
                     }
                 }
             }
@@ -530,55 +819,135 @@ public class TripGenerator {
 
         // Start sequence at max(existing, 1499)+1
         long nextId = Math.max(maxExistingId, 1499L) + 1L;
+        long[] tripIds = new long[trips.size()]; // by trip index
+        for (int position = 0; position < trips.size(); position++) {
+            tripIds[order.trip(position)] = reusedIds[position] > 0 ? reusedIds[position] : nextId++;
+        }
+
+        String currentTime = timestamps.createdAt();
+        if (shards > 0) {
+            writeTripShards(tripIds, currentTime);
+            removeStaleTripOutput();
+            return;
+        }
 
-        // Assign/reuse IDs for all trips, in stable order
-        List<String> keys = new ArrayList<>(keyToTrip.keySet());
-        Collections.sort(keys); // stable/idempotent ordering
+        // Now write (overwrite) trip.csv, via a temp file so a crash never leaves a partial one
+        Path target = CsvFiles.target(tripPath);
+        Path tmpPath = target.resolveSibling(target.getFileName() + ".tmp");
+        try (RowEncoder writer = new RowEncoder(tmpPath, ',', false, CsvFiles.outputCodec())) {
+            writer.writeLine(TRIP_HEADER);
 
-        Map<String, Long> finalKeyToId = new LinkedHashMap<>();
-        for (String key : keys) {
-            Long reused = existingKeyToId.get(key);
-            if (reused != null) {
-                finalKeyToId.put(key, reused);
-            } else {
-                finalKeyToId.put(key, nextId++);
+            long t = metrics.start();
+            for (int position = 0; position < trips.size(); position++) {
+                int trip = order.trip(position);
+                writeTripRow(writer, trip, tripIds[trip], currentTime);
+                t = metrics.stop(Stage.WRITE, t);
             }
+            metrics.add(PipelineMetrics.ROWS_WRITTEN, writer.rowCount());
+            metrics.add(PipelineMetrics.BYTES_WRITTEN, writer.bytesWritten());
         }
+        Files.move(tmpPath, CsvFiles.prepareTarget(tripPath), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        removeStaleTripOutput();
+    }
+
+    // trip.csv and the csv_output/trip/ shards are alternatives: once one is written, the other is stale
+    private void removeStaleTripOutput() throws IOException {
+        if (shards > 0) {
+            CsvFiles.delete(Paths.get(TRIP_OUTPUT));
+        } else {
+            ShardedTableWriter.delete(Paths.get(TRIP_SHARD_DIR), "trip");
+        }
+    }
 
-        // Now write (overwrite) trip.csv
-        try (PrintWriter writer = new PrintWriter(new FileWriter(TRIP_OUTPUT))) {
-            writer.println(
-                    "id,route_id,vehicle_id,driver_id,attendant_id,trip_code,departure_time,arrival_time,base_fare,created_at,updated_at,is_deleted,deleted_at,deleted_by");
-
-            String currentTime = LocalDateTime.now().format(TIMESTAMP_FORMAT);
-
-            for (String key : keys) {
-                TripData trip = keyToTrip.get(key);
-                long id = finalKeyToId.get(key);
-
-                writer.printf(Locale.ROOT,
-                        "%d,%s,%s,%s,%s,%s,%s,%s,%.2f,%s,,%s,,%n",
-                        id,
-                        trip.routeId,
-                        trip.vehicleId,
-                        trip.driverId,
-                        trip.attendantId,
-                        trip.tripCode,
-                        trip.departureTime,
-                        trip.arrivalTime,
-                        trip.baseFare,
-                        currentTime,
-                        "false");
+    /**
+     * Sharded variant of the trip.csv write: rows are partitioned by the shard key into
+     * csv_output/trip/trip-NNN.csv, each in (route_id, departure_time) order, and written by
+     * one task per shard. IDs are the ones trip.csv would get.
+     */
+    private void writeTripShards(long[] tripIds, String currentTime) throws IOException {
+        int[] byRouteAndDeparture = trips.orderByRouteIdAndDeparture();
+        int[] shardOf = new int[trips.size()];
+        int[] counts = new int[shards];
+        for (int trip = 0; trip < trips.size(); trip++) {
+            shardOf[trip] = ShardedTableWriter.shardOf(shardKeyValue(trip, tripIds[trip]), shards);
+            counts[shardOf[trip]]++;
+        }
+        int[][] shardTrips = new int[shards][];
+        for (int s = 0; s < shards; s++) {
+            shardTrips[s] = new int[counts[s]];
+            counts[s] = 0;
+        }
+        for (int trip : byRouteAndDeparture) {
+            shardTrips[shardOf[trip]][counts[shardOf[trip]]++] = trip;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(shards, Runtime.getRuntime().availableProcessors()));
+        try (ShardedTableWriter writer = new ShardedTableWriter(Paths.get(TRIP_SHARD_DIR), "trip", TRIP_HEADER, ',',
+                shards, shardKey)) {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int s = 0; s < shards; s++) {
+                RowEncoder shard = writer.shard(s);
+                int[] rows = shardTrips[s];
+                tasks.add(pool.submit(() -> {
+                    long t = metrics.start();
+                    for (int trip : rows) {
+                        writeTripRow(shard, trip, tripIds[trip], currentTime);
+                        t = metrics.stop(Stage.WRITE, t);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
             }
+            metrics.add(PipelineMetrics.ROWS_WRITTEN, writer.rowCount());
+            metrics.add(PipelineMetrics.BYTES_WRITTEN, writer.bytesWritten());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing trip shards", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        System.out.println("Wrote " + trips.size() + " trips to " + shards + " shards in " + TRIP_SHARD_DIR);
+    }
+
+    private String shardKeyValue(int trip, long id) {
+        switch (shardKey) {
+            case "id":
+                return String.valueOf(id);
+            case "vehicle_id":
+                return trips.vehicles().get(trips.vehicle(trip));
+            case "driver_id":
+                return trips.drivers().get(trips.driver(trip));
+            case "attendant_id":
+                return trips.attendants().get(trips.attendant(trip));
+            default:
+                return trips.routes().get(trips.route(trip));
         }
     }
 
-    // ---- helpers ----
-    private static String buildTripKey(TripData t) {
-        // key fields that define a unique trip
-        return t.routeId + "|" + t.tripCode + "|" + t.departureTime;
+    private void writeTripRow(RowEncoder writer, int trip, long id, String currentTime) throws IOException {
+        writer.appendLong(id)
+                .appendString(trips.routes().get(trips.route(trip)))
+                .appendString(trips.vehicles().get(trips.vehicle(trip)))
+                .appendString(trips.drivers().get(trips.driver(trip)))
+                .appendString(trips.attendants().get(trips.attendant(trip)))
+                .appendPaddedLong(TripStore.TRIP_CODE_PREFIX, trips.tripCode(trip), TripStore.TRIP_CODE_DIGITS)
+                .appendTimestamp(trips.departure(trip))
+                .appendTimestamp(trips.arrival(trip))
+                .appendDecimal(trips.fare(trip), FareCodec.SCALE)
+                .appendString(currentTime)
+                .appendEmpty() // updated_at
+                .appendString("false") // is_deleted
+                .appendEmpty() // deleted_at
+                .appendEmpty() // deleted_by
+                .endRow();
     }
 
+    // ---- helpers ----
     private static long parseLongSafe(String s) {
         try {
             return (s == null || s.isEmpty()) ? 0L : Long.parseLong(s.trim());
@@ -593,16 +962,17 @@ public class TripGenerator {
         String routeCode;
         String originId;
         String destinationId;
+        int routeIndex; // code in the TripStore route dictionary
     }
 
-    private static class TripData {
-        String routeId;
-        String vehicleId;
-        String driverId;
-        String attendantId;
-        String tripCode;
-        String departureTime;
-        String arrivalTime;
-        BigDecimal baseFare;
+    // Output of parseTicket, handed from the staged workers to addTrip
+    private static class ParsedTicket {
+        RouteInfo route; // null: unmatched, addTrip draws a random route
+        boolean valid; // price and times parsed
+        long baseFare;
+        long departure;
+        int arrivalMinute;
+        long minDurationSeconds; // ticket duration less slack, 0 if unknown
+        boolean malformedTime; // date or time unparseable; counted by addTrip
     }
 }
\ No newline at end of file
@@ -1,8 +1,10 @@
 package csvgenerator;
 
 import java.io.*;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.regex.Pattern;
+import csvgenerator.PipelineMetrics.Stage;
 
 /**
  * Address Processor for matching benxe addresses with ward data
@@ -16,13 +18,13 @@ public class AddressProcessor {
     private static final String WARD_FILE = "csv_output/ward.csv";
     private static final String OUTPUT_FILE = "benxe_addresses_with_ward_ids.csv";
     private static final String SEPARATOR = ",";
-    private static final String CSV_SEPARATOR = ";";
     
     // Data structures to hold CSV data
     private Map<String, Province> provinces = new HashMap<>();
     private Map<String, District> districts = new HashMap<>();
     private Map<String, Ward> wards = new HashMap<>();
     private List<Address> addresses = new ArrayList<>();
+    private PipelineMetrics metrics;
     
     // Data classes
     static class Province {
@@ -95,31 +97,39 @@ public class AddressProcessor {
     }
     
     public void processAddresses() throws IOException {
-        // Load all CSV data
-        loadProvinces();
-        loadDistricts();
-        loadWards();
-        loadAddresses();
-        
-        // Match addresses with wards
-        matchAddressesWithWards();
-        
-        // Generate output CSV
-        generateOutputCsv();
+        try (PipelineMetrics runMetrics = new PipelineMetrics("address")) {
+            metrics = runMetrics;
+
+            // Load all CSV data
+            long t = metrics.start();
+            loadProvinces();
+            loadDistricts();
+            loadWards();
+            loadAddresses();
+            metrics.stop(Stage.READ, t);
+            metrics.add(PipelineMetrics.ROWS_READ, addresses.size());
+
+            // Match addresses with wards
+            matchAddressesWithWards();
+
+            // Generate output CSV
+            t = metrics.start();
+            generateOutputCsv();
+            metrics.stop(Stage.WRITE, t);
+            metrics.add(PipelineMetrics.ROWS_WRITTEN, addresses.size());
+        }
     }
     
     private void loadProvinces() throws IOException {
         System.out.println("Loading provinces...");
-        try (BufferedReader reader = new BufferedReader(new FileReader(PROVINCE_FILE))) {
-            String line = reader.readLine(); // Skip header
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(CSV_SEPARATOR);
-                if (parts.length >= 7) {
-                    String id = parts[0];
-                    String name = parts[2];
-                    String codeName = parts[6];
-                    provinces.put(normalizeText(name), new Province(id, name, codeName));
-                }
+        // Reference tables come from their memory-mapped ReferenceSnapshot instead of re-parsing the CSV text
+        ReferenceSnapshot table = ReferenceSnapshot.forCsv(Paths.get(PROVINCE_FILE));
+        if (table.columnCount() >= 7) {
+            for (int row = 0; row < table.rowCount(); row++) {
+                String id = table.getString(row, 0);
+                String name = table.getString(row, 2);
+                String codeName = table.getString(row, 6);
+                provinces.put(normalizeText(name), new Province(id, name, codeName));
             }
         }
         System.out.println("Loaded " + provinces.size() + " provinces");
@@ -127,17 +137,14 @@ public class AddressProcessor {
     
     private void loadDistricts() throws IOException {
         System.out.println("Loading districts...");
-        try (BufferedReader reader = new BufferedReader(new FileReader(DISTRICT_FILE))) {
-            String line = reader.readLine(); // Skip header
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(CSV_SEPARATOR);
-                if (parts.length >= 14) {
-                    String id = parts[0];
-                    String name = parts[2];
-                    String codeName = parts[6];
-                    String provinceId = parts[13];
-                    districts.put(normalizeText(name), new District(id, name, codeName, provinceId));
-                }
+        ReferenceSnapshot table = ReferenceSnapshot.forCsv(Paths.get(DISTRICT_FILE));
+        if (table.columnCount() >= 14) {
+            for (int row = 0; row < table.rowCount(); row++) {
+                String id = table.getString(row, 0);
+                String name = table.getString(row, 2);
+                String codeName = table.getString(row, 6);
+                String provinceId = table.getString(row, 13);
+                districts.put(normalizeText(name), new District(id, name, codeName, provinceId));
             }
         }
         System.out.println("Loaded " + districts.size() + " districts");
@@ -145,17 +152,14 @@ public class AddressProcessor {
     
     private void loadWards() throws IOException {
         System.out.println("Loading wards...");
-        try (BufferedReader reader = new BufferedReader(new FileReader(WARD_FILE))) {
-            String line = reader.readLine(); // Skip header
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(CSV_SEPARATOR);
-                if (parts.length >= 14) {
-                    String id = parts[0];
-                    String name = parts[2];
-                    String codeName = parts[6];
-                    String districtId = parts[13];
-                    wards.put(normalizeText(name), new Ward(id, name, codeName, districtId));
-                }
+        ReferenceSnapshot table = ReferenceSnapshot.forCsv(Paths.get(WARD_FILE));
+        if (table.columnCount() >= 14) {
+            for (int row = 0; row < table.rowCount(); row++) {
+                String id = table.getString(row, 0);
+                String name = table.getString(row, 2);
+                String codeName = table.getString(row, 6);
+                String districtId = table.getString(row, 13);
+                wards.put(normalizeText(name), new Ward(id, name, codeName, districtId));
             }
         }
         System.out.println("Loaded " + wards.size() + " wards");
@@ -163,7 +167,7 @@ public class AddressProcessor {
     
     private void loadAddresses() throws IOException {
         System.out.println("Loading addresses...");
-        try (BufferedReader reader = new BufferedReader(new FileReader(INPUT_FILE))) {
+        try (BufferedReader reader = CsvFiles.reader(Paths.get(INPUT_FILE))) {
             String line = reader.readLine(); // Skip header
             while ((line = reader.readLine()) != null) {
                 String[] parts = parseCSVLine(line);
@@ -180,7 +184,9 @@ public class AddressProcessor {
         int matchedCount = 0;
         
         for (Address address : addresses) {
+            long t = metrics.start();
             String wardId = findWardId(address);
+            metrics.stop(Stage.RESOLVE, t);
             if (wardId != null && !wardId.isEmpty()) {
                 address.wardId = wardId;
                 matchedCount++;
@@ -209,7 +215,7 @@ public class AddressProcessor {
         }
 
         if (matchedProvince == null) {
-            System.out.println("No province match for: " + address.province);
+            metrics.increment("match.no_province");
             return null;
         }
 
@@ -251,7 +257,7 @@ public class AddressProcessor {
                 // Found district, now find its province
                 for (Province province : provinces.values()) {
                     if (province.id.equals(district.provinceId)) {
-                        System.out.println("Found province by district match: " + district.name + " -> " + province.name);
+                        metrics.increment("province.by_district");
                         return province;
                     }
                 }
@@ -261,7 +267,7 @@ public class AddressProcessor {
                 // Found district, now find its province
                 for (Province province : provinces.values()) {
                     if (province.id.equals(district.provinceId)) {
-                        System.out.println("Found province by partial district match: " + district.name + " -> " + province.name);
+                        metrics.increment("province.by_partial_district");
                         return province;
                     }
                 }
@@ -271,7 +277,7 @@ public class AddressProcessor {
         // Also check if any part of the address contains a known province name
         for (Map.Entry<String, Province> entry : provinces.entrySet()) {
             if (addressText.contains(entry.getKey())) {
-                System.out.println("Found province in address text: " + entry.getValue().name);
+                metrics.increment("province.in_address_text");
                 return entry.getValue();
             }
         }
@@ -288,7 +294,7 @@ public class AddressProcessor {
                     if (addressText.contains(wardName)) {
                         address.matchedWard = ward.name;
                         address.matchedDistrict = district.name;
-                        System.out.println("Direct ward match: " + ward.name + " for " + address.stationName);
+                        metrics.increment("match.direct_ward");
                         return ward.id;
                     }
                 }
@@ -302,12 +308,8 @@ public class AddressProcessor {
         for (District district : provinceDistricts) {
             String districtName = normalizeText(district.name);
 
-            // Debug output
-            System.out.println("Checking district: '" + district.name + "' (normalized: '" + districtName + "') against address: '" + addressText + "'");
-
             // Try exact match first
             if (addressText.contains(districtName)) {
-                System.out.println("Found exact district match: " + district.name);
                 // Found district, now get random ward from this district
                 List<Ward> districtWards = new ArrayList<>();
                 for (Ward ward : wards.values()) {
@@ -320,7 +322,7 @@ public class AddressProcessor {
                     Ward randomWard = districtWards.get(new Random().nextInt(districtWards.size()));
                     address.matchedWard = randomWard.name;
                     address.matchedDistrict = district.name;
-                    System.out.println("District match -> random ward: " + randomWard.name + " in " + district.name + " for " + address.stationName);
+                    metrics.increment("match.district");
                     return randomWard.id;
                 }
             }
@@ -331,7 +333,6 @@ public class AddressProcessor {
 
             // Check if the clean district name (without prefix) is in the address
             if (cleanDistrictName.length() > 3 && addressText.contains(cleanDistrictName)) {
-                System.out.println("Found clean district match: " + district.name + " (matched on: " + cleanDistrictName + ")");
                 // Found district, now get random ward from this district
                 List<Ward> districtWards = new ArrayList<>();
                 for (Ward ward : wards.values()) {
@@ -344,7 +345,7 @@ public class AddressProcessor {
                     Ward randomWard = districtWards.get(new Random().nextInt(districtWards.size()));
                     address.matchedWard = randomWard.name;
                     address.matchedDistrict = district.name;
-                    System.out.println("District match -> random ward: " + randomWard.name + " in " + district.name + " for " + address.stationName);
+                    metrics.increment("match.district_clean");
                     return randomWard.id;
                 }
             }
@@ -370,7 +371,7 @@ public class AddressProcessor {
             Ward randomWard = allProvinceWards.get(new Random().nextInt(allProvinceWards.size()));
             address.matchedWard = randomWard.name;
             address.matchedDistrict = wardToDistrictMap.get(randomWard.id);
-            System.out.println("Province fallback -> random ward: " + randomWard.name + " in " + address.matchedDistrict + " for " + address.stationName);
+            metrics.increment("match.province_fallback");
             return randomWard.id;
         }
 
@@ -379,7 +380,7 @@ public class AddressProcessor {
     
     private void generateOutputCsv() throws IOException {
         System.out.println("Generating output CSV...");
-        try (PrintWriter writer = new PrintWriter(new FileWriter(OUTPUT_FILE))) {
+        try (PrintWriter writer = new PrintWriter(CsvFiles.writer(Paths.get(OUTPUT_FILE)))) {
             // Write header
             writer.println("station_slug,station_name,address,province,ward_id,matched_ward,matched_district");
             
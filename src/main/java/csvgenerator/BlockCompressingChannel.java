@@ -0,0 +1,131 @@
+package csvgenerator;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Channel that compresses everything written to it in fixed-size blocks on a shared pool
+ * of worker threads and writes the compressed frames to target in input order.
+ * The writer only copies bytes into the current block; up to maxPending blocks are in
+ * flight before a write waits for the oldest one, so memory stays at about
+ * (maxPending + 1) blocks per channel.
+ * Pool size: -Dcsv.compression.threads (default: available processors).
+ * Block size: -Dcsv.compression.block=<bytes> (default 1 MiB).
+ */
+public final class BlockCompressingChannel implements WritableByteChannel {
+
+    public static final int DEFAULT_BLOCK_BYTES = Integer.getInteger("csv.compression.block", 1 << 20);
+
+    private static final int THREADS = Math.max(1,
+            Integer.getInteger("csv.compression.threads", Runtime.getRuntime().availableProcessors()));
+    private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(THREADS, r -> {
+        Thread t = new Thread(r, "compress-" + THREAD_IDS.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final WritableByteChannel target;
+    private final CompressionCodec codec;
+    private final int blockBytes;
+    private final int maxPending;
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private byte[] block;
+    private int filled;
+    private boolean submittedAny;
+    private boolean open = true;
+
+    public BlockCompressingChannel(WritableByteChannel target, CompressionCodec codec) {
+        this(target, codec, DEFAULT_BLOCK_BYTES);
+    }
+
+    public BlockCompressingChannel(WritableByteChannel target, CompressionCodec codec, int blockBytes) {
+        this.target = target;
+        this.codec = codec;
+        this.blockBytes = Math.max(4096, blockBytes);
+        this.maxPending = THREADS * 2;
+        this.block = new byte[this.blockBytes];
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (!open)
+            throw new ClosedChannelException();
+        int written = src.remaining();
+        while (src.hasRemaining()) {
+            int n = Math.min(src.remaining(), blockBytes - filled);
+            src.get(block, filled, n);
+            filled += n;
+            if (filled == blockBytes)
+                submit();
+        }
+        return written;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /** Compresses the last partial block, writes every frame in order and closes target. */
+    @Override
+    public void close() throws IOException {
+        if (!open)
+            return;
+        open = false;
+        try {
+            // An empty output still gets one (empty) frame, so it decodes as an empty file
+            if (filled > 0 || !submittedAny)
+                submit();
+            while (!pending.isEmpty()) {
+                writeOldest();
+            }
+        } finally {
+            for (Future<byte[]> frame : pending) {
+                frame.cancel(true);
+            }
+            pending.clear();
+            target.close();
+        }
+    }
+
+    private void submit() throws IOException {
+        byte[] data = block;
+        int length = filled;
+        pending.add(POOL.submit(() -> codec.compressBlock(data, 0, length)));
+        submittedAny = true;
+        block = new byte[blockBytes];
+        filled = 0;
+        while (pending.size() > maxPending) {
+            writeOldest();
+        }
+    }
+
+    private void writeOldest() throws IOException {
+        byte[] frame;
+        try {
+            frame = pending.poll().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException("Block compression failed: " + e.getCause(), e.getCause());
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+}
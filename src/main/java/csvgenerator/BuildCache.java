@@ -0,0 +1,169 @@
+package csvgenerator;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Content-hash build cache for csv_output.
+ * Each stage fingerprints its input files (Hash64 over mmap'd bytes) and config values;
+ * after a successful run the fingerprint and a size/mtime stamp of the outputs are
+ * stored in csv_output/.build-manifest. A later run with the same fingerprint and
+ * untouched outputs is a no-op, so created_at is not restamped.
+ * File hashes are reused while a file's size and mtime are unchanged, so checking a
+ * large unchanged input costs a stat, not a read.
+ * Paths are plain names: inputs are hashed in whichever variant exists (CsvFiles.resolve),
+ * outputs are stamped in the variant the current -Dcsv.compression writes, so changing
+ * the setting reruns the stages.
+ * Disable with -Dbuild.cache=false.
+ *
+ * Usage:
+ *   BuildCache cache = BuildCache.in(outputDir);
+ *   BuildCache.Fingerprint fp = cache.fingerprint("CsvGenerator").file(input).config("separator", ";");
+ *   if (cache.isUpToDate(fp, outputs)) return;
+ *   ... generate ...
+ *   cache.record(fp, outputs);
+ */
+public final class BuildCache {
+
+    public static final String MANIFEST_NAME = ".build-manifest";
+
+    // Stages may run concurrently (PipelineRunner); all manifest access goes through this lock
+    private static final Object LOCK = new Object();
+
+    private final Path manifest;
+    private final boolean enabled;
+
+    private BuildCache(Path manifest) {
+        this.manifest = manifest;
+        this.enabled = !"false".equalsIgnoreCase(System.getProperty("build.cache", "true"));
+    }
+
+    public static BuildCache in(Path outputDir) {
+        return new BuildCache(outputDir.resolve(MANIFEST_NAME));
+    }
+
+    public Fingerprint fingerprint(String stage) {
+        return new Fingerprint(stage);
+    }
+
+    /** True if the stage last ran with this fingerprint and its outputs are as it left them. */
+    public boolean isUpToDate(Fingerprint fingerprint, Path... outputs) throws IOException {
+        if (!enabled)
+            return false;
+        synchronized (LOCK) {
+            Properties entries = load();
+            String recorded = entries.getProperty("stage." + fingerprint.stage);
+            if (recorded == null)
+                return false;
+            String expected = Long.toHexString(fingerprint.value(entries)) + "," + Long.toHexString(outputStamp(outputs));
+            save(entries); // keep refreshed file hashes
+            return recorded.equals(expected);
+        }
+    }
+
+    /** Records a successful run; call after the outputs are closed. */
+    public void record(Fingerprint fingerprint, Path... outputs) throws IOException {
+        if (!enabled)
+            return;
+        synchronized (LOCK) {
+            Properties entries = load();
+            entries.setProperty("stage." + fingerprint.stage,
+                    Long.toHexString(fingerprint.value(entries)) + "," + Long.toHexString(outputStamp(outputs)));
+            save(entries);
+        }
+    }
+
+    /** Combined fingerprint of a stage's input files and config. */
+    public static final class Fingerprint {
+        private final String stage;
+        private final List<Path> files = new ArrayList<>();
+        private final StringBuilder config = new StringBuilder();
+
+        private Fingerprint(String stage) {
+            this.stage = stage;
+        }
+
+        public Fingerprint file(Path path) {
+            files.add(path);
+            return this;
+        }
+
+        public Fingerprint config(String key, Object value) {
+            config.append(key).append('=').append(value).append('\n');
+            return this;
+        }
+
+        private long value(Properties entries) throws IOException {
+            long h = Hash64.hash(config.toString().getBytes(StandardCharsets.UTF_8), 0);
+            for (Path file : files) {
+                h = Hash64.mix(h, Hash64.hash(file.toString().getBytes(StandardCharsets.UTF_8), 0));
+                h = Hash64.mix(h, fileHash(CsvFiles.resolve(file), entries));
+            }
+            return h;
+        }
+    }
+
+    // ---- file hashes ----
+
+    /** Content hash of a file, reusing the manifest entry while size and mtime match. */
+    private static long fileHash(Path file, Properties entries) throws IOException {
+        if (!Files.exists(file))
+            return 0L;
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        String stamp = attributes.size() + "," + attributes.lastModifiedTime().toMillis();
+        String key = "file." + file.toAbsolutePath().normalize();
+        String cached = entries.getProperty(key);
+        if (cached != null && cached.startsWith(stamp + ",")) {
+            return Long.parseUnsignedLong(cached.substring(stamp.length() + 1), 16);
+        }
+        long hash = Hash64.hashFile(file, 0);
+        entries.setProperty(key, stamp + "," + Long.toHexString(hash));
+        return hash;
+    }
+
+    /** Cheap stamp of the outputs (existence, size, mtime) to notice edits or deletions. */
+    private static long outputStamp(Path... outputs) throws IOException {
+        long h = 0;
+        for (Path plain : outputs) {
+            Path output = CsvFiles.target(plain);
+            if (Files.exists(output)) {
+                BasicFileAttributes attributes = Files.readAttributes(output, BasicFileAttributes.class);
+                h = Hash64.mix(h, attributes.size());
+                h = Hash64.mix(h, attributes.lastModifiedTime().toMillis());
+            } else {
+                h = Hash64.mix(h, -1L);
+            }
+        }
+        return h;
+    }
+
+    // ---- manifest ----
+
+    private Properties load() throws IOException {
+        Properties entries = new Properties();
+        if (Files.exists(manifest)) {
+            try (Reader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+                entries.load(reader);
+            }
+        }
+        return entries;
+    }
+
+    private void save(Properties entries) throws IOException {
+        Files.createDirectories(manifest.toAbsolutePath().getParent());
+        Path tmp = manifest.resolveSibling(MANIFEST_NAME + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            entries.store(writer, "Build cache: stage fingerprints and input file hashes");
+        }
+        Files.move(tmp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,28 @@
+package csvgenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stream compression format for CSV outputs and inputs (see CsvFiles).
+ * Output is compressed in independent blocks on worker threads (BlockCompressingChannel),
+ * so a format qualifies only if concatenated frames decode as one stream, as gzip members
+ * and zstd frames do. Implementations must be thread-safe.
+ */
+public interface CompressionCodec {
+
+    /** Name used in -Dcsv.compression and shard manifests, e.g. "gzip". */
+    String name();
+
+    /** File name suffix including the dot, e.g. ".gz". */
+    String extension();
+
+    /** True if a file starting with these bytes is in this format. */
+    boolean matches(byte[] head, int length);
+
+    /** One self-contained frame holding data[offset, offset + length). */
+    byte[] compressBlock(byte[] data, int offset, int length) throws IOException;
+
+    /** Decoding stream over in, across any number of concatenated frames. */
+    InputStream decompress(InputStream in) throws IOException;
+}
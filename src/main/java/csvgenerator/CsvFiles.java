@@ -0,0 +1,274 @@
+package csvgenerator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Opens generator inputs and outputs by their plain name ("csv_output/route.csv"),
+ * with optional compression.
+ * - Writing: -Dcsv.compression=gzip (or any registered codec name, or the class name of a
+ *   CompressionCodec) writes "<name><extension>", e.g. route.csv.gz, compressed in parallel
+ *   blocks; the default "none" writes the plain file. Creating one variant deletes the other,
+ *   so a reader never picks up a stale copy.
+ * - Reading: the plain file if it exists, else a compressed variant; the codec is detected
+ *   from the file's first bytes, so inputs (ticket files too) may be compressed or not
+ *   regardless of the setting.
+ * Text is UTF-8 throughout.
+ */
+public final class CsvFiles {
+
+    private static final int MAGIC_BYTES = 16;
+
+    private static final Map<String, CompressionCodec> CODECS = new ConcurrentHashMap<>();
+    static {
+        register(new GzipCodec());
+    }
+
+    private static final CompressionCodec OUTPUT_CODEC = configuredCodec();
+
+    private CsvFiles() {
+    }
+
+    /** Makes a codec available by name, for -Dcsv.compression and for detecting inputs. */
+    public static void register(CompressionCodec codec) {
+        CODECS.put(codec.name().toLowerCase(Locale.ROOT), codec);
+    }
+
+    /** Codec for outputs, or null when writing plain files. */
+    public static CompressionCodec outputCodec() {
+        return OUTPUT_CODEC;
+    }
+
+    /** "none" or the output codec's name, e.g. for build-cache fingerprints. */
+    public static String compressionName() {
+        return OUTPUT_CODEC == null ? "none" : OUTPUT_CODEC.name();
+    }
+
+    /** The file an output with this plain name is written to under the current setting. */
+    public static Path target(Path plain) {
+        return OUTPUT_CODEC == null ? plain : sibling(plain, OUTPUT_CODEC.extension());
+    }
+
+    /** The existing file for a plain name: itself, else a compressed variant, else plain. */
+    public static Path resolve(Path plain) {
+        if (Files.exists(plain))
+            return plain;
+        for (CompressionCodec codec : CODECS.values()) {
+            Path compressed = sibling(plain, codec.extension());
+            if (Files.exists(compressed))
+                return compressed;
+        }
+        return plain;
+    }
+
+    public static boolean exists(Path plain) {
+        return Files.exists(resolve(plain));
+    }
+
+    /** Decompressed size is unknown without reading, so this is the size on disk. */
+    public static long size(Path plain) throws IOException {
+        Path file = resolve(plain);
+        return Files.exists(file) ? Files.size(file) : 0L;
+    }
+
+    // ---- reading ----
+
+    /** Decompressing stream over the existing variant of plain. */
+    public static InputStream open(Path plain) throws IOException {
+        Path file = resolve(plain);
+        BufferedInputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16);
+        try {
+            CompressionCodec codec = detect(in);
+            return codec == null ? in : codec.decompress(in);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    public static BufferedReader reader(Path plain) throws IOException {
+        return new BufferedReader(new InputStreamReader(open(plain), StandardCharsets.UTF_8));
+    }
+
+    /** Codec of an existing file from its first bytes (its extension if it is empty), null if plain. */
+    public static CompressionCodec codecOf(Path file) throws IOException {
+        try (BufferedInputStream in = new BufferedInputStream(Files.newInputStream(file), MAGIC_BYTES)) {
+            CompressionCodec codec = detect(in);
+            if (codec != null || Files.size(file) > 0)
+                return codec;
+        }
+        for (CompressionCodec codec : CODECS.values()) {
+            if (file.getFileName().toString().endsWith(codec.extension()))
+                return codec;
+        }
+        return null;
+    }
+
+    // ---- writing ----
+
+    /** Fresh output for plain (truncating), compressed per the setting. */
+    public static RowEncoder encoder(Path plain, char delimiter) throws IOException {
+        Path file = prepareTarget(plain);
+        return new RowEncoder(file, delimiter, false, OUTPUT_CODEC);
+    }
+
+    /**
+     * Appends to the existing variant of plain in that file's own format (compressed
+     * frames can be appended to); a missing file is created per the setting.
+     */
+    public static RowEncoder appender(Path plain, char delimiter) throws IOException {
+        Path file = resolve(plain);
+        if (!Files.exists(file))
+            return new RowEncoder(prepareTarget(plain), delimiter, true, OUTPUT_CODEC);
+        return new RowEncoder(file, delimiter, true, codecOf(file));
+    }
+
+    /** Text writer for generators that build lines themselves (PrintWriter / BufferedWriter). */
+    public static BufferedWriter writer(Path plain) throws IOException {
+        Path file = prepareTarget(plain);
+        return textWriter(channel(file, false, OUTPUT_CODEC));
+    }
+
+    /** Text counterpart of appender. */
+    public static BufferedWriter appendWriter(Path plain) throws IOException {
+        Path file = resolve(plain);
+        if (!Files.exists(file))
+            return writer(plain);
+        return textWriter(channel(file, true, codecOf(file)));
+    }
+
+    /** Channel to path itself (no name mapping), compressing with codec unless it is null. */
+    static WritableByteChannel channel(Path path, boolean append, CompressionCodec codec) throws IOException {
+        FileChannel file = append
+                ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+                : FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+        return codec == null ? file : new BlockCompressingChannel(file, codec);
+    }
+
+    /** Writes one part of a parallel output to partFile(output, part) and returns that file. */
+    public interface PartWriter {
+        Path write(int part) throws IOException;
+    }
+
+    /** Scratch file for one part of output, next to it. */
+    public static Path partFile(Path output, int part) {
+        return output.resolveSibling(output.getFileName() + ".part" + part);
+    }
+
+    /**
+     * Writes parts 0..parts-1 on threads workers and appends them to output (the file itself) in
+     * order, deleting each part once copied; at most 2 parts per thread are on disk at a time.
+     * Compressed parts concatenate like plain ones.
+     */
+    public static void appendParts(Path output, int parts, int threads, PartWriter writer) throws Exception {
+        int window = Math.max(1, threads) * 2;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        ArrayDeque<Future<Path>> pending = new ArrayDeque<>();
+        try (FileChannel target = FileChannel.open(output, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            int submitted = 0;
+            for (int done = 0; done < parts; done++) {
+                while (submitted < parts && pending.size() < window) {
+                    int part = submitted++;
+                    pending.add(pool.submit(() -> writer.write(part)));
+                }
+                Path part = pending.poll().get();
+                try (FileChannel source = FileChannel.open(part, StandardOpenOption.READ)) {
+                    long size = source.size();
+                    for (long position = 0; position < size; ) {
+                        position += source.transferTo(position, size - position, target);
+                    }
+                }
+                Files.delete(part);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Deletes plain and its compressed variants, e.g. an output that another one replaces. */
+    public static void delete(Path plain) throws IOException {
+        for (Path variant : variants(plain)) {
+            Files.deleteIfExists(variant);
+        }
+    }
+
+    /** target(plain), after deleting the variants the new output replaces. */
+    public static Path prepareTarget(Path plain) throws IOException {
+        Path target = target(plain);
+        for (Path variant : variants(plain)) {
+            if (!variant.equals(target))
+                Files.deleteIfExists(variant);
+        }
+        return target;
+    }
+
+    // ---- helpers ----
+
+    private static BufferedWriter textWriter(WritableByteChannel channel) {
+        return new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8),
+                1 << 16);
+    }
+
+    private static List<Path> variants(Path plain) {
+        List<Path> variants = new ArrayList<>();
+        variants.add(plain);
+        for (CompressionCodec codec : CODECS.values()) {
+            variants.add(sibling(plain, codec.extension()));
+        }
+        return variants;
+    }
+
+    private static Path sibling(Path plain, String extension) {
+        return plain.resolveSibling(plain.getFileName() + extension);
+    }
+
+    private static CompressionCodec detect(BufferedInputStream in) throws IOException {
+        byte[] head = new byte[MAGIC_BYTES];
+        in.mark(MAGIC_BYTES);
+        int length = in.readNBytes(head, 0, MAGIC_BYTES);
+        in.reset();
+        for (CompressionCodec codec : CODECS.values()) {
+            if (codec.matches(head, length))
+                return codec;
+        }
+        return null;
+    }
+
+    private static CompressionCodec configuredCodec() {
+        String name = System.getProperty("csv.compression", "none").trim();
+        if (name.isEmpty() || name.equalsIgnoreCase("none"))
+            return null;
+        CompressionCodec codec = CODECS.get(name.toLowerCase(Locale.ROOT));
+        if (codec != null)
+            return codec;
+        try {
+            codec = (CompressionCodec) Class.forName(name).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Unknown csv.compression codec: " + name, e);
+        }
+        register(codec);
+        return codec;
+    }
+}
@@ -4,6 +4,8 @@ package csvgenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -18,6 +20,7 @@ public class CsvGenerator {
     private static final String OUTPUT_DIR = "csv_output";
     private static final String SEPARATOR = ";";
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int CACHE_VERSION = 1; // bump when the output format changes
     
     private final ObjectMapper objectMapper;
     private final String currentDateTime;
@@ -45,6 +48,19 @@ public class CsvGenerator {
             outputDir.mkdirs();
         }
         
+        // Skip when the JSON and config are unchanged since the last run
+        BuildCache cache = BuildCache.in(Paths.get(OUTPUT_DIR));
+        BuildCache.Fingerprint fingerprint = cache.fingerprint("CsvGenerator")
+                .file(Paths.get(INPUT_FILE))
+                .config("version", CACHE_VERSION)
+                .config("separator", SEPARATOR);
+        Path[] outputs = { Paths.get(OUTPUT_DIR, "province.csv"), Paths.get(OUTPUT_DIR, "district.csv"),
+                Paths.get(OUTPUT_DIR, "ward.csv") };
+        if (cache.isUpToDate(fingerprint, outputs)) {
+            System.out.println("CsvGenerator: inputs unchanged, outputs are up to date");
+            return;
+        }
+
         // Read and parse JSON file
         JsonNode rootNode = objectMapper.readTree(new File(INPUT_FILE));
         
@@ -52,11 +68,13 @@ public class CsvGenerator {
         generateProvincesCsv(rootNode);
         generateDistrictsCsv(rootNode);
         generateWardsCsv(rootNode);
+
+        cache.record(fingerprint, outputs);
     }
     
     private void generateProvincesCsv(JsonNode provinces) throws IOException {
         String fileName = OUTPUT_DIR + "/province.csv";
-        try (PrintWriter writer = new PrintWriter(new FileWriter(fileName))) {
+        try (PrintWriter writer = new PrintWriter(CsvFiles.writer(Paths.get(fileName)))) {
             // Write header based on changelog schema
             writer.println("id" + SEPARATOR + "province_code" + SEPARATOR + "name" + SEPARATOR + 
                           "name_en" + SEPARATOR + "full_name" + SEPARATOR + "full_name_en" + SEPARATOR + 
@@ -90,7 +108,7 @@ public class CsvGenerator {
     
     private void generateDistrictsCsv(JsonNode provinces) throws IOException {
         String fileName = OUTPUT_DIR + "/district.csv";
-        try (PrintWriter writer = new PrintWriter(new FileWriter(fileName))) {
+        try (PrintWriter writer = new PrintWriter(CsvFiles.writer(Paths.get(fileName)))) {
             // Write header based on changelog schema
             writer.println("id" + SEPARATOR + "district_code" + SEPARATOR + "name" + SEPARATOR + 
                           "name_en" + SEPARATOR + "full_name" + SEPARATOR + "full_name_en" + SEPARATOR + 
@@ -130,7 +148,7 @@ public class CsvGenerator {
     
     private void generateWardsCsv(JsonNode provinces) throws IOException {
         String fileName = OUTPUT_DIR + "/ward.csv";
-        try (PrintWriter writer = new PrintWriter(new FileWriter(fileName))) {
+        try (PrintWriter writer = new PrintWriter(CsvFiles.writer(Paths.get(fileName)))) {
             // Write header based on changelog schema
             writer.println("id" + SEPARATOR + "ward_code" + SEPARATOR + "name" + SEPARATOR + 
                           "name_en" + SEPARATOR + "full_name" + SEPARATOR + "full_name_en" + SEPARATOR + 
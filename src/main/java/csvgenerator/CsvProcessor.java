@@ -1,6 +1,7 @@
 package csvgenerator;
 import java.io.*;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -12,6 +13,7 @@ public class CsvProcessor {
     private static final String OUTPUT_DIR = "csv_output";
     private static final String ADDRESS_OUTPUT = OUTPUT_DIR + "/address.csv";
     private static final String STATION_OUTPUT = OUTPUT_DIR + "/station.csv";
+    private static final int CACHE_VERSION = 1; // bump when the output format changes
     
     public static void main(String[] args) {
         try {
@@ -28,18 +30,31 @@ public class CsvProcessor {
         // Create output directory if it doesn't exist
         Files.createDirectories(Paths.get(OUTPUT_DIR));
         
+        // Skip when the matched addresses are unchanged since the last run
+        BuildCache cache = BuildCache.in(Paths.get(OUTPUT_DIR));
+        BuildCache.Fingerprint fingerprint = cache.fingerprint("CsvProcessor")
+                .file(Paths.get(INPUT_FILE))
+                .config("version", CACHE_VERSION);
+        Path[] outputs = { Paths.get(ADDRESS_OUTPUT), Paths.get(STATION_OUTPUT) };
+        if (cache.isUpToDate(fingerprint, outputs)) {
+            System.out.println("CsvProcessor: inputs unchanged, outputs are up to date");
+            return;
+        }
+
         // Read input data
         List<StationData> stationDataList = readInputFile();
         
         // Generate output files
         generateAddressCsv(stationDataList);
         generateStationCsv(stationDataList);
+
+        cache.record(fingerprint, outputs);
     }
     
     private List<StationData> readInputFile() throws IOException {
         List<StationData> stationDataList = new ArrayList<>();
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(INPUT_FILE))) {
+        try (BufferedReader reader = CsvFiles.reader(Paths.get(INPUT_FILE))) {
             String line = reader.readLine(); // Skip header
             long addressId = 1500; // Starting ID as per changelog
             long stationId = 1500; // Starting ID as per changelog
@@ -97,7 +112,7 @@ public class CsvProcessor {
     }
     
     private void generateAddressCsv(List<StationData> stationDataList) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(ADDRESS_OUTPUT))) {
+        try (PrintWriter writer = new PrintWriter(CsvFiles.writer(Paths.get(ADDRESS_OUTPUT)))) {
             // Write header based on changelog schema
             writer.println("id;street_address;latitude;longitude;created_at;updated_at;is_deleted;deleted_at;deleted_by;ward_id");
             
@@ -123,7 +138,7 @@ public class CsvProcessor {
     }
     
     private void generateStationCsv(List<StationData> stationDataList) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(STATION_OUTPUT))) {
+        try (PrintWriter writer = new PrintWriter(CsvFiles.writer(Paths.get(STATION_OUTPUT)))) {
             // Write header based on changelog schema
             writer.println("id;name;phone_number;description;active;created_at;updated_at;is_deleted;deleted_at;deleted_by;address_id;station_img_id");
             
@@ -0,0 +1,47 @@
+package csvgenerator;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Deterministic non-negative 64-bit values derived from strings (seed values, fallback IDs).
+ * - Default: Hash64.hashChars (xxHash64 over the chars, no byte array, no BigInteger).
+ * - -Dids.hash=sha256: compatibility mode reproducing the previous generateBigIntId values,
+ *   i.e. the first 8 bytes of SHA-256(UTF-8) with the sign bit cleared, for runs that must
+ *   keep IDs or seat counts produced by earlier versions. The digest is reused per thread.
+ */
+public final class DeterministicIds {
+
+    public static final boolean SHA256_COMPAT = "sha256".equalsIgnoreCase(System.getProperty("ids.hash", "xxhash"));
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private DeterministicIds() {
+    }
+
+    /** Non-negative id for the input in the configured mode. */
+    public static long id(CharSequence input) {
+        return SHA256_COMPAT ? sha256Id(input.toString()) : fastId(input);
+    }
+
+    public static long fastId(CharSequence input) {
+        return Hash64.hashChars(input, 0) & Long.MAX_VALUE;
+    }
+
+    /** Same value as the former new BigInteger(1, first 8 SHA-256 bytes with bit 63 cleared).longValue(). */
+    public static long sha256Id(String input) {
+        byte[] hash = SHA256.get().digest(input.getBytes(StandardCharsets.UTF_8));
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = value << 8 | (hash[i] & 0xFFL);
+        }
+        return value & Long.MAX_VALUE;
+    }
+}
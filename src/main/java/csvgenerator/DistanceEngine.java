@@ -0,0 +1,172 @@
+package csvgenerator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Offline road-distance estimates between stations for route.distance_km.
+ * - Each station is placed at its address latitude/longitude when address.csv has them,
+ *   otherwise at its province centroid from the bundled province_centroids.csv
+ *   (station -> address -> ward -> district -> province).
+ * - Stations collapse onto a small set of distinct points; great-circle (haversine)
+ *   distances for all point pairs are computed once into a dense float matrix, so a
+ *   route lookup is two array reads.
+ * - Road distance = haversine * road factor (default 1.3, -Ddistance.roadFactor).
+ *   Stations that share a point (same province, no address coordinates) get
+ *   INTRA_PROVINCE_KM instead of 0.
+ */
+public final class DistanceEngine {
+
+    public static final double ROAD_FACTOR = Double.parseDouble(System.getProperty("distance.roadFactor", "1.3"));
+    public static final double INTRA_PROVINCE_KM = 20.0;
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private final LongIntHashMap stationToPoint;
+    private final int points;
+    private final float[] matrix; // road km, points x points, row-major
+
+    private DistanceEngine(LongIntHashMap stationToPoint, double[] latitudes, double[] longitudes, int points) {
+        this.stationToPoint = stationToPoint;
+        this.points = points;
+        this.matrix = buildMatrix(latitudes, longitudes, points);
+    }
+
+    /**
+     * Loads station locations from csvDir (station/address/ward/district/province.csv).
+     * The reference tables are read through their ReferenceSnapshot, so repeated loads map
+     * them instead of re-parsing the text.
+     */
+    public static DistanceEngine load(Path centroidFile, Path csvDir) throws IOException {
+        return load(centroidFile, ReferenceSnapshot.forCsv(csvDir.resolve("province.csv")),
+                ReferenceSnapshot.forCsv(csvDir.resolve("district.csv")),
+                ReferenceSnapshot.forCsv(csvDir.resolve("ward.csv")),
+                ReferenceSnapshot.forCsv(csvDir.resolve("address.csv")),
+                ReferenceSnapshot.forCsv(csvDir.resolve("station.csv")));
+    }
+
+    /** Same, from snapshots the caller has already mapped. */
+    public static DistanceEngine load(Path centroidFile, ReferenceSnapshot provinces, ReferenceSnapshot districts,
+            ReferenceSnapshot wards, ReferenceSnapshot addresses, ReferenceSnapshot stations) throws IOException {
+        // province_code -> centroid
+        Map<String, double[]> centroids = new HashMap<>();
+        for (String[] f : readRows(centroidFile)) {
+            if (f.length >= 4)
+                centroids.put(f[0].trim(), new double[] { Double.parseDouble(f[2]), Double.parseDouble(f[3]) });
+        }
+
+        LongIntHashMap stationToPoint = new LongIntHashMap(1024, -1);
+        Map<String, Integer> pointIndex = new HashMap<>();
+        double[] latitudes = new double[256];
+        double[] longitudes = new double[256];
+        int points = 0;
+
+        for (int row = 0; row < stations.rowCount(); row++) {
+            long stationId = stations.getLong(row, 0);
+            if (stationId == ReferenceSnapshot.NULL_LONG || stations.columnCount() < 11)
+                continue;
+            // No address_id: unlocated (distance_km stays empty); station ids are not address ids
+            long addressId = stations.getLong(row, 10);
+            if (addressId == ReferenceSnapshot.NULL_LONG)
+                continue;
+            double[] location = locate(addressId, addresses, wards, districts, provinces, centroids);
+            if (location == null)
+                continue;
+            String key = location[0] + "," + location[1];
+            Integer point = pointIndex.get(key);
+            if (point == null) {
+                point = points++;
+                pointIndex.put(key, point);
+                if (points > latitudes.length) {
+                    latitudes = Arrays.copyOf(latitudes, latitudes.length * 2);
+                    longitudes = Arrays.copyOf(longitudes, longitudes.length * 2);
+                }
+                latitudes[point] = location[0];
+                longitudes[point] = location[1];
+            }
+            stationToPoint.put(stationId, point);
+        }
+        return new DistanceEngine(stationToPoint, latitudes, longitudes, points);
+    }
+
+    /** Estimated road distance in km between two stations, or NaN if either is not located. */
+    public double distanceKm(long originStationId, long destinationStationId) {
+        int a = stationToPoint.get(originStationId);
+        int b = stationToPoint.get(destinationStationId);
+        if (a < 0 || b < 0)
+            return Double.NaN;
+        return matrix[a * points + b];
+    }
+
+    public int stationCount() {
+        return stationToPoint.size();
+    }
+
+    public int pointCount() {
+        return points;
+    }
+
+    /** Road km for every point pair; the diagonal holds the intra-province fallback. */
+    private static float[] buildMatrix(double[] latitudes, double[] longitudes, int n) {
+        double[] lat = new double[n];
+        double[] lon = new double[n];
+        double[] cosLat = new double[n];
+        for (int i = 0; i < n; i++) {
+            lat[i] = Math.toRadians(latitudes[i]);
+            lon[i] = Math.toRadians(longitudes[i]);
+            cosLat[i] = Math.cos(lat[i]);
+        }
+        float[] matrix = new float[n * n];
+        for (int i = 0; i < n; i++) {
+            matrix[i * n + i] = (float) INTRA_PROVINCE_KM;
+            for (int j = i + 1; j < n; j++) {
+                double sinLat = Math.sin((lat[j] - lat[i]) * 0.5);
+                double sinLon = Math.sin((lon[j] - lon[i]) * 0.5);
+                double h = sinLat * sinLat + cosLat[i] * cosLat[j] * sinLon * sinLon;
+                double km = 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(h)));
+                float road = (float) Math.max(km * ROAD_FACTOR, INTRA_PROVINCE_KM);
+                matrix[i * n + j] = road;
+                matrix[j * n + i] = road;
+            }
+        }
+        return matrix;
+    }
+
+    private static double[] locate(long addressId, ReferenceSnapshot addresses, ReferenceSnapshot wards,
+            ReferenceSnapshot districts, ReferenceSnapshot provinces, Map<String, double[]> centroids) {
+        // address: id;street_address;latitude;longitude;...;ward_id(9)
+        int address = addresses.findRow(addressId);
+        if (address < 0 || addresses.columnCount() < 10)
+            return null;
+        try {
+            String latitude = addresses.getString(address, 2);
+            String longitude = addresses.getString(address, 3);
+            if (!latitude.isEmpty() && !longitude.isEmpty())
+                return new double[] { Double.parseDouble(latitude), Double.parseDouble(longitude) };
+        } catch (NumberFormatException e) {
+            // Fall back to the province centroid
+        }
+        // ward/district parent id at column 13; province_code at column 1
+        int ward = wards.findRow(addresses.getLong(address, 9));
+        int district = ward < 0 ? -1 : districts.findRow(wards.getLong(ward, 13));
+        int province = district < 0 ? -1 : provinces.findRow(districts.getLong(district, 13));
+        return province < 0 ? null : centroids.get(provinces.getString(province, 1));
+    }
+
+    private static List<String[]> readRows(Path csv) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = CsvFiles.reader(csv)) {
+            String line = reader.readLine(); // Skip header
+            while ((line = reader.readLine()) != null) {
+                rows.add(line.split(";", -1));
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,87 @@
+package csvgenerator;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Fixed-point fare parser.
+ * Scans a scraped price such as "250.000đ" or "1.250.000 VNĐ" once and returns the amount
+ * as a long of minor units at SCALE fraction digits (250.000đ -> 25000000 = 250000.00),
+ * ready for RowEncoder.appendDecimal(minor, FareCodec.SCALE).
+ * Grouping and decimal separators are locale-aware: VND uses '.' for grouping, so
+ * "250.000" is two hundred fifty thousand, not 250.0.
+ */
+public final class FareCodec {
+
+    public static final long INVALID = Long.MIN_VALUE;
+    public static final int SCALE = 2; // decimal(…,2) columns
+
+    /** Vietnamese dong: '.' groups thousands, ',' separates the (rarely used) fraction. */
+    public static final FareCodec VND = new FareCodec('.', ',');
+
+    private static final long SCALE_FACTOR = 100; // 10^SCALE
+    // Largest whole part whose scaled value plus a full fraction and round-up still fits in a long
+    private static final long MAX_WHOLE = Long.MAX_VALUE / SCALE_FACTOR - 1;
+
+    private final char groupingSeparator;
+    private final char decimalSeparator;
+
+    public FareCodec(char groupingSeparator, char decimalSeparator) {
+        this.groupingSeparator = groupingSeparator;
+        this.decimalSeparator = decimalSeparator;
+    }
+
+    public static FareCodec forLocale(Locale locale) {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        return new FareCodec(symbols.getGroupingSeparator(), symbols.getDecimalSeparator());
+    }
+
+    /**
+     * Parses the first number in the text into minor units (value * 10^SCALE).
+     * Currency symbols and whitespace around the number are ignored; extra fraction
+     * digits are rounded HALF_UP. Returns INVALID when no digits are found or on overflow.
+     */
+    public long parseMinorUnits(CharSequence text) {
+        if (text == null)
+            return INVALID;
+
+        long whole = 0;
+        long fraction = 0;
+        int fractionDigits = 0;
+        boolean roundUp = false;
+        boolean seenDigit = false;
+        boolean inFraction = false;
+
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                int d = c - '0';
+                if (!inFraction) {
+                    if (whole > (MAX_WHOLE - d) / 10)
+                        return INVALID;
+                    whole = whole * 10 + d;
+                } else if (fractionDigits < SCALE) {
+                    fraction = fraction * 10 + d;
+                    fractionDigits++;
+                } else if (fractionDigits == SCALE) {
+                    roundUp = d >= 5;
+                    fractionDigits++;
+                }
+            } else if (c == groupingSeparator && seenDigit && !inFraction) {
+                // thousands separator inside the number
+            } else if (c == decimalSeparator && seenDigit && !inFraction) {
+                inFraction = true;
+            } else if (seenDigit) {
+                break; // end of the first number (e.g. the currency suffix)
+            }
+        }
+        if (!seenDigit)
+            return INVALID;
+
+        for (int i = Math.min(fractionDigits, SCALE); i < SCALE; i++) {
+            fraction *= 10;
+        }
+        return whole * SCALE_FACTOR + fraction + (roundUp ? 1 : 0);
+    }
+}
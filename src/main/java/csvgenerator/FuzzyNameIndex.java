@@ -0,0 +1,226 @@
+package csvgenerator;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Approximate name lookup (station, district, province names) by symmetric delete, as in SymSpell.
+ * - Names are normalized first: lower case, Vietnamese diacritics removed (đ -> d), runs of
+ *   anything but letters and digits collapsed to one space. Accent variants ("Da Lat",
+ *   "Đà Lạt") therefore match exactly.
+ * - At build time every name's first PREFIX_LENGTH chars, with up to MAX_DISTANCE chars
+ *   deleted, are indexed by hash. A query generates the same deletes of its own prefix and
+ *   only the names sharing one are compared (edit distance with adjacent transpositions),
+ *   so a lookup costs a few hundred hash probes instead of a scan over every name.
+ * - Allowed distance grows with length (allowedDistance): short names must match exactly.
+ * - Optional ignored prefixes (e.g. "tinh", "huyen") are dropped from names and queries, so
+ *   "Tỉnh Hoà Bình" and "Hòa Bình" are the same key.
+ * Ties go to the name added first. Lookups are read-only and may run concurrently once built.
+ */
+public final class FuzzyNameIndex {
+
+    public static final int MAX_DISTANCE = 2;
+    public static final long MISSING = -1L;
+
+    private static final int PREFIX_LENGTH = 7;
+
+    private final String[] ignoredPrefixes;
+    private final Map<String, Integer> exact = new HashMap<>();
+    private final List<String> terms = new ArrayList<>();
+    private long[] values = new long[64];
+
+    // Postings: delete hash -> first posting; postings chain term indexes
+    private final LongIntHashMap heads = new LongIntHashMap(1024, -1);
+    private int[] postingTerm = new int[1024];
+    private int[] postingNext = new int[1024];
+    private int postings;
+
+    /** ignoredPrefixes: leading words to drop, e.g. administrative unit types. */
+    public FuzzyNameIndex(String... ignoredPrefixes) {
+        this.ignoredPrefixes = new String[ignoredPrefixes.length];
+        for (int i = 0; i < ignoredPrefixes.length; i++) {
+            this.ignoredPrefixes[i] = normalize(ignoredPrefixes[i]) + " ";
+        }
+    }
+
+    /** Adds a name; a name with the same key as an earlier one is ignored. */
+    public void add(String name, long value) {
+        String key = key(name);
+        if (key.isEmpty() || exact.containsKey(key))
+            return;
+        int term = terms.size();
+        terms.add(key);
+        exact.put(key, term);
+        if (term == values.length)
+            values = Arrays.copyOf(values, term * 2);
+        values[term] = value;
+        for (String delete : deletes(prefix(key), MAX_DISTANCE)) {
+            addPosting(Hash64.hashChars(delete, 0), term);
+        }
+    }
+
+    public int size() {
+        return terms.size();
+    }
+
+    /** Value of the name with exactly this key (no edits), or MISSING. */
+    public long get(String name) {
+        Integer hit = exact.get(key(name));
+        return hit == null ? MISSING : values[hit];
+    }
+
+    /** Value of the closest name within the allowed distance, or MISSING. */
+    public long lookup(String name) {
+        String query = key(name);
+        if (query.isEmpty())
+            return MISSING;
+        Integer hit = exact.get(query);
+        if (hit != null)
+            return values[hit];
+        int maxDistance = allowedDistance(query.length());
+        if (maxDistance == 0)
+            return MISSING;
+
+        int best = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        Set<Integer> seen = new HashSet<>();
+        for (String delete : deletes(prefix(query), maxDistance)) {
+            for (int p = heads.get(Hash64.hashChars(delete, 0)); p >= 0; p = postingNext[p]) {
+                int term = postingTerm[p];
+                if (!seen.add(term))
+                    continue;
+                String candidate = terms.get(term);
+                int allowed = Math.min(maxDistance, allowedDistance(candidate.length()));
+                if (Math.abs(candidate.length() - query.length()) > allowed)
+                    continue;
+                int distance = distance(query, candidate, allowed);
+                if (distance > allowed)
+                    continue;
+                if (distance < bestDistance || (distance == bestDistance && term < best)) {
+                    best = term;
+                    bestDistance = distance;
+                }
+            }
+        }
+        return best < 0 ? MISSING : values[best];
+    }
+
+    /** Edit distance a name of this (normalized) length may be off by. */
+    public static int allowedDistance(int length) {
+        if (length <= 3)
+            return 0;
+        return length <= 7 ? 1 : MAX_DISTANCE;
+    }
+
+    public static String normalize(String text) {
+        if (text == null)
+            return "";
+        String decomposed = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        StringBuilder out = new StringBuilder(decomposed.length());
+        boolean space = true; // drops leading separators
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK)
+                continue;
+            if (c == 'đ')
+                c = 'd';
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                out.append(c);
+                space = false;
+            } else if (!space) {
+                out.append(' ');
+                space = true;
+            }
+        }
+        int end = out.length();
+        if (end > 0 && out.charAt(end - 1) == ' ')
+            out.setLength(end - 1);
+        return out.toString();
+    }
+
+    // Normalized name without its ignored prefix
+    private String key(String name) {
+        String key = normalize(name);
+        for (String prefix : ignoredPrefixes) {
+            if (key.length() > prefix.length() && key.startsWith(prefix))
+                return key.substring(prefix.length());
+        }
+        return key;
+    }
+
+    private static String prefix(String key) {
+        return key.length() <= PREFIX_LENGTH ? key : key.substring(0, PREFIX_LENGTH);
+    }
+
+    // key itself plus every string obtained by deleting 1..maxDistance of its chars
+    private static Set<String> deletes(String key, int maxDistance) {
+        Set<String> result = new HashSet<>();
+        result.add(key);
+        List<String> level = List.of(key);
+        for (int d = 0; d < maxDistance; d++) {
+            List<String> next = new ArrayList<>();
+            for (String s : level) {
+                for (int i = 0; i < s.length(); i++) {
+                    String deleted = s.substring(0, i) + s.substring(i + 1);
+                    if (result.add(deleted))
+                        next.add(deleted);
+                }
+            }
+            level = next;
+        }
+        return result;
+    }
+
+    private void addPosting(long hash, int term) {
+        if (postings == postingTerm.length) {
+            postingTerm = Arrays.copyOf(postingTerm, postings * 2);
+            postingNext = Arrays.copyOf(postingNext, postings * 2);
+        }
+        postingTerm[postings] = term;
+        postingNext[postings] = heads.put(hash, postings);
+        postings++;
+    }
+
+    /**
+     * Optimal string alignment distance (Levenshtein plus adjacent transpositions), or
+     * max + 1 as soon as it must exceed max.
+     */
+    static int distance(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        int[] previous2 = new int[m + 1];
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            current[0] = i;
+            int rowMin = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                char cb = b.charAt(j - 1);
+                int cost = ca == cb ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && ca == b.charAt(j - 2) && a.charAt(i - 2) == cb)
+                    value = Math.min(value, previous2[j - 2] + 1);
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > max)
+                return max + 1;
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[m], max + 1);
+    }
+}
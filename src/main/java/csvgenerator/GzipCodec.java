@@ -0,0 +1,83 @@
+package csvgenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * JDK gzip (RFC 1952) codec: every block is a complete gzip member, and gzip readers
+ * (gunzip, GZIPInputStream, PostgreSQL COPY FROM PROGRAM 'zcat') read concatenated members
+ * as one file. Deflaters are kept per thread and reset between blocks instead of being
+ * created and ended per block.
+ * Level: -Dcsv.compression.level=<1..9> (default 6).
+ */
+public final class GzipCodec implements CompressionCodec {
+
+    private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+    private static final int TRAILER_LENGTH = 8;
+
+    private final int level;
+    private final ThreadLocal<Deflater> deflaters;
+
+    public GzipCodec() {
+        this(Integer.getInteger("csv.compression.level", 6));
+    }
+
+    public GzipCodec(int level) {
+        this.level = level;
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(this.level, true));
+    }
+
+    @Override
+    public String name() {
+        return "gzip";
+    }
+
+    @Override
+    public String extension() {
+        return ".gz";
+    }
+
+    @Override
+    public boolean matches(byte[] head, int length) {
+        return length >= 2 && head[0] == HEADER[0] && head[1] == HEADER[1];
+    }
+
+    @Override
+    public byte[] compressBlock(byte[] data, int offset, int length) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(data, offset, length);
+        deflater.finish();
+        // Worst case for stored deflate blocks is about 5 bytes per 16 KiB plus a few bytes
+        byte[] out = new byte[HEADER.length + length + (length >> 12) + 64];
+        System.arraycopy(HEADER, 0, out, 0, HEADER.length);
+        int n = HEADER.length;
+        while (!deflater.finished()) {
+            if (n == out.length - TRAILER_LENGTH)
+                out = Arrays.copyOf(out, out.length * 2);
+            n += deflater.deflate(out, n, out.length - TRAILER_LENGTH - n);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, offset, length);
+        n = putIntLE(out, n, (int) crc.getValue());
+        n = putIntLE(out, n, length); // ISIZE: input length mod 2^32
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) throws IOException {
+        return new GZIPInputStream(in, 1 << 16);
+    }
+
+    private static int putIntLE(byte[] out, int at, int value) {
+        out[at] = (byte) value;
+        out[at + 1] = (byte) (value >>> 8);
+        out[at + 2] = (byte) (value >>> 16);
+        out[at + 3] = (byte) (value >>> 24);
+        return at + 4;
+    }
+}
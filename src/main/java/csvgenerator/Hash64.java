@@ -0,0 +1,183 @@
+package csvgenerator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 64-bit non-cryptographic hash (xxHash64) for fingerprinting file contents.
+ * Reads 8 bytes at a time from (mapped) ByteBuffers, so hashing runs at memory speed.
+ * Files larger than one mapping window are hashed per window and the window hashes are
+ * combined, so the value depends only on the bytes (and the fixed window size).
+ */
+public final class Hash64 {
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private static final long WINDOW = 1L << 30; // 1 GiB per mapping
+
+    private Hash64() {
+    }
+
+    /** xxHash64 of the bytes between position and limit (the buffer's position is not changed). */
+    public static long hash(ByteBuffer buffer, long seed) {
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int p = in.position();
+        int end = in.limit();
+        int length = end - p;
+        long h;
+
+        if (length >= 32) {
+            long v1 = seed + PRIME1 + PRIME2;
+            long v2 = seed + PRIME2;
+            long v3 = seed;
+            long v4 = seed - PRIME1;
+            int limit = end - 32;
+            do {
+                v1 = round(v1, in.getLong(p));
+                v2 = round(v2, in.getLong(p + 8));
+                v3 = round(v3, in.getLong(p + 16));
+                v4 = round(v4, in.getLong(p + 24));
+                p += 32;
+            } while (p <= limit);
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = seed + PRIME5;
+        }
+        h += length;
+
+        while (p + 8 <= end) {
+            h ^= round(0, in.getLong(p));
+            h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+            p += 8;
+        }
+        if (p + 4 <= end) {
+            h ^= (in.getInt(p) & 0xFFFFFFFFL) * PRIME1;
+            h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+            p += 4;
+        }
+        while (p < end) {
+            h ^= (in.get(p) & 0xFFL) * PRIME5;
+            h = Long.rotateLeft(h, 11) * PRIME1;
+            p++;
+        }
+        return avalanche(h);
+    }
+
+    public static long hash(byte[] bytes, long seed) {
+        return hash(ByteBuffer.wrap(bytes), seed);
+    }
+
+    /**
+     * xxHash64 of the chars as UTF-16LE, read straight from the CharSequence (no byte array);
+     * equal to hash(s.getBytes(UTF_16LE), seed).
+     */
+    public static long hashChars(CharSequence s, long seed) {
+        int chars = s.length();
+        int p = 0;
+        long h;
+
+        if (chars >= 16) {
+            long v1 = seed + PRIME1 + PRIME2;
+            long v2 = seed + PRIME2;
+            long v3 = seed;
+            long v4 = seed - PRIME1;
+            int limit = chars - 16;
+            do {
+                v1 = round(v1, lane(s, p));
+                v2 = round(v2, lane(s, p + 4));
+                v3 = round(v3, lane(s, p + 8));
+                v4 = round(v4, lane(s, p + 12));
+                p += 16;
+            } while (p <= limit);
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = seed + PRIME5;
+        }
+        h += chars * 2L;
+
+        while (p + 4 <= chars) {
+            h ^= round(0, lane(s, p));
+            h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+            p += 4;
+        }
+        if (p + 2 <= chars) {
+            long word = s.charAt(p) | (long) s.charAt(p + 1) << 16;
+            h ^= word * PRIME1;
+            h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+            p += 2;
+        }
+        if (p < chars) {
+            char c = s.charAt(p);
+            h ^= (c & 0xFFL) * PRIME5;
+            h = Long.rotateLeft(h, 11) * PRIME1;
+            h ^= (c >>> 8) * PRIME5;
+            h = Long.rotateLeft(h, 11) * PRIME1;
+        }
+        return avalanche(h);
+    }
+
+    /** Four chars as one little-endian 64-bit lane. */
+    private static long lane(CharSequence s, int p) {
+        return s.charAt(p) | (long) s.charAt(p + 1) << 16 | (long) s.charAt(p + 2) << 32 | (long) s.charAt(p + 3) << 48;
+    }
+
+    /** Hash of a whole file via read-only memory mappings. */
+    public static long hashFile(Path file, long seed) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= WINDOW) {
+                return size == 0 ? hash(ByteBuffer.allocate(0), seed)
+                        : hash(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), seed);
+            }
+            long h = seed ^ size;
+            for (long position = 0; position < size; position += WINDOW) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(WINDOW, size - position));
+                h = mix(h, hash(window, seed));
+            }
+            return h;
+        }
+    }
+
+    /** Order-dependent combination of two hashes. */
+    public static long mix(long h, long value) {
+        return avalanche(Long.rotateLeft(h, 31) * PRIME1 ^ value * PRIME2);
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * PRIME1 + PRIME4;
+    }
+
+    private static long avalanche(long h) {
+        h ^= h >>> 33;
+        h *= PRIME2;
+        h ^= h >>> 29;
+        h *= PRIME3;
+        h ^= h >>> 32;
+        return h;
+    }
+}
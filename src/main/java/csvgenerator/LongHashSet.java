@@ -0,0 +1,108 @@
+package csvgenerator;
+
+/**
+ * Open-addressing hash set of primitive longs.
+ * Avoids the boxed Long + HashMap.Node overhead of HashSet<Long> (8 bytes per slot
+ * instead of ~48 bytes per entry), which matters once key sets reach tens of millions.
+ * Not thread-safe.
+ */
+public final class LongHashSet {
+
+    private static final double LOAD_FACTOR = 0.6;
+
+    private long[] slots; // 0 marks an empty slot
+    private boolean hasZero;
+    private int size;
+    private int mask;
+    private int resizeAt;
+
+    public LongHashSet() {
+        this(1024);
+    }
+
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /** Adds the value; returns false if it was already present. */
+    public boolean add(long value) {
+        if (value == 0L) {
+            if (hasZero)
+                return false;
+            hasZero = true;
+            size++;
+            return true;
+        }
+        int i = index(value);
+        while (true) {
+            long current = slots[i];
+            if (current == 0L) {
+                slots[i] = value;
+                if (++size >= resizeAt)
+                    rehash(slots.length << 1);
+                return true;
+            }
+            if (current == value)
+                return false;
+            i = (i + 1) & mask;
+        }
+    }
+
+    public boolean contains(long value) {
+        if (value == 0L)
+            return hasZero;
+        int i = index(value);
+        while (true) {
+            long current = slots[i];
+            if (current == 0L)
+                return false;
+            if (current == value)
+                return true;
+            i = (i + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(java.util.function.LongConsumer action) {
+        if (hasZero)
+            action.accept(0L);
+        for (long value : slots) {
+            if (value != 0L)
+                action.accept(value);
+        }
+    }
+
+    private int index(long value) {
+        // murmur3 fmix64 so sequential IDs don't cluster in neighbouring slots
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    private void allocate(int capacity) {
+        slots = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int newCapacity) {
+        long[] old = slots;
+        allocate(newCapacity);
+        for (long value : old) {
+            if (value != 0L) {
+                int i = index(value);
+                while (slots[i] != 0L)
+                    i = (i + 1) & mask;
+                slots[i] = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package csvgenerator;
+
+/**
+ * Open-addressing map from primitive long keys to int values (e.g. ID -> dense index).
+ * Same layout as LongHashSet: parallel arrays, linear probing, no per-entry objects.
+ * Not thread-safe.
+ */
+public final class LongIntHashMap {
+
+    private static final double LOAD_FACTOR = 0.6;
+
+    private final int missingValue;
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+    private int resizeAt;
+
+    public LongIntHashMap(int expectedSize, int missingValue) {
+        this.missingValue = missingValue;
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    public int get(long key) {
+        int i = index(key);
+        while (used[i]) {
+            if (keys[i] == key)
+                return values[i];
+            i = (i + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    /** Returns the previous value, or missingValue if the key was absent. */
+    public int put(long key, int value) {
+        int i = index(key);
+        while (used[i]) {
+            if (keys[i] == key) {
+                int previous = values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        used[i] = true;
+        keys[i] = key;
+        values[i] = value;
+        if (++size >= resizeAt)
+            rehash(keys.length << 1);
+        return missingValue;
+    }
+
+    /** Returns the existing value for key, or stores and returns {@code value}. */
+    public int putIfAbsent(long key, int value) {
+        int existing = get(key);
+        if (existing != missingValue)
+            return existing;
+        put(key, value);
+        return value;
+    }
+
+    public boolean containsKey(long key) {
+        int i = index(key);
+        while (used[i]) {
+            if (keys[i] == key)
+                return true;
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public interface Visitor {
+        void accept(long key, int value);
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i])
+                visitor.accept(keys[i], values[i]);
+        }
+    }
+
+    private int index(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(newCapacity);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldUsed[j]) {
+                int i = index(oldKeys[j]);
+                while (used[i])
+                    i = (i + 1) & mask;
+                used[i] = true;
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+}
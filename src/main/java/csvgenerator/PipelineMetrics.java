@@ -0,0 +1,324 @@
+package csvgenerator;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lightweight metrics for one generator run.
+ * - Named LongAdder counters (safe to bump from worker threads).
+ * - Per-stage latency histograms (read, parse, resolve, write) with log-linear buckets,
+ *   HdrHistogram-style: 16 sub-buckets per power of two, so percentiles are within ~6%.
+ * - rows/s and bytes/s gauges from the rows.* / bytes.* counters, and the JVM-wide
+ *   allocation rate from com.sun.management.ThreadMXBean when available.
+ * A daemon thread prints a one-line progress report every -Dmetrics.interval seconds
+ * (default 5, 0 disables). close() prints the final summary plus a single
+ * "METRICS {json}" line, and writes it to -Dmetrics.dir/<generator>.json if set.
+ *
+ * Usage:
+ *   try (PipelineMetrics metrics = new PipelineMetrics("trip")) {
+ *       long t = metrics.start();
+ *       ...
+ *       metrics.stop(PipelineMetrics.Stage.PARSE, t);
+ *   }
+ */
+public final class PipelineMetrics implements AutoCloseable {
+
+    public enum Stage {
+        READ, PARSE, RESOLVE, WRITE
+    }
+
+    public static final String ROWS_READ = "rows.read";
+    public static final String ROWS_WRITTEN = "rows.written";
+    public static final String BYTES_READ = "bytes.read";
+    public static final String BYTES_WRITTEN = "bytes.written";
+
+    private final String generator;
+    private final long startNanos = System.nanoTime();
+    private final long startAllocated;
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final LatencyHistogram[] stages = new LatencyHistogram[Stage.values().length];
+    private final ScheduledExecutorService reporter;
+
+    private long lastReportNanos = startNanos;
+    private long lastReportRows;
+    private long lastReportBytes;
+    private long lastReportAllocated;
+
+    public PipelineMetrics(String generator) {
+        this.generator = generator;
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new LatencyHistogram();
+        }
+        this.startAllocated = allocatedBytes();
+        this.lastReportAllocated = startAllocated;
+
+        long interval = Long.getLong("metrics.interval", 5L);
+        if (interval > 0) {
+            reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "metrics-" + generator);
+                t.setDaemon(true);
+                return t;
+            });
+            reporter.scheduleAtFixedRate(this::report, interval, interval, TimeUnit.SECONDS);
+        } else {
+            reporter = null;
+        }
+    }
+
+    // ---- recording ----
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    public void increment(String name) {
+        counter(name).increment();
+    }
+
+    public void add(String name, long delta) {
+        counter(name).add(delta);
+    }
+
+    public long count(String name) {
+        LongAdder adder = counters.get(name);
+        return adder == null ? 0L : adder.sum();
+    }
+
+    /** Timestamp to pass to stop(). */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /** Records the time since startNanos for the stage and returns "now" for chaining stages. */
+    public long stop(Stage stage, long startNanos) {
+        long now = System.nanoTime();
+        stages[stage.ordinal()].record(now - startNanos);
+        return now;
+    }
+
+    /** Wraps a stream so every byte read is added to bytes.read. */
+    public InputStream meter(InputStream in) {
+        LongAdder bytes = counter(BYTES_READ);
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0)
+                    bytes.increment();
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buf, int off, int len) throws IOException {
+                int n = super.read(buf, off, len);
+                if (n > 0)
+                    bytes.add(n);
+                return n;
+            }
+        };
+    }
+
+    // ---- reporting ----
+
+    private synchronized void report() {
+        long now = System.nanoTime();
+        long rows = count(ROWS_READ);
+        long bytes = count(BYTES_READ) + count(BYTES_WRITTEN);
+        long allocated = allocatedBytes();
+        double seconds = Math.max((now - lastReportNanos) / 1e9, 1e-9);
+        System.out.printf(Locale.ROOT, "[metrics %s] %.1fs rows %d (%.0f/s) io %.1f MiB (%.1f MiB/s) alloc %.1f MiB/s%n",
+                generator, (now - startNanos) / 1e9, rows, (rows - lastReportRows) / seconds,
+                bytes / 1048576.0, (bytes - lastReportBytes) / 1048576.0 / seconds,
+                allocated < 0 ? 0.0 : (allocated - lastReportAllocated) / 1048576.0 / seconds);
+        lastReportNanos = now;
+        lastReportRows = rows;
+        lastReportBytes = bytes;
+        lastReportAllocated = allocated;
+    }
+
+    /** Machine-readable snapshot of all counters, gauges and stage percentiles (nanoseconds). */
+    public String toJson() {
+        double seconds = Math.max((System.nanoTime() - startNanos) / 1e9, 1e-9);
+        long allocated = allocatedBytes();
+        StringBuilder json = new StringBuilder(512);
+        json.append("{\"generator\":\"").append(generator).append('"');
+        json.append(String.format(Locale.ROOT, ",\"elapsed_s\":%.3f", seconds));
+
+        json.append(",\"counters\":{");
+        boolean first = true;
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(counters).entrySet()) {
+            json.append(first ? "" : ",").append('"').append(e.getKey()).append("\":").append(e.getValue().sum());
+            first = false;
+        }
+        json.append('}');
+
+        json.append(String.format(Locale.ROOT, ",\"rows_read_per_s\":%.1f,\"rows_written_per_s\":%.1f",
+                count(ROWS_READ) / seconds, count(ROWS_WRITTEN) / seconds));
+        json.append(String.format(Locale.ROOT, ",\"bytes_read_per_s\":%.1f,\"bytes_written_per_s\":%.1f",
+                count(BYTES_READ) / seconds, count(BYTES_WRITTEN) / seconds));
+        if (allocated >= 0) {
+            json.append(",\"allocated_bytes\":").append(allocated - startAllocated);
+            json.append(String.format(Locale.ROOT, ",\"allocation_bytes_per_s\":%.1f",
+                    (allocated - startAllocated) / seconds));
+        }
+
+        json.append(",\"stages\":{");
+        first = true;
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram h = stages[stage.ordinal()];
+            if (h.count() == 0)
+                continue;
+            json.append(first ? "" : ",").append('"').append(stage.name().toLowerCase(Locale.ROOT)).append("\":{")
+                    .append("\"count\":").append(h.count())
+                    .append(",\"total_ns\":").append(h.total())
+                    .append(",\"p50_ns\":").append(h.percentile(50))
+                    .append(",\"p90_ns\":").append(h.percentile(90))
+                    .append(",\"p99_ns\":").append(h.percentile(99))
+                    .append(",\"max_ns\":").append(h.max())
+                    .append('}');
+            first = false;
+        }
+        json.append("}}");
+        return json.toString();
+    }
+
+    public void printSummary() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.println("=== METRICS: " + generator + " ===");
+        System.out.printf(Locale.ROOT, "Elapsed: %.2f s, rows read %d, rows written %d%n",
+                seconds, count(ROWS_READ), count(ROWS_WRITTEN));
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram h = stages[stage.ordinal()];
+            if (h.count() > 0) {
+                System.out.printf(Locale.ROOT, "  %-8s n=%d total=%.1f ms p50=%.1f us p99=%.1f us max=%.1f us%n",
+                        stage.name().toLowerCase(Locale.ROOT), h.count(), h.total() / 1e6,
+                        h.percentile(50) / 1e3, h.percentile(99) / 1e3, h.max() / 1e3);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+        }
+        printSummary();
+        String json = toJson();
+        System.out.println("METRICS " + json);
+
+        String dir = System.getProperty("metrics.dir");
+        if (dir != null) {
+            try {
+                Path out = Files.createDirectories(Paths.get(dir)).resolve(generator + ".json");
+                Files.write(out, (json + "\n").getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                System.err.println("Could not write metrics summary: " + e.getMessage());
+            }
+        }
+    }
+
+    /** Bytes allocated by all live threads, or -1 if the JVM cannot report it. */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean))
+            return -1L;
+        com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) threads;
+        if (!sun.isThreadAllocatedMemorySupported() || !sun.isThreadAllocatedMemoryEnabled())
+            return -1L;
+        long total = 0;
+        for (long bytes : sun.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0)
+                total += bytes;
+        }
+        return total;
+    }
+
+    /**
+     * Log-linear histogram of non-negative longs. Values below 32 get exact buckets; above
+     * that each power of two is split into 16 sub-buckets.
+     */
+    static final class LatencyHistogram {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private volatile long max;
+
+        void record(long value) {
+            if (value < 0)
+                value = 0;
+            buckets.incrementAndGet(index(value));
+            count.increment();
+            total.add(value);
+            if (value > max) {
+                synchronized (this) {
+                    if (value > max)
+                        max = value;
+                }
+            }
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        long total() {
+            return total.sum();
+        }
+
+        long max() {
+            return max;
+        }
+
+        /** Midpoint of the bucket holding the given percentile (0..100). */
+        long percentile(double percentile) {
+            long n = count();
+            if (n == 0)
+                return 0;
+            long rank = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    long lower = lowerBound(i);
+                    long width = lowerBound(i + 1) - lower;
+                    return Math.min(max, lower + width / 2);
+                }
+            }
+            return max;
+        }
+
+        static int index(long value) {
+            if (value < 2 * SUB_BUCKETS)
+                return (int) value;
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            return shift * SUB_BUCKETS + (int) (value >>> shift);
+        }
+
+        static long lowerBound(int index) {
+            if (index < 2 * SUB_BUCKETS)
+                return index;
+            int shift = index / SUB_BUCKETS - 1;
+            return (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package csvgenerator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Binary columnar snapshot of a ';'-delimited reference table (province, district, ward,
+ * address, station, route), memory-mapped read-only so lookups do not touch the heap.
+ * - Columns whose values are all canonical longs (or empty) are stored as fixed-width
+ *   8-byte values (empty = NULL_LONG); all other columns store 4-byte ids into a string
+ *   dictionary shared by the table (offsets + UTF-8 bytes).
+ * - An index of row numbers sorted by column 0 gives O(log n) findRow(id).
+ * - forCsv() keeps the snapshot next to the CSV in .snapshots/ and rewrites it when the
+ *   CSV's size or mtime no longer match the ones recorded in the snapshot header.
+ * One mapping is used per table, so a snapshot is limited to 2 GiB.
+ *
+ * Layout (big-endian):
+ *   [0]  magic "DFSNAP01", [8] version, [12] rows, [16] columns,
+ *   [20] source size, [28] source mtime, [36] dictionary size,
+ *   [40] dictionary offsets pos, [48] dictionary bytes pos, [56] id index pos (0 if none),
+ *   [64] column directory: type, data pos, name length, name bytes
+ *
+ * Usage: ReferenceSnapshot [csv_output]   (builds snapshots for all reference tables)
+ */
+public final class ReferenceSnapshot {
+
+    public static final long NULL_LONG = Long.MIN_VALUE;
+    public static final String SNAPSHOT_DIR = ".snapshots";
+    public static final String[] REFERENCE_TABLES = { "province.csv", "district.csv", "ward.csv", "address.csv",
+            "station.csv", "route.csv" };
+
+    private static final long MAGIC = 0x4446534E41503031L; // "DFSNAP01"
+    private static final int VERSION = 1;
+    private static final int TYPE_LONG = 0;
+    private static final int TYPE_STRING = 1;
+    private static final int HEADER_SIZE = 64;
+
+    private final ByteBuffer buffer;
+    private final int rows;
+    private final String[] names;
+    private final int[] types;
+    private final int[] dataPositions;
+    private final int dictionaryOffsets;
+    private final int dictionaryBytes;
+    private final int indexPosition;
+
+    private ReferenceSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getLong(0) != MAGIC || buffer.getInt(8) != VERSION)
+            throw new IOException("Not a reference snapshot (or an older version)");
+        rows = buffer.getInt(12);
+        int columns = buffer.getInt(16);
+        dictionaryOffsets = (int) buffer.getLong(40);
+        dictionaryBytes = (int) buffer.getLong(48);
+        indexPosition = (int) buffer.getLong(56);
+        names = new String[columns];
+        types = new int[columns];
+        dataPositions = new int[columns];
+        int p = HEADER_SIZE;
+        for (int c = 0; c < columns; c++) {
+            types[c] = buffer.getInt(p);
+            dataPositions[c] = (int) buffer.getLong(p + 4);
+            int length = buffer.getInt(p + 12);
+            byte[] name = new byte[length];
+            buffer.get(p + 16, name);
+            names[c] = new String(name, StandardCharsets.UTF_8);
+            p += 16 + length;
+        }
+    }
+
+    public static void main(String[] args) {
+        Path csvDir = Paths.get(args.length > 0 ? args[0] : "csv_output");
+        try {
+            for (String table : REFERENCE_TABLES) {
+                Path csv = csvDir.resolve(table);
+                if (!CsvFiles.exists(csv))
+                    continue;
+                long start = System.nanoTime();
+                ReferenceSnapshot snapshot = forCsv(csv);
+                System.out.printf("%-12s %8d rows, %2d columns -> %s (%.1f ms)%n", table, snapshot.rowCount(),
+                        snapshot.columnCount(), snapshotPath(csv), (System.nanoTime() - start) / 1e6);
+            }
+        } catch (Exception e) {
+            System.err.println("Error building reference snapshots: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /** Maps the snapshot for a CSV, (re)building it first when missing or stale. */
+    public static ReferenceSnapshot forCsv(Path csv) throws IOException {
+        Path snapshot = snapshotPath(csv);
+        BasicFileAttributes source = Files.readAttributes(CsvFiles.resolve(csv), BasicFileAttributes.class);
+        if (Files.exists(snapshot)) {
+            try {
+                ReferenceSnapshot mapped = open(snapshot);
+                if (mapped.buffer.getLong(20) == source.size()
+                        && mapped.buffer.getLong(28) == source.lastModifiedTime().toMillis())
+                    return mapped;
+            } catch (IOException e) {
+                // Corrupt or old format: rebuild below
+            }
+        }
+        write(csv, snapshot);
+        return open(snapshot);
+    }
+
+    public static Path snapshotPath(Path csv) {
+        String name = csv.getFileName().toString().replaceFirst("\\.csv$", "") + ".snap";
+        return csv.toAbsolutePath().getParent().resolve(SNAPSHOT_DIR).resolve(name);
+    }
+
+    public static ReferenceSnapshot open(Path snapshot) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Snapshot larger than 2 GiB: " + snapshot);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ReferenceSnapshot(mapped);
+        }
+    }
+
+    /** Converts a ';'-delimited CSV (header row first) into a snapshot file. */
+    public static void write(Path csv, Path snapshot) throws IOException {
+        BasicFileAttributes source = Files.readAttributes(CsvFiles.resolve(csv), BasicFileAttributes.class);
+        String[] header;
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = CsvFiles.reader(csv)) {
+            String line = reader.readLine();
+            if (line == null)
+                throw new IOException("Empty CSV: " + csv);
+            header = line.split(";", -1);
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty())
+                    rows.add(line.split(";", -1));
+            }
+        }
+        int columns = header.length;
+        int n = rows.size();
+
+        // Column types; dictionary ids for string columns
+        int[] types = new int[columns];
+        for (int c = 0; c < columns; c++) {
+            types[c] = TYPE_LONG;
+            for (String[] row : rows) {
+                String value = c < row.length ? row[c] : "";
+                if (!value.isEmpty() && !isCanonicalLong(value)) {
+                    types[c] = TYPE_STRING;
+                    break;
+                }
+            }
+        }
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<byte[]> entries = new ArrayList<>();
+        long dictionaryLength = 0;
+        for (int c = 0; c < columns; c++) {
+            if (types[c] != TYPE_STRING)
+                continue;
+            for (String[] row : rows) {
+                String value = c < row.length ? row[c] : "";
+                if (!dictionary.containsKey(value)) {
+                    dictionary.put(value, entries.size());
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    entries.add(bytes);
+                    dictionaryLength += bytes.length;
+                }
+            }
+        }
+
+        // Section positions
+        long directoryLength = 0;
+        byte[][] nameBytes = new byte[columns][];
+        for (int c = 0; c < columns; c++) {
+            nameBytes[c] = header[c].getBytes(StandardCharsets.UTF_8);
+            directoryLength += 16 + nameBytes[c].length;
+        }
+        long position = align8(HEADER_SIZE + directoryLength);
+        long[] dataPositions = new long[columns];
+        for (int c = 0; c < columns; c++) {
+            dataPositions[c] = position;
+            position = align8(position + (long) n * (types[c] == TYPE_LONG ? 8 : 4));
+        }
+        long indexPos = types.length > 0 && types[0] == TYPE_LONG ? position : 0;
+        if (indexPos != 0)
+            position = align8(position + (long) n * 4);
+        long offsetsPos = position;
+        position += (long) (entries.size() + 1) * 4;
+        long bytesPos = position;
+        long total = position + dictionaryLength;
+        if (total > Integer.MAX_VALUE)
+            throw new IOException("Snapshot for " + csv + " would exceed 2 GiB");
+
+        ByteBuffer out = ByteBuffer.allocate((int) total);
+        out.putLong(0, MAGIC).putInt(8, VERSION).putInt(12, n).putInt(16, columns)
+                .putLong(20, source.size()).putLong(28, source.lastModifiedTime().toMillis())
+                .putInt(36, entries.size()).putLong(40, offsetsPos).putLong(48, bytesPos).putLong(56, indexPos);
+        int p = HEADER_SIZE;
+        for (int c = 0; c < columns; c++) {
+            out.putInt(p, types[c]).putLong(p + 4, dataPositions[c]).putInt(p + 12, nameBytes[c].length);
+            out.put(p + 16, nameBytes[c]);
+            p += 16 + nameBytes[c].length;
+        }
+        for (int c = 0; c < columns; c++) {
+            int base = (int) dataPositions[c];
+            for (int r = 0; r < n; r++) {
+                String[] row = rows.get(r);
+                String value = c < row.length ? row[c] : "";
+                if (types[c] == TYPE_LONG) {
+                    out.putLong(base + r * 8, value.isEmpty() ? NULL_LONG : Long.parseLong(value));
+                } else {
+                    out.putInt(base + r * 4, dictionary.get(value));
+                }
+            }
+        }
+        if (indexPos != 0) {
+            long[] ids = new long[n];
+            for (int r = 0; r < n; r++)
+                ids[r] = out.getLong((int) dataPositions[0] + r * 8);
+            int[] order = IntStream.range(0, n).boxed()
+                    .sorted((a, b) -> Long.compare(ids[a], ids[b]))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            for (int r = 0; r < n; r++)
+                out.putInt((int) indexPos + r * 4, order[r]);
+        }
+        int offset = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            out.putInt((int) offsetsPos + i * 4, offset);
+            out.put((int) bytesPos + offset, entries.get(i));
+            offset += entries.get(i).length;
+        }
+        out.putInt((int) offsetsPos + entries.size() * 4, offset);
+
+        // Write to a temp file and move into place, so concurrent readers never see a partial file
+        Files.createDirectories(snapshot.toAbsolutePath().getParent());
+        Path tmp = Files.createTempFile(snapshot.toAbsolutePath().getParent(), snapshot.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            while (out.hasRemaining())
+                channel.write(out);
+        }
+        Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // ---- access ----
+
+    public int rowCount() {
+        return rows;
+    }
+
+    public int columnCount() {
+        return names.length;
+    }
+
+    /** Column index by header name, or -1. */
+    public int columnIndex(String name) {
+        for (int c = 0; c < names.length; c++) {
+            if (names[c].equals(name))
+                return c;
+        }
+        return -1;
+    }
+
+    public boolean isLongColumn(int column) {
+        return types[column] == TYPE_LONG;
+    }
+
+    /** Value of a long column (NULL_LONG when empty); string columns are parsed, NULL_LONG if not numeric. */
+    public long getLong(int row, int column) {
+        if (types[column] == TYPE_LONG)
+            return buffer.getLong(dataPositions[column] + row * 8);
+        String value = getString(row, column);
+        return isCanonicalLong(value) ? Long.parseLong(value) : NULL_LONG;
+    }
+
+    public String getString(int row, int column) {
+        if (types[column] == TYPE_LONG) {
+            long value = buffer.getLong(dataPositions[column] + row * 8);
+            return value == NULL_LONG ? "" : Long.toString(value);
+        }
+        int id = buffer.getInt(dataPositions[column] + row * 4);
+        int start = buffer.getInt(dictionaryOffsets + id * 4);
+        int end = buffer.getInt(dictionaryOffsets + id * 4 + 4);
+        byte[] bytes = new byte[end - start];
+        buffer.get(dictionaryBytes + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Row whose column 0 equals id, or -1 (requires a numeric id column). */
+    public int findRow(long id) {
+        if (indexPosition == 0 || id == NULL_LONG)
+            return -1;
+        int lo = 0;
+        int hi = rows - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int row = buffer.getInt(indexPosition + mid * 4);
+            long value = buffer.getLong(dataPositions[0] + row * 8);
+            if (value < id) {
+                lo = mid + 1;
+            } else if (value > id) {
+                hi = mid - 1;
+            } else {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isCanonicalLong(String value) {
+        int length = value.length();
+        if (length == 0 || length > 19)
+            return false;
+        int start = value.charAt(0) == '-' ? 1 : 0;
+        if (start == length || (value.charAt(start) == '0' && length - start > 1))
+            return false;
+        for (int i = start; i < length; i++) {
+            char ch = value.charAt(i);
+            if (ch < '0' || ch > '9')
+                return false;
+        }
+        try {
+            long parsed = Long.parseLong(value);
+            return parsed != NULL_LONG && Long.toString(parsed).equals(value); // rejects "-0"
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static long align8(long position) {
+        return (position + 7) & ~7L;
+    }
+}
@@ -0,0 +1,750 @@
+package csvgenerator;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Referential integrity validator for csv_output.
+ * - Foreign keys and single-column unique/primary keys come from the Liquibase changelog.
+ * - Composite unique indexes (e.g. trip_seat(trip_id, seat_no)) come from ms_route.dbml.
+ * - Parent key columns are loaded into primitive LongHashSets, then every table is streamed
+ *   in newline-aligned, memory-mapped chunks on a thread pool.
+ * - Compressed tables (CsvFiles, e.g. trip.csv.gz) are first decompressed to a temp file,
+ *   since the chunks are byte ranges of the uncompressed text.
+ * - A table written as shards (csv_output/<table>/manifest.json, ShardedTableWriter) is read
+ *   from the shard files the manifest lists, as one table.
+ * Non-numeric keys are compared by 64-bit hash, so a reported duplicate of a string key
+ * has a ~n^2/2^64 chance of being a hash collision.
+ */
+public class ReferentialIntegrityValidator {
+
+    private static final String CHANGELOG_DIR = "changelog";
+    private static final String SCHEMA_DBML = "ms_route.dbml";
+    private static final String CSV_DIR = "csv_output";
+    private static final long CHUNK_SIZE = 64L << 20; // 64 MiB per mapped chunk
+    private static final int MAX_SAMPLES = 10;
+
+    private static final Pattern DBML_TABLE = Pattern.compile("^Table\\s+(\\w+)\\s*\\{");
+    private static final Pattern DBML_UNIQUE_INDEX = Pattern.compile("\\(([^)]+)\\)\\s*\\[([^\\]]*)\\]");
+
+    private final Path changelogDir;
+    private final Path dbmlFile;
+    private final Path csvDir;
+    private final ExecutorService pool;
+
+    private final List<ForeignKey> foreignKeys = new ArrayList<>();
+    private final List<UniqueKey> uniqueKeys = new ArrayList<>();
+    private final Map<String, TableFile> tables = new ConcurrentHashMap<>();
+    private final Map<String, LongHashSet> parentKeys = new ConcurrentHashMap<>();
+    private final List<String> skipped = new ArrayList<>();
+    private final List<Path> decompressed = Collections.synchronizedList(new ArrayList<>());
+
+    // Data classes
+    static class ForeignKey {
+        final String childTable;
+        final String childColumn;
+        final String parentTable;
+        final String parentColumn;
+        final Report report;
+
+        ForeignKey(String childTable, String childColumn, String parentTable, String parentColumn) {
+            this.childTable = childTable;
+            this.childColumn = childColumn;
+            this.parentTable = parentTable;
+            this.parentColumn = parentColumn;
+            this.report = new Report(childTable + "." + childColumn + " -> " + parentTable + "." + parentColumn);
+        }
+    }
+
+    static class UniqueKey {
+        final String table;
+        final List<String> columns;
+        final Report report;
+
+        UniqueKey(String table, List<String> columns) {
+            this.table = table;
+            this.columns = columns;
+            this.report = new Report("unique " + table + "(" + String.join(", ", columns) + ")");
+        }
+    }
+
+    static class TableFile {
+        final String name;
+        final List<Path> paths; // <name>.csv, or its shards
+        final byte delimiter;
+        final List<String> headers;
+        final long[] dataStarts; // per path: byte offset of the first row after the header
+
+        TableFile(String name, List<Path> paths, byte delimiter, List<String> headers, long[] dataStarts) {
+            this.name = name;
+            this.paths = paths;
+            this.delimiter = delimiter;
+            this.headers = headers;
+            this.dataStarts = dataStarts;
+        }
+
+        /** Where a row is, for violation samples: "byte N", prefixed with the shard file name. */
+        String location(int part, long offset) {
+            return paths.size() == 1 ? "byte " + offset : paths.get(part).getFileName() + " byte " + offset;
+        }
+    }
+
+    static class Report {
+        final String description;
+        final AtomicLong checked = new AtomicLong();
+        final AtomicLong violations = new AtomicLong();
+        final List<String> samples = Collections.synchronizedList(new ArrayList<>());
+
+        Report(String description) {
+            this.description = description;
+        }
+
+        void violation(String sample) {
+            violations.incrementAndGet();
+            if (samples.size() < MAX_SAMPLES) {
+                samples.add(sample);
+            }
+        }
+    }
+
+    public ReferentialIntegrityValidator(Path changelogDir, Path dbmlFile, Path csvDir, int threads) {
+        this.changelogDir = changelogDir;
+        this.dbmlFile = dbmlFile;
+        this.csvDir = csvDir;
+        this.pool = Executors.newFixedThreadPool(threads);
+    }
+
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ReferentialIntegrityValidator validator = new ReferentialIntegrityValidator(
+                Paths.get(CHANGELOG_DIR), Paths.get(SCHEMA_DBML), Paths.get(CSV_DIR), threads);
+        try {
+            long violations = validator.validate();
+            System.exit(violations == 0 ? 0 : 1);
+        } catch (Exception e) {
+            System.err.println("Error validating CSV output: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(2);
+        }
+    }
+
+    /** Runs all checks, prints the report and returns the total number of violations. */
+    public long validate() throws Exception {
+        long start = System.nanoTime();
+        try {
+            loadConstraints();
+            loadParentKeys();
+            checkTables();
+        } finally {
+            pool.shutdown();
+            for (Path copy : decompressed) {
+                Files.deleteIfExists(copy);
+            }
+        }
+        long violations = printReport();
+        System.out.printf(Locale.ROOT, "Validation finished in %.2f s%n", (System.nanoTime() - start) / 1e9);
+        return violations;
+    }
+
+    // ---- constraint graph ----
+
+    private void loadConstraints() throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        List<Path> changelogs;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(changelogDir, "*.xml")) {
+            changelogs = new ArrayList<>();
+            stream.forEach(changelogs::add);
+        }
+        Collections.sort(changelogs);
+
+        for (Path file : changelogs) {
+            Document doc = factory.newDocumentBuilder().parse(file.toFile());
+
+            NodeList fkNodes = doc.getElementsByTagName("addForeignKeyConstraint");
+            for (int i = 0; i < fkNodes.getLength(); i++) {
+                Element fk = (Element) fkNodes.item(i);
+                foreignKeys.add(new ForeignKey(
+                        fk.getAttribute("baseTableName"), fk.getAttribute("baseColumnNames"),
+                        fk.getAttribute("referencedTableName"), fk.getAttribute("referencedColumnNames")));
+            }
+
+            NodeList createNodes = doc.getElementsByTagName("createTable");
+            for (int i = 0; i < createNodes.getLength(); i++) {
+                Element table = (Element) createNodes.item(i);
+                NodeList columns = table.getElementsByTagName("column");
+                for (int c = 0; c < columns.getLength(); c++) {
+                    Element column = (Element) columns.item(c);
+                    NodeList constraints = column.getElementsByTagName("constraints");
+                    if (constraints.getLength() == 0)
+                        continue;
+                    Element constraint = (Element) constraints.item(0);
+                    if ("true".equals(constraint.getAttribute("unique"))
+                            || "true".equals(constraint.getAttribute("primaryKey"))) {
+                        uniqueKeys.add(new UniqueKey(table.getAttribute("tableName"),
+                                List.of(column.getAttribute("name"))));
+                    }
+                }
+            }
+        }
+
+        // Composite unique indexes only exist in the DBML model
+        if (Files.exists(dbmlFile)) {
+            String currentTable = null;
+            for (String line : Files.readAllLines(dbmlFile, StandardCharsets.UTF_8)) {
+                Matcher table = DBML_TABLE.matcher(line.trim());
+                if (table.find()) {
+                    currentTable = table.group(1);
+                    continue;
+                }
+                Matcher index = DBML_UNIQUE_INDEX.matcher(line);
+                if (currentTable != null && index.find() && hasUniqueOption(index.group(2))) {
+                    List<String> columns = new ArrayList<>();
+                    for (String col : index.group(1).split(",")) {
+                        columns.add(col.trim());
+                    }
+                    if (columns.size() > 1) {
+                        uniqueKeys.add(new UniqueKey(currentTable, columns));
+                    }
+                }
+            }
+        }
+
+        System.out.println("Loaded " + foreignKeys.size() + " foreign keys and " + uniqueKeys.size()
+                + " unique keys");
+    }
+
+    /** True for "[unique, name: ...]" but not for a note that merely mentions uniqueness. */
+    private static boolean hasUniqueOption(String options) {
+        for (String option : options.split(",")) {
+            if (option.trim().equals("unique"))
+                return true;
+        }
+        return false;
+    }
+
+    private TableFile table(String name) throws IOException {
+        TableFile cached = tables.get(name);
+        if (cached != null)
+            return cached;
+
+        Path single = CsvFiles.resolve(csvDir.resolve(name + ".csv"));
+        List<Path> paths = ShardedTableWriter.manifestShards(csvDir.resolve(name));
+        if (paths.isEmpty()) {
+            if (!Files.exists(single))
+                return null;
+            paths = List.of(single);
+        } else if (Files.exists(single)) {
+            System.err.println("Warning: " + name + " has both " + single + " and shards; validating the shards");
+        }
+
+        List<Path> plain = new ArrayList<>();
+        String header = null;
+        long[] dataStarts = new long[paths.size()];
+        for (int part = 0; part < paths.size(); part++) {
+            Path path = uncompressed(paths.get(part), name);
+            // Read the raw header bytes so the data offset is exact for both \n and \r\n files
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+                int b;
+                while ((b = in.read()) != -1 && b != '\n') {
+                    headerBytes.write(b);
+                }
+            }
+            if (headerBytes.size() == 0)
+                return null;
+            String partHeader = headerBytes.toString(StandardCharsets.UTF_8).trim();
+            if (header != null && !header.equals(partHeader))
+                throw new IOException("Shard " + paths.get(part) + " has a different header than " + paths.get(0));
+            header = partHeader;
+            dataStarts[part] = headerBytes.size() + 1L;
+            plain.add(path);
+        }
+
+        // csv_output mixes ';' (gazetteer, station, route) and ',' (staff, vehicle, trip) tables
+        byte delimiter = header.indexOf(';') >= 0 ? (byte) ';' : (byte) ',';
+        List<String> headers = new ArrayList<>();
+        for (String h : header.split(String.valueOf((char) delimiter), -1)) {
+            headers.add(h.trim());
+        }
+
+        TableFile tableFile = new TableFile(name, plain, delimiter, headers, dataStarts);
+        tables.put(name, tableFile);
+        return tableFile;
+    }
+
+    /** path itself, or a decompressed temp copy (deleted after validation) of a compressed file. */
+    private Path uncompressed(Path path, String name) throws IOException {
+        if (CsvFiles.codecOf(path) == null)
+            return path;
+        Path copy = Files.createTempFile(name + "-", ".csv");
+        decompressed.add(copy);
+        try (InputStream in = CsvFiles.open(path)) {
+            Files.copy(in, copy, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return copy;
+    }
+
+    // ---- phase 1: parent key sets ----
+
+    private void loadParentKeys() throws Exception {
+        Map<String, Future<LongHashSet>> pending = new LinkedHashMap<>();
+        for (ForeignKey fk : foreignKeys) {
+            String key = fk.parentTable + "." + fk.parentColumn;
+            if (pending.containsKey(key))
+                continue;
+            TableFile parent = table(fk.parentTable);
+            if (parent == null || !parent.headers.contains(fk.parentColumn))
+                continue;
+            int column = parent.headers.indexOf(fk.parentColumn);
+            pending.put(key, pool.submit(() -> collectKeys(parent, column)));
+        }
+        for (Map.Entry<String, Future<LongHashSet>> entry : pending.entrySet()) {
+            LongHashSet keys = entry.getValue().get();
+            parentKeys.put(entry.getKey(), keys);
+            System.out.println("Loaded " + keys.size() + " keys for " + entry.getKey());
+        }
+    }
+
+    private LongHashSet collectKeys(TableFile table, int column) throws Exception {
+        // Parent tables are scanned one per pool thread, so their chunks are read sequentially
+        int[] columns = { column };
+        LongHashSet keys = new LongHashSet();
+        for (long[] range : chunks(table)) {
+            scanChunk(table, range, columns, (offset, rowKeys, raw) -> {
+                if (rowKeys[0] != NULL_KEY)
+                    keys.add(rowKeys[0]);
+            });
+        }
+        return keys;
+    }
+
+    // ---- phase 2: stream child tables ----
+
+    private void checkTables() throws Exception {
+        Map<String, List<ForeignKey>> fksByTable = new LinkedHashMap<>();
+        Map<String, List<UniqueKey>> uniquesByTable = new LinkedHashMap<>();
+        Set<String> tableNames = new LinkedHashSet<>();
+
+        for (ForeignKey fk : foreignKeys) {
+            TableFile child = table(fk.childTable);
+            if (child == null) {
+                skipped.add(fk.report.description + " (" + fk.childTable + ".csv not found)");
+            } else if (!child.headers.contains(fk.childColumn)) {
+                skipped.add(fk.report.description + " (column missing in " + fk.childTable + ".csv)");
+            } else if (!parentKeys.containsKey(fk.parentTable + "." + fk.parentColumn)) {
+                skipped.add(fk.report.description + " (" + fk.parentTable + ".csv not found)");
+            } else {
+                fksByTable.computeIfAbsent(fk.childTable, k -> new ArrayList<>()).add(fk);
+                tableNames.add(fk.childTable);
+            }
+        }
+        for (UniqueKey uk : uniqueKeys) {
+            TableFile t = table(uk.table);
+            if (t == null || !t.headers.containsAll(uk.columns)) {
+                skipped.add(uk.report.description + " (" + uk.table + ".csv or columns not found)");
+            } else {
+                uniquesByTable.computeIfAbsent(uk.table, k -> new ArrayList<>()).add(uk);
+                tableNames.add(uk.table);
+            }
+        }
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (String name : tableNames) {
+            TableFile t = table(name);
+            List<ForeignKey> fks = fksByTable.getOrDefault(name, List.of());
+            List<UniqueKey> uks = uniquesByTable.getOrDefault(name, List.of());
+            List<long[]> ranges = chunks(t);
+
+            // One global set per unique key; chunk-local sets are merged into it afterwards
+            LongHashSet[] globalUnique = new LongHashSet[uks.size()];
+            for (int u = 0; u < uks.size(); u++) {
+                globalUnique[u] = new LongHashSet();
+            }
+            List<Future<LongHashSet[]>> chunkResults = new ArrayList<>();
+            for (long[] range : ranges) {
+                chunkResults.add(pool.submit(() -> checkChunk(t, range, fks, uks)));
+            }
+            futures.add(pool.submit(() -> {
+                LongHashSet[] crossChunk = new LongHashSet[uks.size()];
+                for (int u = 0; u < uks.size(); u++) {
+                    crossChunk[u] = new LongHashSet(16);
+                }
+                for (Future<LongHashSet[]> chunk : chunkResults) {
+                    LongHashSet[] local = chunk.get();
+                    for (int u = 0; u < uks.size(); u++) {
+                        LongHashSet global = globalUnique[u];
+                        LongHashSet duplicates = crossChunk[u];
+                        local[u].forEach(key -> {
+                            if (!global.add(key))
+                                duplicates.add(key);
+                        });
+                    }
+                }
+                // Only hashes survive the merge; rescan to report the rows behind them
+                for (int u = 0; u < uks.size(); u++) {
+                    if (crossChunk[u].size() > 0)
+                        reportCrossChunkDuplicates(t, ranges, uks.get(u), crossChunk[u]);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    private LongHashSet[] checkChunk(TableFile t, long[] range, List<ForeignKey> fks, List<UniqueKey> uks)
+            throws IOException {
+        // Columns needed by this table's constraints, deduplicated
+        List<String> needed = new ArrayList<>();
+        for (ForeignKey fk : fks) {
+            if (!needed.contains(fk.childColumn))
+                needed.add(fk.childColumn);
+        }
+        for (UniqueKey uk : uks) {
+            for (String col : uk.columns) {
+                if (!needed.contains(col))
+                    needed.add(col);
+            }
+        }
+        int[] columns = new int[needed.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = t.headers.indexOf(needed.get(i));
+        }
+
+        LongHashSet[] parents = new LongHashSet[fks.size()];
+        int[] fkSlots = new int[fks.size()];
+        for (int f = 0; f < fks.size(); f++) {
+            ForeignKey fk = fks.get(f);
+            parents[f] = parentKeys.get(fk.parentTable + "." + fk.parentColumn);
+            fkSlots[f] = needed.indexOf(fk.childColumn);
+        }
+        int[][] ukSlots = new int[uks.size()][];
+        LongHashSet[] localUnique = new LongHashSet[uks.size()];
+        for (int u = 0; u < uks.size(); u++) {
+            List<String> cols = uks.get(u).columns;
+            ukSlots[u] = new int[cols.size()];
+            for (int c = 0; c < cols.size(); c++) {
+                ukSlots[u][c] = needed.indexOf(cols.get(c));
+            }
+            localUnique[u] = new LongHashSet();
+        }
+
+        long[] fkChecked = new long[fks.size()];
+        long[] ukChecked = new long[uks.size()];
+
+        int part = (int) range[0];
+        scanChunk(t, range, columns, (offset, keys, raw) -> {
+            for (int f = 0; f < parents.length; f++) {
+                long key = keys[fkSlots[f]];
+                if (key == NULL_KEY)
+                    continue; // nullable FK
+                fkChecked[f]++;
+                if (!parents[f].contains(key)) {
+                    ForeignKey fk = fks.get(f);
+                    fk.report.violation(t.location(part, offset) + ": " + fk.childColumn + "=" + raw.get(fkSlots[f]));
+                }
+            }
+            for (int u = 0; u < ukSlots.length; u++) {
+                long composite = compositeKey(keys, ukSlots[u]);
+                if (composite == NULL_KEY)
+                    continue; // SQL unique constraints ignore NULLs
+                ukChecked[u]++;
+                if (!localUnique[u].add(composite))
+                    uks.get(u).report.violation(duplicateSample(t, part, offset, needed, ukSlots[u], raw));
+            }
+        });
+
+        for (int f = 0; f < fks.size(); f++) {
+            fks.get(f).report.checked.addAndGet(fkChecked[f]);
+        }
+        for (int u = 0; u < uks.size(); u++) {
+            uks.get(u).report.checked.addAndGet(ukChecked[u]);
+        }
+        return localUnique;
+    }
+
+    /**
+     * Finds the rows whose key hash collided with an earlier chunk and reports each one,
+     * in the same places and numbers as the merge found them: once per later chunk holding the key.
+     */
+    private void reportCrossChunkDuplicates(TableFile t, List<long[]> ranges, UniqueKey uk, LongHashSet duplicates)
+            throws IOException {
+        int[] columns = new int[uk.columns.size()];
+        int[] slots = new int[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = t.headers.indexOf(uk.columns.get(c));
+            slots[c] = c;
+        }
+        LongHashSet earlierChunks = new LongHashSet(duplicates.size());
+        for (long[] range : ranges) {
+            int part = (int) range[0];
+            LongHashSet thisChunk = new LongHashSet(16);
+            scanChunk(t, range, columns, (offset, keys, raw) -> {
+                long composite = compositeKey(keys, slots);
+                if (composite == NULL_KEY || !duplicates.contains(composite) || !thisChunk.add(composite))
+                    return;
+                if (earlierChunks.contains(composite))
+                    uk.report.violation(duplicateSample(t, part, offset, uk.columns, slots, raw) + " (across chunks)");
+            });
+            thisChunk.forEach(earlierChunks::add);
+        }
+    }
+
+    /** Hash of a unique key's column keys, or NULL_KEY when any of them is NULL. */
+    private static long compositeKey(long[] keys, int[] slots) {
+        long composite = 0x9E3779B97F4A7C15L;
+        for (int slot : slots) {
+            long key = keys[slot];
+            if (key == NULL_KEY)
+                return NULL_KEY;
+            composite = mix(composite * 31 + key);
+        }
+        return composite;
+    }
+
+    /** "byte N: col=value col=value" for a duplicate unique key. */
+    private static String duplicateSample(TableFile t, int part, long offset, List<String> columns, int[] slots,
+            RawFields raw) {
+        StringBuilder sample = new StringBuilder(t.location(part, offset)).append(':');
+        for (int slot : slots) {
+            sample.append(' ').append(columns.get(slot)).append('=').append(raw.get(slot));
+        }
+        return sample.toString();
+    }
+
+    // ---- byte-level chunk scanning ----
+
+    private static final long NULL_KEY = Long.MIN_VALUE;
+
+    interface RowVisitor {
+        /**
+         * @param offset file offset of the row
+         * @param keys   key per requested column (numeric value, 64-bit hash, or NULL_KEY)
+         * @param raw    lazily decoded column text, only for reporting
+         */
+        void row(long offset, long[] keys, RawFields raw);
+    }
+
+    /** Decodes a requested column's text on demand (only used for violation samples). */
+    static final class RawFields {
+        private final ByteBuffer buffer;
+        private final int[] starts;
+        private final int[] ends;
+
+        RawFields(ByteBuffer buffer, int columns) {
+            this.buffer = buffer;
+            this.starts = new int[columns];
+            this.ends = new int[columns];
+        }
+
+        String get(int slot) {
+            byte[] bytes = new byte[ends[slot] - starts[slot]];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(starts[slot] + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /** Splits the data section of each file of a table into newline-aligned { part, start, end } ranges. */
+    private List<long[]> chunks(TableFile t) throws IOException {
+        List<long[]> ranges = new ArrayList<>();
+        for (int part = 0; part < t.paths.size(); part++) {
+            try (FileChannel channel = FileChannel.open(t.paths.get(part), StandardOpenOption.READ)) {
+                long size = channel.size();
+                long start = t.dataStarts[part];
+                ByteBuffer probe = ByteBuffer.allocate(4096);
+                while (start < size) {
+                    long end = Math.min(start + CHUNK_SIZE, size);
+                    // Extend the chunk to the end of the line it cuts through
+                    while (end < size) {
+                        probe.clear();
+                        int n = channel.read(probe, end);
+                        if (n <= 0) {
+                            end = size;
+                            break;
+                        }
+                        int nl = -1;
+                        for (int i = 0; i < n; i++) {
+                            if (probe.get(i) == '\n') {
+                                nl = i;
+                                break;
+                            }
+                        }
+                        if (nl >= 0) {
+                            end += nl + 1;
+                            break;
+                        }
+                        end += n;
+                    }
+                    ranges.add(new long[] { part, start, end });
+                    start = end;
+                }
+            }
+        }
+        return ranges;
+    }
+
+    private void scanChunk(TableFile t, long[] range, int[] columns, RowVisitor visitor) throws IOException {
+        long start = range[1];
+        long end = range[2];
+        if (end <= start)
+            return;
+        MappedByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(t.paths.get((int) range[0]), StandardOpenOption.READ)) {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        }
+
+        // column index -> slot in keys[]; -1 if not requested
+        int maxColumn = 0;
+        for (int c : columns) {
+            maxColumn = Math.max(maxColumn, c);
+        }
+        int[] slotOf = new int[maxColumn + 1];
+        Arrays.fill(slotOf, -1);
+        for (int s = 0; s < columns.length; s++) {
+            slotOf[columns[s]] = s;
+        }
+
+        long[] keys = new long[columns.length];
+        RawFields raw = new RawFields(buf, columns.length);
+        byte delimiter = t.delimiter;
+        int limit = buf.limit();
+        int lineStart = 0;
+        int fieldStart = 0;
+        int field = 0;
+        boolean inQuotes = false;
+        Arrays.fill(keys, NULL_KEY);
+
+        for (int i = 0; i <= limit; i++) {
+            byte b = i < limit ? buf.get(i) : (byte) '\n';
+            if (b == '"') {
+                inQuotes = !inQuotes;
+                continue;
+            }
+            boolean endOfLine = b == '\n';
+            if ((b != delimiter || inQuotes) && !endOfLine)
+                continue;
+            if (endOfLine)
+                inQuotes = false;
+
+            int fieldEnd = i;
+            if (endOfLine && fieldEnd > fieldStart && buf.get(fieldEnd - 1) == '\r')
+                fieldEnd--;
+            if (field <= maxColumn && slotOf[field] >= 0) {
+                int slot = slotOf[field];
+                raw.starts[slot] = fieldStart;
+                raw.ends[slot] = fieldEnd;
+                keys[slot] = key(buf, fieldStart, fieldEnd);
+            }
+            field++;
+            fieldStart = i + 1;
+
+            if (endOfLine) {
+                if (i > lineStart) // skip blank lines
+                    visitor.row(start + lineStart, keys, raw);
+                Arrays.fill(keys, NULL_KEY);
+                field = 0;
+                lineStart = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Numeric value for canonical integers (digits, no leading zero unless just "0"), otherwise
+     * a 64-bit hash, so zero-padded codes like "007" stay distinct from "7"; NULL_KEY for empty or \N.
+     */
+    private static long key(ByteBuffer buf, int from, int to) {
+        // Trim blanks and surrounding quotes
+        while (from < to && buf.get(from) == ' ')
+            from++;
+        while (to > from && buf.get(to - 1) == ' ')
+            to--;
+        if (to - from >= 2 && buf.get(from) == '"' && buf.get(to - 1) == '"') {
+            from++;
+            to--;
+        }
+        int length = to - from;
+        if (length == 0 || (length == 2 && buf.get(from) == '\\' && buf.get(from + 1) == 'N'))
+            return NULL_KEY;
+
+        long value = 0;
+        boolean numeric = length <= 18 && (length == 1 || buf.get(from) != '0');
+        long hash = 0xcbf29ce484222325L; // FNV-1a 64
+        for (int i = from; i < to; i++) {
+            byte b = buf.get(i);
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+            if (numeric) {
+                if (b >= '0' && b <= '9') {
+                    value = value * 10 + (b - '0');
+                } else {
+                    numeric = false;
+                }
+            }
+        }
+        if (numeric)
+            return value;
+        // Keep hashes out of the non-negative range used by numeric IDs
+        long tagged = hash | Long.MIN_VALUE;
+        return tagged == NULL_KEY ? tagged + 1 : tagged;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // ---- reporting ----
+
+    private long printReport() {
+        long total = 0;
+        System.out.println("=== REFERENTIAL INTEGRITY REPORT ===");
+        for (ForeignKey fk : foreignKeys) {
+            if (fk.report.checked.get() > 0 || fk.report.violations.get() > 0)
+                total += printEntry(fk.report);
+        }
+        for (UniqueKey uk : uniqueKeys) {
+            if (uk.report.checked.get() > 0 || uk.report.violations.get() > 0)
+                total += printEntry(uk.report);
+        }
+        for (String s : skipped) {
+            System.out.println("[SKIP] " + s);
+        }
+        System.out.println("Total violations: " + total);
+        return total;
+    }
+
+    private long printEntry(Report report) {
+        long violations = report.violations.get();
+        if (violations == 0) {
+            System.out.println("[OK]   " + report.description + " (" + report.checked.get() + " rows checked)");
+        } else {
+            System.out.println("[FAIL] " + report.description + ": " + violations + " violations in "
+                    + report.checked.get() + " rows");
+            synchronized (report.samples) {
+                for (String sample : report.samples) {
+                    System.out.println("       " + sample);
+                }
+            }
+        }
+        return violations;
+    }
+}
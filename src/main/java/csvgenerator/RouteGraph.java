@@ -0,0 +1,395 @@
+package csvgenerator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory directed route graph built from route.csv and station.csv.
+ * - Stations are mapped to dense int indexes; adjacency is compressed sparse row
+ *   (offsets / targets / per-edge route id and distance_km).
+ * - BFS (hop counts) and Dijkstra with a pluggable EdgeWeight (distance, hops, or e.g.
+ *   TripTiming durations keyed by route id).
+ * - Batch mode: computeReachability() precomputes all-pairs reachability as one bitset row
+ *   per station, so reachability checks and sampling of multi-leg itineraries are O(1)-ish.
+ */
+public final class RouteGraph {
+
+    /** Cost of traversing an edge; return a negative value to forbid the edge. */
+    public interface EdgeWeight {
+        double weight(RouteGraph graph, int edge);
+    }
+
+    public static final EdgeWeight HOPS = (graph, edge) -> 1.0;
+    public static final EdgeWeight DISTANCE = (graph, edge) -> graph.distances[edge];
+
+    private final long[] stationIds; // index -> station id
+    private final LongIntHashMap stationIndex; // station id -> index
+    private final int[] offsets; // edges of station i are [offsets[i], offsets[i + 1])
+    private final int[] targets;
+    private final long[] routeIds;
+    private final float[] distances; // km, NaN when route.csv has none
+    private long[][] reachability; // filled by computeReachability()
+
+    private RouteGraph(long[] stationIds, LongIntHashMap stationIndex, int[] offsets, int[] targets, long[] routeIds,
+            float[] distances) {
+        this.stationIds = stationIds;
+        this.stationIndex = stationIndex;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.routeIds = routeIds;
+        this.distances = distances;
+    }
+
+    public static void main(String[] args) {
+        String csvDir = args.length > 0 ? args[0] : "csv_output";
+        try {
+            long start = System.nanoTime();
+            RouteGraph graph = load(Paths.get(csvDir, "route.csv"), Paths.get(csvDir, "station.csv"));
+            long loaded = System.nanoTime();
+            long reachablePairs = graph.computeReachability();
+            long done = System.nanoTime();
+            int n = graph.stationCount();
+            System.out.println("=== ROUTE GRAPH SUMMARY ===");
+            System.out.println("Stations: " + n + ", routes (edges): " + graph.edgeCount());
+            System.out.printf(Locale.ROOT, "Reachable ordered pairs: %d of %d (%.1f%%)%n", reachablePairs,
+                    (long) n * (n - 1), n > 1 ? 100.0 * reachablePairs / ((double) n * (n - 1)) : 0.0);
+            System.out.printf(Locale.ROOT, "Load: %.1f ms, all-pairs reachability: %.1f ms%n",
+                    (loaded - start) / 1e6, (done - loaded) / 1e6);
+        } catch (Exception e) {
+            System.err.println("Error building route graph: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Builds the graph; every station in station.csv becomes a node, even without routes.
+     * Both tables are read through their ReferenceSnapshot.
+     */
+    public static RouteGraph load(Path routeCsv, Path stationCsv) throws IOException {
+        ReferenceSnapshot stations = ReferenceSnapshot.forCsv(stationCsv);
+        LongIntHashMap index = new LongIntHashMap(Math.max(16, stations.rowCount()), -1);
+        long[] ids = new long[stations.rowCount()];
+        int n = 0;
+        for (int row = 0; row < stations.rowCount(); row++) {
+            long id = stations.getLong(row, 0);
+            if (id != ReferenceSnapshot.NULL_LONG && index.get(id) < 0) {
+                ids[n] = id;
+                index.put(id, n++);
+            }
+        }
+
+        // route.csv: id;route_code;distance_km;...;origin_id;destination_id
+        ReferenceSnapshot routes = ReferenceSnapshot.forCsv(routeCsv);
+        int rows = routes.columnCount() < 10 ? 0 : routes.rowCount();
+        int[] from = new int[rows];
+        int[] to = new int[rows];
+        long[] routeId = new long[rows];
+        float[] km = new float[rows];
+        int m = 0;
+        for (int row = 0; row < rows; row++) {
+            int a = index.get(routes.getLong(row, 8));
+            int b = index.get(routes.getLong(row, 9));
+            if (a < 0 || b < 0 || a == b)
+                continue;
+            String distance = routes.getString(row, 2);
+            from[m] = a;
+            to[m] = b;
+            routeId[m] = routes.getLong(row, 0);
+            km[m] = distance.isEmpty() ? Float.NaN : Float.parseFloat(distance);
+            m++;
+        }
+
+        // Counting sort of edges by origin -> CSR
+        int[] offsets = new int[n + 1];
+        for (int e = 0; e < m; e++)
+            offsets[from[e] + 1]++;
+        for (int i = 0; i < n; i++)
+            offsets[i + 1] += offsets[i];
+        int[] cursor = Arrays.copyOf(offsets, n);
+        int[] targets = new int[m];
+        long[] edgeRoutes = new long[m];
+        float[] edgeKm = new float[m];
+        for (int e = 0; e < m; e++) {
+            int slot = cursor[from[e]]++;
+            targets[slot] = to[e];
+            edgeRoutes[slot] = routeId[e];
+            edgeKm[slot] = km[e];
+        }
+        return new RouteGraph(Arrays.copyOf(ids, n), index, offsets, targets, edgeRoutes, edgeKm);
+    }
+
+    // ---- structure ----
+
+    public int stationCount() {
+        return stationIds.length;
+    }
+
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    /** Dense index of a station id, or -1. */
+    public int indexOf(long stationId) {
+        return stationIndex.get(stationId);
+    }
+
+    public long stationId(int index) {
+        return stationIds[index];
+    }
+
+    public int firstEdge(int station) {
+        return offsets[station];
+    }
+
+    public int endEdge(int station) {
+        return offsets[station + 1];
+    }
+
+    public int target(int edge) {
+        return targets[edge];
+    }
+
+    public long routeId(int edge) {
+        return routeIds[edge];
+    }
+
+    public float distanceKm(int edge) {
+        return distances[edge];
+    }
+
+    // ---- traversal ----
+
+    /** Hop count from source to every station (-1 if unreachable). */
+    public int[] bfs(int source) {
+        int[] hops = new int[stationCount()];
+        Arrays.fill(hops, -1);
+        int[] queue = new int[stationCount()];
+        int head = 0;
+        int tail = 0;
+        hops[source] = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int u = queue[head++];
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                int v = targets[e];
+                if (hops[v] < 0) {
+                    hops[v] = hops[u] + 1;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return hops;
+    }
+
+    /** Cheapest path between two station ids, or null if there is none. */
+    public Itinerary shortestPath(long fromStationId, long toStationId, EdgeWeight weight) {
+        int source = indexOf(fromStationId);
+        int target = indexOf(toStationId);
+        if (source < 0 || target < 0)
+            return null;
+        if (reachability != null && source != target && !reachable(source, target))
+            return null;
+
+        int n = stationCount();
+        double[] cost = new double[n];
+        int[] viaEdge = new int[n];
+        Arrays.fill(cost, Double.POSITIVE_INFINITY);
+        Arrays.fill(viaEdge, -1);
+        cost[source] = 0;
+
+        // Binary heap of station indexes ordered by cost (lazy deletion)
+        int[] heap = new int[Math.max(16, edgeCount() + 1)];
+        double[] keys = new double[heap.length];
+        int size = 0;
+        heap[size] = source;
+        keys[size++] = 0;
+        while (size > 0) {
+            int u = heap[0];
+            double d = keys[0];
+            size--;
+            heap[0] = heap[size];
+            keys[0] = keys[size];
+            siftDown(heap, keys, size, 0);
+            if (d > cost[u])
+                continue;
+            if (u == target)
+                break;
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                double w = weight.weight(this, e);
+                if (w < 0 || Double.isNaN(w))
+                    continue;
+                int v = targets[e];
+                double candidate = d + w;
+                if (candidate < cost[v]) {
+                    cost[v] = candidate;
+                    viaEdge[v] = e;
+                    if (size == heap.length) {
+                        heap = Arrays.copyOf(heap, size * 2);
+                        keys = Arrays.copyOf(keys, size * 2);
+                    }
+                    heap[size] = v;
+                    keys[size] = candidate;
+                    siftUp(heap, keys, size++);
+                }
+            }
+        }
+        if (cost[target] == Double.POSITIVE_INFINITY)
+            return null;
+
+        List<Long> stations = new ArrayList<>();
+        List<Long> routes = new ArrayList<>();
+        for (int v = target; v != source; ) {
+            int e = viaEdge[v];
+            stations.add(stationIds[v]);
+            routes.add(routeIds[e]);
+            v = origin(e);
+        }
+        stations.add(stationIds[source]);
+        Collections.reverse(stations);
+        Collections.reverse(routes);
+        return new Itinerary(stations, routes, cost[target]);
+    }
+
+    // ---- all-pairs reachability ----
+
+    /**
+     * Precomputes reachability for every ordered pair (one BFS per source, run in parallel)
+     * and returns the number of reachable pairs (excluding a station to itself).
+     * Memory is n * n / 8 bytes.
+     */
+    public long computeReachability() {
+        int n = stationCount();
+        int words = (n + 63) >>> 6;
+        long[][] rows = new long[n][];
+        IntStream.range(0, n).parallel().forEach(source -> {
+            long[] row = new long[words];
+            int[] hops = bfs(source);
+            for (int v = 0; v < n; v++) {
+                if (hops[v] > 0)
+                    row[v >>> 6] |= 1L << v;
+            }
+            rows[source] = row;
+        });
+        reachability = rows;
+        long pairs = 0;
+        for (long[] row : rows) {
+            for (long word : row)
+                pairs += Long.bitCount(word);
+        }
+        return pairs;
+    }
+
+    /** True if target can be reached from source; uses the precomputed index when available. */
+    public boolean reachable(int source, int target) {
+        if (reachability != null)
+            return (reachability[source][target >>> 6] & (1L << target)) != 0;
+        return bfs(source)[target] > 0;
+    }
+
+    /** Number of stations reachable from source (requires computeReachability()). */
+    public int reachableCount(int source) {
+        int count = 0;
+        for (long word : requireReachability()[source])
+            count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * Uniformly picks a station reachable from source (requires computeReachability()),
+     * or -1 if none is. Useful as the endpoint of a synthetic multi-leg itinerary.
+     */
+    public int randomReachable(int source, SplittableRandom random) {
+        int count = reachableCount(source);
+        if (count == 0)
+            return -1;
+        int k = random.nextInt(count);
+        long[] row = reachability[source];
+        for (int w = 0; w < row.length; w++) {
+            int bits = Long.bitCount(row[w]);
+            if (k < bits) {
+                long word = row[w];
+                for (int i = 0; i < k; i++)
+                    word &= word - 1; // drop lowest set bit
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            k -= bits;
+        }
+        return -1;
+    }
+
+    private long[][] requireReachability() {
+        if (reachability == null)
+            throw new IllegalStateException("computeReachability() has not been run");
+        return reachability;
+    }
+
+    private int origin(int edge) {
+        // offsets is sorted: binary search for the row containing the edge
+        int lo = 0;
+        int hi = stationCount() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (offsets[mid] <= edge) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        while (offsets[lo + 1] <= edge)
+            lo++;
+        return lo;
+    }
+
+    private static void siftUp(int[] heap, double[] keys, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= keys[i])
+                break;
+            swap(heap, keys, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, double[] keys, int size, int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size)
+                break;
+            int smallest = left + 1 < size && keys[left + 1] < keys[left] ? left + 1 : left;
+            if (keys[i] <= keys[smallest])
+                break;
+            swap(heap, keys, i, smallest);
+            i = smallest;
+        }
+    }
+
+    private static void swap(int[] heap, double[] keys, int a, int b) {
+        int h = heap[a];
+        heap[a] = heap[b];
+        heap[b] = h;
+        double k = keys[a];
+        keys[a] = keys[b];
+        keys[b] = k;
+    }
+
+    /** A path through the graph: stations visited, routes taken, and its total cost. */
+    public static final class Itinerary {
+        public final List<Long> stationIds;
+        public final List<Long> routeIds;
+        public final double cost;
+
+        Itinerary(List<Long> stationIds, List<Long> routeIds, double cost) {
+            this.stationIds = stationIds;
+            this.routeIds = routeIds;
+            this.cost = cost;
+        }
+    }
+}
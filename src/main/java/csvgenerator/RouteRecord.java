@@ -0,0 +1,19 @@
+package csvgenerator;
+
+/**
+ * One row of csv_output/route.csv (the columns TripGenerator needs), so MergedRouteProcessor
+ * can hand its routes to TripGenerator in-process instead of TripGenerator re-reading the file.
+ */
+public final class RouteRecord {
+    public final long id;
+    public final String routeCode; // as written to route.csv
+    public final long originId;
+    public final long destinationId;
+
+    public RouteRecord(long id, String routeCode, long originId, long destinationId) {
+        this.id = id;
+        this.routeCode = routeCode;
+        this.originId = originId;
+        this.destinationId = destinationId;
+    }
+}
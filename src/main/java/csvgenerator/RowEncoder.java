@@ -0,0 +1,294 @@
+package csvgenerator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.zip.Checksum;
+
+/**
+ * Delimited row writer that encodes values straight into a reusable byte buffer.
+ * Replaces per-row PrintWriter.printf / String.format: no format string parsing,
+ * no boxing of longs, and decimals are written from their unscaled long value.
+ * Rows are staged in a byte[] and flushed through a large direct buffer to a FileChannel,
+ * or to a BlockCompressingChannel when a CompressionCodec is given.
+ *
+ * Usage:
+ *   try (RowEncoder out = new RowEncoder(path, ',', false)) {
+ *       out.writeLine("id,name");
+ *       out.appendLong(id).appendString(name).endRow();
+ *   }
+ */
+public final class RowEncoder implements Closeable {
+
+    private static final int CHANNEL_BUFFER_SIZE = 1 << 20; // 1 MiB
+
+    // "00".."99" so two digits are emitted per lookup
+    private static final byte[] DIGIT_PAIRS = new byte[200];
+    static {
+        for (int i = 0; i < 100; i++) {
+            DIGIT_PAIRS[i * 2] = (byte) ('0' + i / 10);
+            DIGIT_PAIRS[i * 2 + 1] = (byte) ('0' + i % 10);
+        }
+    }
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer out;
+    private final byte delimiter;
+
+    private byte[] row = new byte[512];
+    private int length;
+    private boolean firstField = true;
+    private long rowCount;
+    private long bytesWritten;
+    private Checksum checksum; // optional, over every byte written
+
+    public RowEncoder(Path path, char delimiter, boolean append) throws IOException {
+        this(path, delimiter, append, null);
+    }
+
+    /** Writes to path as given, compressed with codec unless it is null (see CsvFiles for name mapping). */
+    public RowEncoder(Path path, char delimiter, boolean append, CompressionCodec codec) throws IOException {
+        this.channel = CsvFiles.channel(path, append, codec);
+        this.out = ByteBuffer.allocateDirect(CHANNEL_BUFFER_SIZE);
+        this.delimiter = (byte) delimiter;
+    }
+
+    /** Feeds every byte written from now on into checksum (e.g. CRC32C for a shard manifest). */
+    public RowEncoder checksum(Checksum checksum) {
+        this.checksum = checksum;
+        return this;
+    }
+
+    /** Writes a complete pre-built line (e.g. the header) followed by a newline. */
+    public RowEncoder writeLine(String line) throws IOException {
+        length = 0;
+        writeUtf8(line);
+        ensure(1);
+        row[length++] = '\n';
+        drainRow();
+        firstField = true;
+        return this;
+    }
+
+    public RowEncoder appendLong(long value) {
+        startField();
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                writeAscii("-9223372036854775808");
+                return this;
+            }
+            ensure(1);
+            row[length++] = '-';
+            value = -value;
+        }
+        writeDigits(value, 0);
+        return this;
+    }
+
+    /**
+     * Writes prefix (ASCII) then a non-negative value zero-padded to at least width digits, as
+     * one field: ("TRIP", 42, 6) -> TRIP000042, without building prefix + String.format("%06d").
+     */
+    public RowEncoder appendPaddedLong(String prefix, long value, int width) {
+        startField();
+        writeAscii(prefix);
+        writeDigits(value, width);
+        return this;
+    }
+
+    /** Writes unscaled / 10^scale with exactly {@code scale} fraction digits, e.g. (12345, 2) -> 123.45 */
+    public RowEncoder appendDecimal(long unscaled, int scale) {
+        startField();
+        if (unscaled < 0) {
+            ensure(1);
+            row[length++] = '-';
+            unscaled = -unscaled;
+        }
+        long divisor = 1;
+        for (int i = 0; i < scale; i++) {
+            divisor *= 10;
+        }
+        writeDigits(unscaled / divisor, 0);
+        if (scale > 0) {
+            ensure(1);
+            row[length++] = '.';
+            writeDigits(unscaled % divisor, scale);
+        }
+        return this;
+    }
+
+    /** Same output as printf("%.Nf") (HALF_UP) for BigDecimal values. */
+    public RowEncoder appendDecimal(BigDecimal value, int scale) {
+        BigDecimal scaled = value.setScale(scale, RoundingMode.HALF_UP);
+        if (scaled.precision() <= 18) {
+            return appendDecimal(scaled.unscaledValue().longValue(), scale);
+        }
+        return appendString(scaled.toPlainString());
+    }
+
+    /** Writes epoch seconds (UTC, no zone shift) as yyyy-MM-dd HH:mm:ss. */
+    public RowEncoder appendTimestamp(long epochSecond) {
+        startField();
+        ensure(TimestampCodec.FORMATTED_LENGTH);
+        TimestampCodec.format(epochSecond, row, length);
+        length += TimestampCodec.FORMATTED_LENGTH;
+        return this;
+    }
+
+    /** Writes the string as-is (UTF-8); callers are responsible for escaping. */
+    public RowEncoder appendString(String value) {
+        startField();
+        if (value != null) {
+            writeUtf8(value);
+        }
+        return this;
+    }
+
+    /** Appends to the current field without a delimiter, e.g. to build "A đi B" from parts. */
+    public RowEncoder appendToField(String value) {
+        if (value != null) {
+            writeUtf8(value);
+        }
+        return this;
+    }
+
+    public RowEncoder appendEmpty() {
+        startField();
+        return this;
+    }
+
+    /** Terminates the current row and hands it to the channel buffer. */
+    public void endRow() throws IOException {
+        ensure(1);
+        row[length++] = '\n';
+        drainRow();
+        firstField = true;
+        rowCount++;
+    }
+
+    public long rowCount() {
+        return rowCount;
+    }
+
+    /** Bytes handed to the channel so far (before compression), including header lines. */
+    public long bytesWritten() {
+        return bytesWritten;
+    }
+
+    public void flush() throws IOException {
+        out.flip();
+        if (checksum != null) {
+            checksum.update(out);
+            out.rewind();
+        }
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // ---- encoding helpers ----
+
+    private void startField() {
+        if (firstField) {
+            firstField = false;
+        } else {
+            ensure(1);
+            row[length++] = delimiter;
+        }
+    }
+
+    private void drainRow() throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            if (!out.hasRemaining()) {
+                flush();
+            }
+            int n = Math.min(out.remaining(), length - offset);
+            out.put(row, offset, n);
+            offset += n;
+        }
+        bytesWritten += length;
+        length = 0;
+    }
+
+    /** Writes a non-negative value, left-padded with zeros to at least minDigits. */
+    private void writeDigits(long value, int minDigits) {
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        int width = Math.max(digits, minDigits);
+        ensure(width);
+        int end = length + width;
+        int p = end;
+        while (value >= 100) {
+            int pair = (int) (value % 100);
+            value /= 100;
+            row[--p] = DIGIT_PAIRS[pair * 2 + 1];
+            row[--p] = DIGIT_PAIRS[pair * 2];
+        }
+        if (value >= 10) {
+            row[--p] = DIGIT_PAIRS[(int) value * 2 + 1];
+            row[--p] = DIGIT_PAIRS[(int) value * 2];
+        } else {
+            row[--p] = (byte) ('0' + value);
+        }
+        while (p > length) {
+            row[--p] = '0';
+        }
+        length = end;
+    }
+
+    private void writeAscii(String s) {
+        ensure(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            row[length++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void writeUtf8(String s) {
+        int n = s.length();
+        ensure(n * 3);
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                row[length++] = (byte) c;
+            } else if (c < 0x800) {
+                row[length++] = (byte) (0xC0 | (c >> 6));
+                row[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                row[length++] = (byte) (0xF0 | (cp >> 18));
+                row[length++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                row[length++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                row[length++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                row[length++] = '?'; // unpaired surrogate, same as the JDK encoder's replacement
+            } else {
+                row[length++] = (byte) (0xE0 | (c >> 12));
+                row[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                row[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > row.length) {
+            row = java.util.Arrays.copyOf(row, Math.max(row.length * 2, length + extra));
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package csvgenerator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+/**
+ * Periodic checkpoint of a long generator run, so a crashed run can continue with --resume.
+ * One file per stage, csv_output/.checkpoints/<stage>.ckpt: magic, version, the run's input
+ * fingerprint, then whatever state the stage writes (input position, RNG, partial results).
+ * - save() writes a temp file and moves it into place, so a crash while saving keeps the
+ *   previous checkpoint.
+ * - restore() ignores a checkpoint whose fingerprint differs (inputs changed since).
+ * - clear() removes it once the stage's outputs are complete.
+ * Interval: -Dcheckpoint.interval=<seconds> (default 60, 0 disables periodic saves).
+ */
+public final class RunCheckpoint {
+
+    public static final String DIR_NAME = ".checkpoints";
+
+    private static final long MAGIC = 0x4446434b50543031L; // "DFCKPT01"
+    private static final int VERSION = 1;
+
+    public interface State {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    public interface Restore {
+        void read(DataInputStream in) throws IOException;
+    }
+
+    private final Path file;
+    private final long intervalNanos;
+    private long nextDue;
+
+    private RunCheckpoint(Path file, long intervalNanos) {
+        this.file = file;
+        this.intervalNanos = intervalNanos;
+        this.nextDue = System.nanoTime() + intervalNanos;
+    }
+
+    public static RunCheckpoint in(Path outputDir, String stage) {
+        long seconds = Long.parseLong(System.getProperty("checkpoint.interval", "60"));
+        return new RunCheckpoint(outputDir.resolve(DIR_NAME).resolve(stage + ".ckpt"), seconds * 1_000_000_000L);
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    /** True when the interval has passed since the run started or the last save. */
+    public boolean due() {
+        return intervalNanos > 0 && System.nanoTime() - nextDue >= 0;
+    }
+
+    /** Reads the checkpoint into restore; false (nothing read) if there is none or it is for other inputs. */
+    public boolean restore(long fingerprint, Restore restore) throws IOException {
+        if (!Files.exists(file))
+            return false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readLong() != MAGIC || in.readInt() != VERSION) {
+                System.err.println("Warning: ignoring checkpoint with unknown format: " + file);
+                return false;
+            }
+            if (in.readLong() != fingerprint) {
+                System.err.println("Warning: inputs changed since checkpoint " + file + ", starting over");
+                return false;
+            }
+            restore.read(in);
+        }
+        return true;
+    }
+
+    public void save(long fingerprint, State state) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeLong(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint);
+            state.write(out);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        nextDue = System.nanoTime() + intervalNanos;
+    }
+
+    public void clear() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /** Size and mtime of an input, for fingerprints (a stat, not a read). */
+    public static long fileStamp(Path path) throws IOException {
+        if (!Files.exists(path))
+            return 0L;
+        return Hash64.mix(Files.size(path), Files.getLastModifiedTime(path).toMillis());
+    }
+
+    // java.util.Random only exposes its seed through serialization
+    public static void writeRandom(DataOutputStream out, Random random) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+            objects.writeObject(random);
+        }
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    public static Random readRandom(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            objects.setObjectInputFilter(ObjectInputFilter.Config.createFilter("java.util.Random;!*"));
+            return (Random) objects.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Corrupt checkpoint RNG state", e);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package csvgenerator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32C;
+
+/**
+ * Hash-partitioned output of one table for parallel DB loads: N shard files
+ * <dir>/<table>-000.csv ... (each with the header) and <dir>/manifest.json listing every
+ * shard's row count, byte size and CRC32C.
+ * - With -Dcsv.compression the shards are <table>-000.csv.gz etc.; bytes and CRC32C are
+ *   then of the uncompressed rows, so they do not depend on codec or level.
+ * - The shard of a row is Hash64 of its key column value mod N (shardOf), so a key's rows
+ *   always land in the same shard for a given N.
+ * - Each shard has its own RowEncoder; shards may be written concurrently, one thread per shard.
+ * - Opening removes the previous shards and manifest; the manifest is written last on close,
+ *   so a directory without one holds an incomplete run.
+ */
+public final class ShardedTableWriter implements Closeable {
+
+    public static final String MANIFEST_NAME = "manifest.json";
+
+    private final Path dir;
+    private final String table;
+    private final String key;
+    private final CompressionCodec codec;
+    private final Path[] files;
+    private final RowEncoder[] shards;
+    private final CRC32C[] checksums;
+
+    public ShardedTableWriter(Path dir, String table, String header, char delimiter, int shardCount, String key)
+            throws IOException {
+        if (shardCount < 1)
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        this.dir = dir;
+        this.table = table;
+        this.key = key;
+        this.codec = CsvFiles.outputCodec();
+        Files.createDirectories(dir);
+        Files.deleteIfExists(dir.resolve(MANIFEST_NAME));
+        for (Path stale : existingShards(dir, table)) {
+            Files.delete(stale);
+        }
+        files = new Path[shardCount];
+        shards = new RowEncoder[shardCount];
+        checksums = new CRC32C[shardCount];
+        try {
+            for (int s = 0; s < shardCount; s++) {
+                files[s] = dir.resolve(String.format(Locale.ROOT, "%s-%03d.csv%s", table, s,
+                        codec == null ? "" : codec.extension()));
+                checksums[s] = new CRC32C();
+                shards[s] = new RowEncoder(files[s], delimiter, false, codec).checksum(checksums[s]);
+                shards[s].writeLine(header);
+            }
+        } catch (IOException e) {
+            closeAll();
+            throw e;
+        }
+    }
+
+    /** Shard files written by an earlier run, compressed or not (read them with CsvFiles.reader). */
+    public static List<Path> existingShards(Path dir, String table) throws IOException {
+        List<Path> found = new ArrayList<>();
+        if (!Files.isDirectory(dir))
+            return found;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, table + "-[0-9][0-9][0-9]*.csv{,.*}")) {
+            stream.forEach(found::add);
+        }
+        found.sort(null);
+        return found;
+    }
+
+    /**
+     * The shard files listed in dir's manifest.json, in shard order; empty when there is no
+     * manifest, i.e. no complete sharded output in dir.
+     */
+    public static List<Path> manifestShards(Path dir) throws IOException {
+        List<Path> shards = new ArrayList<>();
+        Path manifest = dir.resolve(MANIFEST_NAME);
+        if (!Files.exists(manifest))
+            return shards;
+        for (JsonNode file : new ObjectMapper().readTree(manifest.toFile()).path("files")) {
+            shards.add(dir.resolve(file.path("file").asText()));
+        }
+        return shards;
+    }
+
+    /** Removes a table's manifest and shards (and dir, once empty), e.g. when a single file replaces them. */
+    public static void delete(Path dir, String table) throws IOException {
+        if (!Files.isDirectory(dir))
+            return;
+        Files.deleteIfExists(dir.resolve(MANIFEST_NAME));
+        for (Path shard : existingShards(dir, table)) {
+            Files.delete(shard);
+        }
+        try (DirectoryStream<Path> rest = Files.newDirectoryStream(dir)) {
+            if (!rest.iterator().hasNext())
+                Files.delete(dir);
+        }
+    }
+
+    public static int shardOf(CharSequence keyValue, int shardCount) {
+        return (int) Long.remainderUnsigned(Hash64.hashChars(keyValue, 0), shardCount);
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    public RowEncoder shard(int shard) {
+        return shards[shard];
+    }
+
+    public long rowCount() {
+        long rows = 0;
+        for (RowEncoder shard : shards) {
+            rows += shard.rowCount();
+        }
+        return rows;
+    }
+
+    public long bytesWritten() {
+        long bytes = 0;
+        for (RowEncoder shard : shards) {
+            bytes += shard.bytesWritten();
+        }
+        return bytes;
+    }
+
+    /** Closes every shard, then writes the manifest (temp file + move). */
+    @Override
+    public void close() throws IOException {
+        closeAll();
+        StringBuilder json = new StringBuilder();
+        json.append("{\"table\":\"").append(table).append("\",\"key\":\"").append(key)
+                .append("\",\"compression\":\"").append(CsvFiles.compressionName())
+                .append("\",\"shards\":").append(shards.length)
+                .append(",\"rows\":").append(rowCount())
+                .append(",\"files\":[");
+        for (int s = 0; s < shards.length; s++) {
+            if (s > 0)
+                json.append(',');
+            json.append("\n  {\"file\":\"").append(files[s].getFileName())
+                    .append("\",\"rows\":").append(shards[s].rowCount())
+                    .append(",\"bytes\":").append(shards[s].bytesWritten())
+                    .append(",\"crc32c\":\"").append(String.format("%08x", checksums[s].getValue()))
+                    .append("\"}");
+        }
+        json.append("\n]}\n");
+        Path tmp = dir.resolve(MANIFEST_NAME + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writer.write(json.toString());
+        }
+        Files.move(tmp, dir.resolve(MANIFEST_NAME), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void closeAll() throws IOException {
+        IOException failure = null;
+        for (RowEncoder shard : shards) {
+            if (shard == null)
+                continue;
+            try {
+                shard.close();
+            } catch (IOException e) {
+                failure = failure == null ? e : failure;
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+}
@@ -0,0 +1,275 @@
+package csvgenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.LongConsumer;
+
+/**
+ * Staged execution for line-oriented inputs: reader -> N parser workers -> ordered consumer.
+ * - One reader thread fills byte chunks, cut after the last '\n' so no line spans two chunks.
+ * - Workers decode chunks (UTF-8) and map every line to a result; null drops the line.
+ *   Parsers run concurrently and must be thread-safe.
+ * - The calling thread consumes results strictly in input order, so anything stateful
+ *   (RNG draws, ID sequences) stays where a sequential run would put it.
+ * Both hand-offs are bounded (a queue of chunks, a reorder ring of result batches); a fast
+ * stage blocks instead of buffering, so memory stays at roughly
+ * (queue + ring + workers) chunks regardless of input size.
+ */
+public final class StagedLinePipeline<T> {
+
+    public static final int DEFAULT_CHUNK_BYTES = 1 << 20;
+
+    public interface LineParser<T> {
+        T parse(String line);
+    }
+
+    public interface LineConsumer<T> {
+        void accept(T result) throws IOException;
+    }
+
+    private static final Chunk END = new Chunk(-1, new byte[0], 0);
+
+    private final int workers;
+    private final int chunkBytes;
+    private final PipelineMetrics metrics;
+
+    public StagedLinePipeline(int workers, int chunkBytes, PipelineMetrics metrics) {
+        this.workers = Math.max(1, workers);
+        this.chunkBytes = Math.max(1024, chunkBytes);
+        this.metrics = metrics;
+    }
+
+    /** Runs in to completion and returns the number of lines read (header excluded). */
+    public long run(InputStream in, boolean skipHeader, LineParser<T> parser, LineConsumer<T> consumer)
+            throws IOException {
+        return run(in, skipHeader ? 1 : 0, parser, consumer, null);
+    }
+
+    /**
+     * Drops the first skipLines lines unparsed (header, or lines a resumed run already
+     * processed), then runs in to completion. progress, if set, is called on the consumer
+     * thread after each batch with the number of lines consumed so far (skipped excluded);
+     * everything before that line has been passed to consumer.
+     */
+    public long run(InputStream in, long skipLines, LineParser<T> parser, LineConsumer<T> consumer,
+            LongConsumer progress) throws IOException {
+        BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(workers * 2);
+        ReorderRing<T> ring = new ReorderRing<>(workers * 4);
+        List<Thread> threads = new ArrayList<>();
+
+        Thread reader = new Thread(() -> {
+            try {
+                ring.finish(readChunks(in, skipLines, chunks));
+                for (int i = 0; i < workers; i++) {
+                    chunks.put(END);
+                }
+            } catch (Throwable e) {
+                ring.fail(e);
+            }
+        }, "staged-reader");
+        threads.add(reader);
+
+        for (int w = 0; w < workers; w++) {
+            threads.add(new Thread(() -> {
+                try {
+                    for (Chunk chunk = chunks.take(); chunk != END; chunk = chunks.take()) {
+                        ring.publish(chunk.seq, parseChunk(chunk, parser));
+                    }
+                } catch (Throwable e) {
+                    ring.fail(e);
+                }
+            }, "staged-worker-" + w));
+        }
+
+        threads.forEach(thread -> {
+            thread.setDaemon(true);
+            thread.start();
+        });
+        long lines = 0;
+        try {
+            for (Batch<T> batch = ring.next(); batch != null; batch = ring.next()) {
+                lines += batch.lines;
+                for (T result : batch.results) {
+                    consumer.accept(result);
+                }
+                if (progress != null)
+                    progress.accept(lines);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while consuming staged results", e);
+        } finally {
+            // Stops the other stages if the consumer failed; no-op after a normal end
+            threads.forEach(Thread::interrupt);
+        }
+        return lines;
+    }
+
+    // Returns the number of chunks produced
+    private long readChunks(InputStream in, long skipLines, BlockingQueue<Chunk> chunks)
+            throws IOException, InterruptedException {
+        byte[] buffer = new byte[chunkBytes];
+        int filled = 0;
+        long seq = 0;
+        long skip = skipLines;
+        long t = metrics.start();
+        while (true) {
+            int n = in.read(buffer, filled, buffer.length - filled);
+            if (n < 0)
+                break;
+            filled += n;
+            if (skip > 0) {
+                int dropped = 0;
+                while (skip > 0) {
+                    int newline = indexOf(buffer, dropped, filled, (byte) '\n');
+                    if (newline < 0)
+                        break;
+                    dropped = newline + 1;
+                    skip--;
+                }
+                filled -= dropped;
+                System.arraycopy(buffer, dropped, buffer, 0, filled);
+                if (skip > 0) {
+                    if (filled == buffer.length)
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2); // a skipped line longer than a chunk
+                    continue;
+                }
+            }
+            if (filled < buffer.length)
+                continue;
+            int cut = lastIndexOf(buffer, filled, (byte) '\n');
+            if (cut < 0) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2); // a line longer than a chunk
+                continue;
+            }
+            byte[] next = new byte[Math.max(chunkBytes, filled - cut - 1)];
+            System.arraycopy(buffer, cut + 1, next, 0, filled - cut - 1);
+            t = metrics.stop(PipelineMetrics.Stage.READ, t);
+            chunks.put(new Chunk(seq++, buffer, cut + 1));
+            t = metrics.start();
+            filled -= cut + 1;
+            buffer = next;
+        }
+        if (filled > 0 && skip == 0) {
+            metrics.stop(PipelineMetrics.Stage.READ, t);
+            chunks.put(new Chunk(seq++, buffer, filled));
+        }
+        return seq;
+    }
+
+    private Batch<T> parseChunk(Chunk chunk, LineParser<T> parser) {
+        String text = new String(chunk.data, 0, chunk.length, StandardCharsets.UTF_8);
+        List<T> results = new ArrayList<>();
+        int lines = 0;
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            if (end < 0)
+                end = text.length();
+            int lineEnd = end > start && text.charAt(end - 1) == '\r' ? end - 1 : end;
+            lines++;
+            T result = parser.parse(text.substring(start, lineEnd));
+            if (result != null)
+                results.add(result);
+            start = end + 1;
+        }
+        metrics.add(PipelineMetrics.ROWS_READ, lines);
+        return new Batch<>(results, lines);
+    }
+
+    private static int indexOf(byte[] data, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (data[i] == value)
+                return i;
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(byte[] data, int to, byte value) {
+        for (int i = to - 1; i >= 0; i--) {
+            if (data[i] == value)
+                return i;
+        }
+        return -1;
+    }
+
+    private static final class Chunk {
+        final long seq;
+        final byte[] data;
+        final int length;
+
+        Chunk(long seq, byte[] data, int length) {
+            this.seq = seq;
+            this.data = data;
+            this.length = length;
+        }
+    }
+
+    private static final class Batch<T> {
+        final List<T> results;
+        final int lines;
+
+        Batch(List<T> results, int lines) {
+            this.results = results;
+            this.lines = lines;
+        }
+    }
+
+    /**
+     * Fixed ring of result batches indexed by chunk sequence. A worker that finishes chunk
+     * seq waits until seq is within the ring's window of the next batch to consume, so a
+     * slow chunk holds back at most ring-size finished batches.
+     */
+    private static final class ReorderRing<T> {
+        private final Object[] slots;
+        private long next;
+        private long total = -1; // chunk count, known once the reader is done
+        private Throwable failure;
+
+        ReorderRing(int size) {
+            this.slots = new Object[size];
+        }
+
+        synchronized void publish(long seq, Batch<T> batch) throws InterruptedException {
+            while (seq >= next + slots.length && failure == null)
+                wait();
+            slots[(int) (seq % slots.length)] = batch;
+            notifyAll();
+        }
+
+        /** Next batch in order, or null at the end; rethrows a reader/worker failure. */
+        @SuppressWarnings("unchecked")
+        synchronized Batch<T> next() throws IOException, InterruptedException {
+            int slot = (int) (next % slots.length);
+            while (slots[slot] == null) {
+                if (failure != null)
+                    throw new IOException("Staged pipeline failed: " + failure.getMessage(), failure);
+                if (total >= 0 && next >= total)
+                    return null;
+                wait();
+            }
+            Batch<T> batch = (Batch<T>) slots[slot];
+            slots[slot] = null;
+            next++;
+            notifyAll();
+            return batch;
+        }
+
+        synchronized void finish(long chunkCount) {
+            total = chunkCount;
+            notifyAll();
+        }
+
+        synchronized void fail(Throwable e) {
+            if (failure == null && !(e instanceof InterruptedException))
+                failure = e;
+            notifyAll();
+        }
+    }
+}
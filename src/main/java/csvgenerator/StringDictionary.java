@@ -0,0 +1,52 @@
+package csvgenerator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns strings (IDs read from CSVs) to dense int codes 0..size-1, so per-row columns
+ * can hold an int instead of a String reference. Each distinct value is stored once.
+ * Not thread-safe.
+ */
+public final class StringDictionary {
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    /** Returns the code of value, adding it if it is new. */
+    public int intern(String value) {
+        Integer code = codes.get(value);
+        if (code != null)
+            return code;
+        int added = values.size();
+        codes.put(value, added);
+        values.add(value);
+        return added;
+    }
+
+    /** Code of value, or -1 if it was never interned. */
+    public int indexOf(String value) {
+        Integer code = codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    public String get(int code) {
+        return values.get(code);
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    /** Read-only view of the values in code order. */
+    public List<String> values() {
+        return Collections.unmodifiableList(values);
+    }
+}
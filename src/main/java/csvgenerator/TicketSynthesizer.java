@@ -0,0 +1,323 @@
+package csvgenerator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic ticket-file generator for offline / large-scale runs of MergedRouteProcessor
+ * and TripGenerator.
+ * - benxe: 13 '|' fields, route "Origin đi Destination" at 0, price at 2, fromHour at 5,
+ *   toHour at 7, date at 11.
+ * - nhaxe: 13 '|' fields, "[company] District - Province đi District - Province" at 0,
+ *   fromHour at 4, toHour at 6, price at 9, date at 11.
+ * Endpoints come from station.csv / province.csv / district.csv and are drawn with a Zipfian
+ * distribution, so a few hubs dominate like in the scraped data.
+ * Rows are produced in fixed-size chunks, each with its own RNG derived from (seed, chunk),
+ * so the output is byte-identical for a given seed regardless of the thread count.
+ * Chunks are written in parallel to part files and appended to the output in order.
+ *
+ * Usage: TicketSynthesizer [--rows N] [--seed S] [--threads T] [--zipf S] [--format benxe|nhaxe|both]
+ *                          [--ref csv_output] [--out .]
+ */
+public final class TicketSynthesizer {
+
+    public enum Format {
+        BENXE("tickets_benxe.csv",
+                "route|company|price|seats|type|fromHour|fromStation|toHour|toStation|duration|note|date|url"),
+        NHAXE("tickets_nhaxe.csv",
+                "route|company|type|seats|fromHour|fromStation|toHour|toStation|duration|price|note|date|url");
+
+        public final String fileName;
+        public final String header;
+
+        Format(String fileName, String header) {
+            this.fileName = fileName;
+            this.header = header;
+        }
+    }
+
+    private static final int CHUNK_ROWS = 1 << 20;
+    private static final int COMPANIES = 200;
+    private static final int DAYS = 365;
+    private static final long FIRST_DAY = TimestampCodec.epochDay(2025, 1, 1);
+    private static final double DEFAULT_ZIPF_EXPONENT = 1.0;
+    private static final String SOURCE_URL = "https://example.invalid/synthetic";
+
+    // Precomputed field values so rows are encoded without per-row formatting
+    private static final String[] TIMES = new String[96]; // every 15 minutes
+    private static final String[] PRICES = new String[141]; // 100.000đ .. 1.500.000đ
+    private static final String[] DURATIONS = new String[80]; // 15 min .. 20 h
+    private static final String[] DATES = new String[DAYS];
+    static {
+        for (int i = 0; i < TIMES.length; i++) {
+            TIMES[i] = String.format(Locale.ROOT, "%02d:%02d", i / 4, i % 4 * 15);
+        }
+        for (int i = 0; i < PRICES.length; i++) {
+            int thousands = 100 + i * 10;
+            PRICES[i] = (thousands >= 1000 ? thousands / 1000 + "." + String.format(Locale.ROOT, "%03d", thousands % 1000)
+                    : String.valueOf(thousands)) + ".000đ";
+        }
+        for (int i = 0; i < DURATIONS.length; i++) {
+            int minutes = (i + 1) * 15;
+            DURATIONS[i] = minutes / 60 + "h" + (minutes % 60 == 0 ? "" : String.format(Locale.ROOT, "%02d", minutes % 60));
+        }
+        for (int i = 0; i < DAYS; i++) {
+            String ts = TimestampCodec.format((FIRST_DAY + i) * 86400L); // yyyy-MM-dd ...
+            DATES[i] = ts.substring(8, 10) + "-" + ts.substring(5, 7) + "-" + ts.substring(0, 4);
+        }
+    }
+
+    private final long seed;
+    private final String[] benxeEndpoints;
+    private final String[] nhaxeEndpoints;
+    private final String[] companies = new String[COMPANIES];
+    private final double[] benxeCdf;
+    private final double[] nhaxeCdf;
+    private final double[] companyCdf;
+
+    public TicketSynthesizer(Path referenceDir, long seed) throws IOException {
+        this(referenceDir, seed, DEFAULT_ZIPF_EXPONENT);
+    }
+
+    public TicketSynthesizer(Path referenceDir, long seed, double zipfExponent) throws IOException {
+        this.seed = seed;
+        Random ranking = new Random(seed);
+
+        List<String> benxe = loadBenxeEndpoints(referenceDir);
+        List<String> nhaxe = loadNhaxeEndpoints(referenceDir);
+        if (benxe.size() < 2 || nhaxe.size() < 2)
+            throw new IOException("Not enough station/district names in " + referenceDir);
+
+        // Popularity rank is a seeded shuffle of the names
+        Collections.shuffle(benxe, ranking);
+        Collections.shuffle(nhaxe, ranking);
+        this.benxeEndpoints = benxe.toArray(new String[0]);
+        this.nhaxeEndpoints = nhaxe.toArray(new String[0]);
+        this.benxeCdf = zipfCdf(benxeEndpoints.length, zipfExponent);
+        this.nhaxeCdf = zipfCdf(nhaxeEndpoints.length, zipfExponent);
+        this.companyCdf = zipfCdf(COMPANIES, zipfExponent);
+        for (int i = 0; i < COMPANIES; i++) {
+            companies[i] = "Nhà xe " + (i + 1);
+        }
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i], args[i + 1]);
+        }
+        long rows = Long.parseLong(options.getOrDefault("--rows", "1000000"));
+        long seed = Long.parseLong(options.getOrDefault("--seed", "42"));
+        int threads = Integer.parseInt(options.getOrDefault("--threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        double zipf = Double.parseDouble(options.getOrDefault("--zipf", String.valueOf(DEFAULT_ZIPF_EXPONENT)));
+        String format = options.getOrDefault("--format", "both").toLowerCase(Locale.ROOT);
+        Path ref = Paths.get(options.getOrDefault("--ref", "csv_output"));
+        Path out = Paths.get(options.getOrDefault("--out", "."));
+
+        try {
+            TicketSynthesizer synthesizer = new TicketSynthesizer(ref, seed, zipf);
+            Files.createDirectories(out);
+            if (!format.equals("nhaxe")) {
+                Path benxe = CsvFiles.prepareTarget(out.resolve(Format.BENXE.fileName));
+                synthesizer.synthesize(benxe, Format.BENXE, rows, threads);
+            }
+            if (!format.equals("benxe")) {
+                Path nhaxe = CsvFiles.prepareTarget(out.resolve(Format.NHAXE.fileName));
+                synthesizer.synthesize(nhaxe, Format.NHAXE, rows, threads);
+            }
+        } catch (Exception e) {
+            System.err.println("Error synthesizing tickets: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes header + rows ticket lines to output (compressed per CsvFiles.outputCodec);
+     * returns the file size in bytes.
+     */
+    public long synthesize(Path output, Format format, long rows, int threads) throws Exception {
+        long start = System.nanoTime();
+        try (RowEncoder header = new RowEncoder(output, '|', false, CsvFiles.outputCodec())) {
+            header.writeLine(format.header);
+        }
+
+        int chunks = (int) ((rows + CHUNK_ROWS - 1) / CHUNK_ROWS);
+        CsvFiles.appendParts(output, chunks, threads,
+                chunk -> writeChunk(output, format, chunk, Math.min(CHUNK_ROWS, rows - (long) chunk * CHUNK_ROWS)));
+
+        long bytes = Files.size(output);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(Locale.ROOT, "Synthesized %d %s rows -> %s (%.1f MiB, %.1f MiB/s)%n",
+                rows, format.name().toLowerCase(Locale.ROOT), output, bytes / 1048576.0,
+                bytes / 1048576.0 / Math.max(seconds, 1e-9));
+        return bytes;
+    }
+
+    private Path writeChunk(Path output, Format format, int chunk, long rows) throws IOException {
+        Path part = CsvFiles.partFile(output, chunk);
+        SplittableRandom random = new SplittableRandom(mix(seed + format.ordinal(), chunk));
+        try (RowEncoder out = new RowEncoder(part, '|', false, CsvFiles.outputCodec())) {
+            for (long i = 0; i < rows; i++) {
+                if (format == Format.BENXE) {
+                    writeBenxeRow(out, random);
+                } else {
+                    writeNhaxeRow(out, random);
+                }
+            }
+        }
+        return part;
+    }
+
+    private void writeBenxeRow(RowEncoder out, SplittableRandom random) throws IOException {
+        int origin = sample(benxeCdf, random);
+        int destination = sampleOther(benxeCdf, random, origin);
+        int from = random.nextInt(TIMES.length);
+        int duration = random.nextInt(DURATIONS.length);
+        int to = (from + duration + 1) % TIMES.length;
+
+        out.appendString(benxeEndpoints[origin]).appendToField(" đi ").appendToField(benxeEndpoints[destination])
+                .appendString(companies[sample(companyCdf, random)])
+                .appendString(PRICES[random.nextInt(PRICES.length)])
+                .appendLong(16 + random.nextInt(30))
+                .appendString("Giường nằm")
+                .appendString(TIMES[from])
+                .appendString(benxeEndpoints[origin])
+                .appendString(TIMES[to])
+                .appendString(benxeEndpoints[destination])
+                .appendString(DURATIONS[duration])
+                .appendEmpty()
+                .appendString(DATES[random.nextInt(DAYS)])
+                .appendString(SOURCE_URL) // non-empty: String.split drops trailing empty fields
+                .endRow();
+    }
+
+    private void writeNhaxeRow(RowEncoder out, SplittableRandom random) throws IOException {
+        int origin = sample(nhaxeCdf, random);
+        int destination = sampleOther(nhaxeCdf, random, origin);
+        int from = random.nextInt(TIMES.length);
+        int duration = random.nextInt(DURATIONS.length);
+        int to = (from + duration + 1) % TIMES.length;
+        String company = companies[sample(companyCdf, random)];
+
+        out.appendString("[").appendToField(company).appendToField("] ").appendToField(nhaxeEndpoints[origin])
+                .appendToField(" đi ").appendToField(nhaxeEndpoints[destination])
+                .appendString(company)
+                .appendString("Limousine")
+                .appendLong(9 + random.nextInt(36))
+                .appendString(TIMES[from])
+                .appendString(nhaxeEndpoints[origin])
+                .appendString(TIMES[to])
+                .appendString(nhaxeEndpoints[destination])
+                .appendString(DURATIONS[duration])
+                .appendString(PRICES[random.nextInt(PRICES.length)])
+                .appendEmpty()
+                .appendString(DATES[random.nextInt(DAYS)])
+                .appendString(SOURCE_URL) // non-empty: String.split drops trailing empty fields
+                .endRow();
+    }
+
+    // ---- Zipfian sampling ----
+
+    /** Cumulative distribution of P(rank k) ~ 1 / k^s for k = 1..n. */
+    static double[] zipfCdf(int n, double exponent) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cdf[k] /= sum;
+        }
+        cdf[n - 1] = 1.0;
+        return cdf;
+    }
+
+    static int sample(double[] cdf, SplittableRandom random) {
+        double u = random.nextDouble();
+        int lo = 0;
+        int hi = cdf.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cdf[mid] < u) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static int sampleOther(double[] cdf, SplittableRandom random, int excluded) {
+        int index = sample(cdf, random);
+        return index != excluded ? index : (index + 1 + random.nextInt(cdf.length - 1)) % cdf.length;
+    }
+
+    private static long mix(long seed, int chunk) {
+        long h = seed + 0x9E3779B97F4A7C15L * (chunk + 1);
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    // ---- reference names ----
+
+    /** Station names plus the provinces from "Station in [Province]" (both resolve in MergedRouteProcessor). */
+    private static List<String> loadBenxeEndpoints(Path referenceDir) throws IOException {
+        List<String> names = new ArrayList<>();
+        List<String> provinces = new ArrayList<>();
+        for (String[] fields : readRows(referenceDir.resolve("station.csv"))) {
+            if (fields.length >= 4 && !fields[1].isEmpty()) {
+                names.add(fields[1]);
+                if (fields[3].startsWith("Station in ")) {
+                    String province = fields[3].substring("Station in ".length());
+                    if (!provinces.contains(province))
+                        provinces.add(province);
+                }
+            }
+        }
+        names.addAll(provinces);
+        return names;
+    }
+
+    /** "District - Province" pairs from district.csv joined to province.csv names. */
+    private static List<String> loadNhaxeEndpoints(Path referenceDir) throws IOException {
+        Map<String, String> provinceNames = new HashMap<>();
+        for (String[] fields : readRows(referenceDir.resolve("province.csv"))) {
+            if (fields.length >= 3)
+                provinceNames.put(fields[0], fields[2]);
+        }
+        List<String> locations = new ArrayList<>();
+        for (String[] fields : readRows(referenceDir.resolve("district.csv"))) {
+            if (fields.length >= 14) {
+                String province = provinceNames.get(fields[13]);
+                if (province != null)
+                    locations.add(fields[2] + " - " + province);
+            }
+        }
+        return locations;
+    }
+
+    private static List<String[]> readRows(Path csv) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = CsvFiles.reader(csv)) {
+            String line = reader.readLine(); // Skip header
+            while ((line = reader.readLine()) != null) {
+                rows.add(line.split(";"));
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,261 @@
+package csvgenerator;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-layout timestamp codec for ticket dates.
+ * - Parses "dd-MM-yyyy" + "HH:mm" (or "H:mm") from char ranges into epoch seconds
+ *   without split()/substring() allocations.
+ * - Formats epoch seconds as "yyyy-MM-dd HH:mm:ss" from a two-digit table.
+ * Epoch seconds are zone-less local time (LocalDateTime at UTC offset), matching the
+ * naive timestamps written to csv_output.
+ * Malformed inputs are counted and reported as INVALID instead of being replaced by "now".
+ * Parsing is safe from several threads (the malformed count is a LongAdder).
+ */
+public final class TimestampCodec {
+
+    public static final long INVALID = Long.MIN_VALUE;
+    public static final int FORMATTED_LENGTH = 19; // yyyy-MM-dd HH:mm:ss
+
+    private static final byte[] DIGIT_PAIRS = new byte[200];
+    static {
+        for (int i = 0; i < 100; i++) {
+            DIGIT_PAIRS[i * 2] = (byte) ('0' + i / 10);
+            DIGIT_PAIRS[i * 2 + 1] = (byte) ('0' + i % 10);
+        }
+    }
+
+    private final long createdAtEpoch;
+    private final String createdAt;
+    private final LongAdder malformed = new LongAdder();
+
+    public TimestampCodec() {
+        this(LocalDateTime.now().toEpochSecond(ZoneOffset.UTC));
+    }
+
+    public TimestampCodec(long createdAtEpoch) {
+        this.createdAtEpoch = createdAtEpoch;
+        this.createdAt = format(createdAtEpoch);
+    }
+
+    /** The run's created_at value, computed once. */
+    public String createdAt() {
+        return createdAt;
+    }
+
+    public long createdAtEpoch() {
+        return createdAtEpoch;
+    }
+
+    public long malformedCount() {
+        return malformed.sum();
+    }
+
+    /** Adds to the malformed count (counts carried over from a checkpointed run). */
+    public void countMalformed(long count) {
+        malformed.add(count);
+    }
+
+    /** Parses a ticket date ("dd-MM-yyyy") and time ("HH:mm"); returns INVALID and counts it on failure. */
+    public long parse(CharSequence date, CharSequence time) {
+        long epochDay = parseDate(date, 0, date.length());
+        int minuteOfDay = parseTime(time, 0, time.length());
+        if (epochDay == INVALID || minuteOfDay < 0) {
+            malformed.increment();
+            return INVALID;
+        }
+        return epochDay * 86400L + minuteOfDay * 60L;
+    }
+
+    /** Parses "HH:mm" to minute of day; returns -1 and counts it on failure. */
+    public int parseMinuteOfDay(CharSequence time) {
+        int minute = parseTime(time, 0, time.length());
+        if (minute < 0)
+            malformed.increment();
+        return minute;
+    }
+
+    // ---- parsing ----
+
+    /** "dd-MM-yyyy" (single-digit day/month tolerated) to epoch day, or INVALID. */
+    public static long parseDate(CharSequence s, int from, int to) {
+        while (from < to && s.charAt(from) == ' ')
+            from++;
+        while (to > from && s.charAt(to - 1) == ' ')
+            to--;
+
+        int p = from;
+        int day = 0;
+        int digits = 0;
+        for (; p < to && s.charAt(p) != '-'; p++, digits++) {
+            int d = s.charAt(p) - '0';
+            if (d < 0 || d > 9 || digits >= 2)
+                return INVALID;
+            day = day * 10 + d;
+        }
+        if (digits == 0 || p >= to)
+            return INVALID;
+        p++;
+
+        int month = 0;
+        digits = 0;
+        for (; p < to && s.charAt(p) != '-'; p++, digits++) {
+            int d = s.charAt(p) - '0';
+            if (d < 0 || d > 9 || digits >= 2)
+                return INVALID;
+            month = month * 10 + d;
+        }
+        if (digits == 0 || p >= to)
+            return INVALID;
+        p++;
+
+        int year = 0;
+        digits = 0;
+        for (; p < to; p++, digits++) {
+            int d = s.charAt(p) - '0';
+            if (d < 0 || d > 9 || digits >= 4)
+                return INVALID;
+            year = year * 10 + d;
+        }
+        if (digits != 4 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month))
+            return INVALID;
+
+        return epochDay(year, month, day);
+    }
+
+    /** "HH:mm" or "H:mm" to minute of day, or -1. */
+    public static int parseTime(CharSequence s, int from, int to) {
+        while (from < to && s.charAt(from) == ' ')
+            from++;
+        while (to > from && s.charAt(to - 1) == ' ')
+            to--;
+
+        int p = from;
+        int hour = 0;
+        int digits = 0;
+        for (; p < to && s.charAt(p) != ':'; p++, digits++) {
+            int d = s.charAt(p) - '0';
+            if (d < 0 || d > 9 || digits >= 2)
+                return -1;
+            hour = hour * 10 + d;
+        }
+        if (digits == 0 || p >= to)
+            return -1;
+        p++;
+
+        if (to - p != 2)
+            return -1;
+        int m1 = s.charAt(p) - '0';
+        int m2 = s.charAt(p + 1) - '0';
+        if (m1 < 0 || m1 > 5 || m2 < 0 || m2 > 9 || hour > 23)
+            return -1;
+        return hour * 60 + m1 * 10 + m2;
+    }
+
+    /** Ticket duration "7h45", "26h30" or "20h" to minutes, or -1 (not counted as malformed: the column is optional). */
+    public static int parseDurationMinutes(CharSequence s) {
+        int from = 0;
+        int to = s.length();
+        while (from < to && s.charAt(from) == ' ')
+            from++;
+        while (to > from && s.charAt(to - 1) == ' ')
+            to--;
+
+        int p = from;
+        int hours = 0;
+        int digits = 0;
+        for (; p < to && s.charAt(p) != 'h'; p++, digits++) {
+            int d = s.charAt(p) - '0';
+            if (d < 0 || d > 9 || digits >= 3)
+                return -1;
+            hours = hours * 10 + d;
+        }
+        if (digits == 0 || p >= to)
+            return -1;
+        p++;
+
+        int minutes = 0;
+        digits = 0;
+        for (; p < to; p++, digits++) {
+            int d = s.charAt(p) - '0';
+            if (d < 0 || d > 9 || digits >= 2)
+                return -1;
+            minutes = minutes * 10 + d;
+        }
+        if (minutes > 59)
+            return -1;
+        return hours * 60 + minutes;
+    }
+
+    /** Days since 1970-01-01 for a proleptic Gregorian date (Howard Hinnant's days_from_civil). */
+    public static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // ---- formatting ----
+
+    /** Writes "yyyy-MM-dd HH:mm:ss" (19 bytes) into dst at offset; years are assumed 0..9999. */
+    public static void format(long epochSecond, byte[] dst, int offset) {
+        long days = Math.floorDiv(epochSecond, 86400L);
+        int secondOfDay = (int) Math.floorMod(epochSecond, 86400L);
+
+        // Civil-from-days (Howard Hinnant)
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yoe + era * 400 + (month <= 2 ? 1 : 0));
+
+        int p = offset;
+        p = pair(dst, p, year / 100);
+        p = pair(dst, p, year % 100);
+        dst[p++] = '-';
+        p = pair(dst, p, month);
+        dst[p++] = '-';
+        p = pair(dst, p, day);
+        dst[p++] = ' ';
+        p = pair(dst, p, secondOfDay / 3600);
+        dst[p++] = ':';
+        p = pair(dst, p, secondOfDay / 60 % 60);
+        dst[p++] = ':';
+        pair(dst, p, secondOfDay % 60);
+    }
+
+    public static String format(long epochSecond) {
+        byte[] buf = new byte[FORMATTED_LENGTH];
+        format(epochSecond, buf, 0);
+        return new String(buf, java.nio.charset.StandardCharsets.ISO_8859_1);
+    }
+
+    private static int pair(byte[] dst, int p, int value) {
+        dst[p] = DIGIT_PAIRS[value * 2];
+        dst[p + 1] = DIGIT_PAIRS[value * 2 + 1];
+        return p + 2;
+    }
+}
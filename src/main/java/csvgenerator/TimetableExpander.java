@@ -0,0 +1,289 @@
+package csvgenerator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+/**
+ * Timetable expansion for trip.csv: every route gets its departures on every day of a
+ * date range, instead of one trip per scraped ticket.
+ * - Departure patterns are learned from ticket trips via observe(): the distinct departure
+ *   minutes of day per route, plus its mean duration and mean fare. Routes without tickets
+ *   use the global pattern (the GLOBAL_DEPARTURES most common departure minutes).
+ * - Each route owns a contiguous id block (prefix sum of days x departures), so ids do not
+ *   depend on the thread count and are stable across reruns with the same inputs.
+ * - Routes are split into partitions of roughly equal row count; workers write partitions
+ *   to part files with RowEncoder and the parts are appended to trip.csv in order, keeping
+ *   at most a few parts on disk. Staff assignment uses an RNG seeded per route, so the
+ *   output is byte-identical for a given seed regardless of the thread count.
+ */
+public final class TimetableExpander {
+
+    public static final long FIRST_ID = 1500L;
+    public static final int GLOBAL_DEPARTURES = 6;
+
+    private static final int MINUTES_PER_DAY = 1440;
+    private static final long FARE_STEP = 1000L * 100L; // fares are whole thousands of VND (FareCodec.SCALE = 2)
+    private static final String HEADER =
+            "id,route_id,vehicle_id,driver_id,attendant_id,trip_code,departure_time,arrival_time,base_fare,created_at,updated_at,is_deleted,deleted_at,deleted_by";
+
+    private final LongIntHashMap routeSlots = new LongIntHashMap(1024, -1);
+    private final List<BitSet> routeMinutes = new ArrayList<>();
+    private long[] durationSums = new long[256];
+    private long[] fareSums = new long[256];
+    private long[] observations = new long[256];
+    private final long[] globalMinuteCounts = new long[MINUTES_PER_DAY];
+    private long globalDurationSum;
+    private long globalFareSum;
+    private long globalObservations;
+
+    private final String[] vehicleIds;
+    private final String[] driverIds;
+    private final String[] attendantIds;
+    private final long seed;
+
+    public TimetableExpander(List<String> vehicleIds, List<String> driverIds, List<String> attendantIds, long seed) {
+        this.vehicleIds = vehicleIds.toArray(new String[0]);
+        this.driverIds = driverIds.toArray(new String[0]);
+        this.attendantIds = attendantIds.toArray(new String[0]);
+        this.seed = seed;
+    }
+
+    /** Learns from one ticket trip (epoch seconds, fare in FareCodec minor units). */
+    public void observe(long routeId, long departure, long arrival, long fare) {
+        int slot = routeSlots.get(routeId);
+        if (slot < 0) {
+            slot = routeMinutes.size();
+            routeMinutes.add(new BitSet(MINUTES_PER_DAY));
+            routeSlots.put(routeId, slot);
+            if (slot == observations.length) {
+                durationSums = Arrays.copyOf(durationSums, slot * 2);
+                fareSums = Arrays.copyOf(fareSums, slot * 2);
+                observations = Arrays.copyOf(observations, slot * 2);
+            }
+        }
+        int minute = (int) (Math.floorMod(departure, 86400L) / 60);
+        long duration = arrival - departure;
+        routeMinutes.get(slot).set(minute);
+        durationSums[slot] += duration;
+        fareSums[slot] += fare;
+        observations[slot]++;
+        globalMinuteCounts[minute]++;
+        globalDurationSum += duration;
+        globalFareSum += fare;
+        globalObservations++;
+    }
+
+    public int learnedRouteCount() {
+        return routeMinutes.size();
+    }
+
+    /**
+     * Writes trip.csv for routeIds over [fromEpochDay, toEpochDay] (inclusive) and returns the
+     * number of trips written. output is the file itself (CsvFiles.prepareTarget), compressed
+     * per CsvFiles.outputCodec; compressed parts concatenate like plain ones.
+     */
+    public long expand(Path output, long[] routeIds, long fromEpochDay, long toEpochDay, String createdAt,
+            int threads) throws Exception {
+        long start = System.nanoTime();
+        int days = days(fromEpochDay, toEpochDay);
+        Pattern[] patterns = patterns(routeIds);
+        long[] firstIds = firstIds(patterns, days);
+        long total = firstIds[routeIds.length] - FIRST_ID;
+
+        // Contiguous route ranges of roughly total / partitions rows each
+        int partitions = (int) Math.max(1, Math.min(routeIds.length, Math.max(1, threads) * 4L));
+        List<int[]> ranges = new ArrayList<>();
+        int from = 0;
+        for (int p = 1; p <= partitions && from < routeIds.length; p++) {
+            long boundary = FIRST_ID + total * p / partitions;
+            int to = from + 1;
+            while (to < routeIds.length && firstIds[to] < boundary)
+                to++;
+            if (p == partitions)
+                to = routeIds.length;
+            ranges.add(new int[] { from, to });
+            from = to;
+        }
+
+        try (RowEncoder header = new RowEncoder(output, ',', false, CsvFiles.outputCodec())) {
+            header.writeLine(HEADER);
+        }
+        CsvFiles.appendParts(output, ranges.size(), threads, partition -> writePartition(output, partition,
+                ranges.get(partition)[0], ranges.get(partition)[1], routeIds, patterns, firstIds, fromEpochDay, days,
+                createdAt));
+
+        printSummary(routeIds.length, days, total, start);
+        return total;
+    }
+
+    /**
+     * Sharded variant of expand: every route's trips go to the shard of its route_id, one
+     * task per shard. Routes are written in ascending id order and each route's trips by
+     * departure, so every shard is in (route_id, departure_time) order. Rows and ids are
+     * the ones expand would write.
+     */
+    public long expandSharded(ShardedTableWriter output, long[] routeIds, long fromEpochDay, long toEpochDay,
+            String createdAt, int threads) throws Exception {
+        long start = System.nanoTime();
+        int days = days(fromEpochDay, toEpochDay);
+        Pattern[] patterns = patterns(routeIds);
+        long[] firstIds = firstIds(patterns, days);
+        long total = firstIds[routeIds.length] - FIRST_ID;
+
+        int[] byId = IntStream.range(0, routeIds.length).boxed()
+                .sorted((a, b) -> Long.compare(routeIds[a], routeIds[b]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, output.shardCount())));
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int s = 0; s < output.shardCount(); s++) {
+                int shard = s;
+                tasks.add(pool.submit(() -> {
+                    RowEncoder out = output.shard(shard);
+                    for (int r : byId) {
+                        if (ShardedTableWriter.shardOf(Long.toString(routeIds[r]), output.shardCount()) != shard)
+                            continue;
+                        writeRoute(out, routeIds[r], patterns[r], firstIds[r], fromEpochDay, days, createdAt);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        printSummary(routeIds.length, days, total, start);
+        return total;
+    }
+
+    private int days(long fromEpochDay, long toEpochDay) throws IOException {
+        if (globalObservations == 0)
+            throw new IOException("No ticket trips to learn departure patterns from");
+        if (toEpochDay < fromEpochDay)
+            throw new IllegalArgumentException("Timetable end date is before start date");
+        return (int) (toEpochDay - fromEpochDay + 1);
+    }
+
+    private Pattern[] patterns(long[] routeIds) {
+        Pattern global = globalPattern();
+        Pattern[] patterns = new Pattern[routeIds.length];
+        for (int r = 0; r < routeIds.length; r++) {
+            int slot = routeSlots.get(routeIds[r]);
+            patterns[r] = slot < 0 ? global : routePattern(slot);
+        }
+        return patterns;
+    }
+
+    // Each route's id block: prefix sums of days x departures, in routeIds order
+    private static long[] firstIds(Pattern[] patterns, int days) {
+        long[] firstIds = new long[patterns.length + 1];
+        firstIds[0] = FIRST_ID;
+        for (int r = 0; r < patterns.length; r++) {
+            firstIds[r + 1] = firstIds[r] + (long) days * patterns[r].minutes.length;
+        }
+        return firstIds;
+    }
+
+    private void printSummary(int routes, int days, long total, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(Locale.ROOT,
+                "Timetable: %d routes (%d with learned patterns) x %d days -> %d trips in %.1f s (%.0f trips/s)%n",
+                routes, learnedRouteCount(), days, total, seconds, total / Math.max(seconds, 1e-9));
+    }
+
+    private Path writePartition(Path output, int partition, int fromRoute, int toRoute, long[] routeIds,
+            Pattern[] patterns, long[] firstIds, long fromEpochDay, int days, String createdAt) throws IOException {
+        Path part = CsvFiles.partFile(output, partition);
+        try (RowEncoder out = new RowEncoder(part, ',', false, CsvFiles.outputCodec())) {
+            for (int r = fromRoute; r < toRoute; r++) {
+                writeRoute(out, routeIds[r], patterns[r], firstIds[r], fromEpochDay, days, createdAt);
+            }
+        }
+        return part;
+    }
+
+    private void writeRoute(RowEncoder out, long routeId, Pattern pattern, long firstId, long fromEpochDay, int days,
+            String createdAt) throws IOException {
+        SplittableRandom random = new SplittableRandom(Hash64.mix(seed, routeId));
+        long id = firstId;
+        for (int day = 0; day < days; day++) {
+            long dayStart = (fromEpochDay + day) * 86400L;
+            for (int minute : pattern.minutes) {
+                long departure = dayStart + minute * 60L;
+                out.appendLong(id)
+                        .appendLong(routeId)
+                        .appendString(pick(vehicleIds, random))
+                        .appendString(pick(driverIds, random))
+                        .appendString(pick(attendantIds, random))
+                        .appendPaddedLong(TripStore.TRIP_CODE_PREFIX, id, TripStore.TRIP_CODE_DIGITS)
+                        .appendTimestamp(departure)
+                        .appendTimestamp(departure + pattern.durationSeconds)
+                        .appendDecimal(pattern.fare, FareCodec.SCALE)
+                        .appendString(createdAt)
+                        .appendEmpty() // updated_at
+                        .appendString("false") // is_deleted
+                        .appendEmpty() // deleted_at
+                        .appendEmpty() // deleted_by
+                        .endRow();
+                id++;
+            }
+        }
+    }
+
+    private Pattern routePattern(int slot) {
+        BitSet minutes = routeMinutes.get(slot);
+        return new Pattern(minutes.stream().toArray(), Math.max(60L, durationSums[slot] / observations[slot]),
+                roundFare(fareSums[slot] / observations[slot]));
+    }
+
+    private Pattern globalPattern() {
+        // Most common departure minutes over all tickets, emitted in time order
+        Integer[] byCount = new Integer[MINUTES_PER_DAY];
+        for (int m = 0; m < MINUTES_PER_DAY; m++)
+            byCount[m] = m;
+        Arrays.sort(byCount, (a, b) -> Long.compare(globalMinuteCounts[b], globalMinuteCounts[a]));
+        int n = 0;
+        while (n < GLOBAL_DEPARTURES && globalMinuteCounts[byCount[n]] > 0)
+            n++;
+        int[] minutes = new int[n];
+        for (int i = 0; i < n; i++)
+            minutes[i] = byCount[i];
+        Arrays.sort(minutes);
+        return new Pattern(minutes, Math.max(60L, globalDurationSum / globalObservations),
+                roundFare(globalFareSum / globalObservations));
+    }
+
+    private static long roundFare(long meanFare) {
+        return (meanFare + FARE_STEP / 2) / FARE_STEP * FARE_STEP;
+    }
+
+    private static String pick(String[] ids, SplittableRandom random) {
+        return ids.length == 0 ? "" : ids[random.nextInt(ids.length)];
+    }
+
+    private static final class Pattern {
+        final int[] minutes; // departure minutes of day, ascending
+        final long durationSeconds;
+        final long fare; // FareCodec minor units
+
+        Pattern(int[] minutes, long durationSeconds, long fare) {
+            this.minutes = minutes;
+            this.durationSeconds = durationSeconds;
+            this.fare = fare;
+        }
+    }
+}
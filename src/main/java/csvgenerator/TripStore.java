@@ -0,0 +1,350 @@
+package csvgenerator;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Struct-of-arrays store for generated trips: one primitive column per trip.csv field
+ * instead of one object (and five Strings) per trip.
+ * - route / vehicle / driver / attendant are int codes into the StringDictionary of each
+ *   column, so every ID string is held once however many trips use it;
+ * - trip codes are the number of "TRIP%06d";
+ * - departure / arrival are epoch seconds (TimestampCodec), fares minor units (FareCodec).
+ * 50M trips take about 44 bytes each. Not thread-safe.
+ */
+public final class TripStore {
+
+    /** trip_code is TRIP_CODE_PREFIX followed by the code zero-padded to TRIP_CODE_DIGITS ("TRIP000042"). */
+    public static final String TRIP_CODE_PREFIX = "TRIP";
+    public static final int TRIP_CODE_DIGITS = 6;
+
+    private static final int DEPARTURE_BITS = 34; // departure offsets in sort keys: ~544 years of seconds
+
+    private final StringDictionary routes = new StringDictionary();
+    private final StringDictionary vehicles = new StringDictionary();
+    private final StringDictionary drivers = new StringDictionary();
+    private final StringDictionary attendants = new StringDictionary();
+
+    private int[] route;
+    private int[] vehicle;
+    private int[] driver;
+    private int[] attendant;
+    private int[] tripCode;
+    private long[] departure;
+    private long[] arrival;
+    private long[] fare;
+    private int size;
+
+    public TripStore(int expectedTrips) {
+        allocate(Math.max(16, expectedTrips));
+    }
+
+    /** Appends a trip and returns its index. The int arguments are dictionary codes. */
+    public int add(int routeCode, int vehicleCode, int driverCode, int attendantCode, int code,
+            long departureTime, long arrivalTime, long baseFare) {
+        if (size == route.length)
+            allocate(route.length + (route.length >> 1));
+        route[size] = routeCode;
+        vehicle[size] = vehicleCode;
+        driver[size] = driverCode;
+        attendant[size] = attendantCode;
+        tripCode[size] = code;
+        departure[size] = departureTime;
+        arrival[size] = arrivalTime;
+        fare[size] = baseFare;
+        return size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public StringDictionary routes() {
+        return routes;
+    }
+
+    public StringDictionary vehicles() {
+        return vehicles;
+    }
+
+    public StringDictionary drivers() {
+        return drivers;
+    }
+
+    public StringDictionary attendants() {
+        return attendants;
+    }
+
+    public int route(int trip) {
+        return route[trip];
+    }
+
+    public int vehicle(int trip) {
+        return vehicle[trip];
+    }
+
+    public int driver(int trip) {
+        return driver[trip];
+    }
+
+    public int attendant(int trip) {
+        return attendant[trip];
+    }
+
+    public int tripCode(int trip) {
+        return tripCode[trip];
+    }
+
+    public long departure(int trip) {
+        return departure[trip];
+    }
+
+    public long arrival(int trip) {
+        return arrival[trip];
+    }
+
+    public long fare(int trip) {
+        return fare[trip];
+    }
+
+    /** Writes the dictionaries and all trips (RunCheckpoint state). */
+    public void writeTo(DataOutputStream out) throws IOException {
+        for (StringDictionary dictionary : dictionaries()) {
+            out.writeInt(dictionary.size());
+            for (String value : dictionary.values()) {
+                out.writeUTF(value);
+            }
+        }
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(route[i]);
+            out.writeInt(vehicle[i]);
+            out.writeInt(driver[i]);
+            out.writeInt(attendant[i]);
+            out.writeInt(tripCode[i]);
+            out.writeLong(departure[i]);
+            out.writeLong(arrival[i]);
+            out.writeLong(fare[i]);
+        }
+    }
+
+    /**
+     * Reads what writeTo wrote into an empty store. Values already interned (reference data
+     * loaded before restoring) must have the codes they had when the store was written.
+     */
+    public void readFrom(DataInputStream in) throws IOException {
+        if (size != 0)
+            throw new IllegalStateException("TripStore already holds trips");
+        for (StringDictionary dictionary : dictionaries()) {
+            int count = in.readInt();
+            for (int code = 0; code < count; code++) {
+                if (dictionary.intern(in.readUTF()) != code)
+                    throw new IOException("Saved trip dictionary does not match the loaded IDs");
+            }
+        }
+        int count = in.readInt();
+        if (count > route.length)
+            allocate(count);
+        for (int i = 0; i < count; i++) {
+            add(in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readLong(), in.readLong(),
+                    in.readLong());
+        }
+    }
+
+    /** Inverse of appendPaddedLong(TRIP_CODE_PREFIX, code, TRIP_CODE_DIGITS), or -1 for codes it cannot produce. */
+    public static int parseTripCode(String value) {
+        int prefix = TRIP_CODE_PREFIX.length();
+        int digits = value.length() - prefix;
+        if (!value.startsWith(TRIP_CODE_PREFIX) || digits < TRIP_CODE_DIGITS || digits > 10)
+            return -1;
+        // Only the padding may be zeros: "TRIP0123456" is not how 123456 is written
+        if (digits > TRIP_CODE_DIGITS && value.charAt(prefix) == '0')
+            return -1;
+        long code = 0;
+        for (int i = prefix; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            code = code * 10 + (c - '0');
+        }
+        return code > Integer.MAX_VALUE ? -1 : (int) code;
+    }
+
+    /**
+     * Trips ordered by route id, then trip code: the order of the former
+     * "routeId|tripCode|departure" string keys. Trip codes are unique within a store, so
+     * (route, code) identifies a trip and the key packs into one long.
+     */
+    public Order orderByRouteAndCode() {
+        int[] rank = routeRanks();
+        long[] keys = new long[size];
+        int[] trips = new int[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = packKey(rank[route[i]], tripCode[i]);
+            trips[i] = i;
+        }
+        sort(keys, trips, 0, size - 1);
+        return new Order(keys, trips, rank);
+    }
+
+    /**
+     * Trip indexes ordered like the (route_id, departure_time) index of the trip table:
+     * numeric route id, then departure, then trip code. Used for sharded output.
+     */
+    public int[] orderByRouteIdAndDeparture() {
+        int[] rank = numericRouteRanks();
+        long minDeparture = Long.MAX_VALUE;
+        long maxDeparture = Long.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            minDeparture = Math.min(minDeparture, departure[i]);
+            maxDeparture = Math.max(maxDeparture, departure[i]);
+        }
+        if (size > 0 && maxDeparture - minDeparture >= 1L << DEPARTURE_BITS)
+            throw new IllegalStateException("Departure range too wide to sort");
+        long[] keys = new long[size];
+        int[] trips = new int[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = ((long) rank[route[i]] << DEPARTURE_BITS) | (departure[i] - minDeparture);
+            trips[i] = i;
+        }
+        sort(keys, trips, 0, size - 1);
+        // Same route and departure: by trip code
+        for (int start = 0; start < size; ) {
+            int end = start + 1;
+            while (end < size && keys[end] == keys[start])
+                end++;
+            for (int i = start + 1; i < end; i++) {
+                for (int j = i; j > start && tripCode[trips[j]] < tripCode[trips[j - 1]]; j--) {
+                    swap(keys, trips, j, j - 1);
+                }
+            }
+            start = end;
+        }
+        return trips;
+    }
+
+    /** Sorted view of a store; positions are 0..size-1. */
+    public static final class Order {
+        private final long[] keys;
+        private final int[] trips;
+        private final int[] routeRank;
+
+        private Order(long[] keys, int[] trips, int[] routeRank) {
+            this.keys = keys;
+            this.trips = trips;
+            this.routeRank = routeRank;
+        }
+
+        /** Trip index at a sorted position. */
+        public int trip(int position) {
+            return trips[position];
+        }
+
+        /** Sorted position of the trip with this route dictionary code and trip code, or -1. */
+        public int find(int routeCode, int code) {
+            int position = Arrays.binarySearch(keys, packKey(routeRank[routeCode], code));
+            return position < 0 ? -1 : position;
+        }
+    }
+
+    // Rank of each route code in the order of "id|" strings ('|' sorts after digits)
+    private int[] routeRanks() {
+        Integer[] codes = new Integer[routes.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = i;
+        }
+        Arrays.sort(codes, (a, b) -> (routes.get(a) + "|").compareTo(routes.get(b) + "|"));
+        int[] rank = new int[codes.length];
+        for (int r = 0; r < codes.length; r++) {
+            rank[codes[r]] = r;
+        }
+        return rank;
+    }
+
+    // Rank of each route code by numeric id; non-numeric ids sort after, by string
+    private int[] numericRouteRanks() {
+        Integer[] codes = new Integer[routes.size()];
+        long[] numeric = new long[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = i;
+            try {
+                numeric[i] = Long.parseLong(routes.get(i));
+            } catch (NumberFormatException e) {
+                numeric[i] = Long.MAX_VALUE;
+            }
+        }
+        Arrays.sort(codes, (a, b) -> numeric[a] != numeric[b] ? Long.compare(numeric[a], numeric[b])
+                : routes.get(a).compareTo(routes.get(b)));
+        int[] rank = new int[codes.length];
+        for (int r = 0; r < codes.length; r++) {
+            rank[codes[r]] = r;
+        }
+        return rank;
+    }
+
+    private static long packKey(int routeRank, int code) {
+        return ((long) routeRank << 32) | (code & 0xffffffffL);
+    }
+
+    // Quicksort of unique keys, permuting trips alongside; recurses into the smaller half
+    private static void sort(long[] keys, int[] trips, int lo, int hi) {
+        while (hi - lo > 16) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < keys[lo])
+                swap(keys, trips, mid, lo);
+            if (keys[hi] < keys[lo])
+                swap(keys, trips, hi, lo);
+            if (keys[hi] < keys[mid])
+                swap(keys, trips, hi, mid);
+            long pivot = keys[mid];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (keys[i] < pivot)
+                    i++;
+                while (keys[j] > pivot)
+                    j--;
+                if (i <= j)
+                    swap(keys, trips, i++, j--);
+            }
+            if (j - lo < hi - i) {
+                sort(keys, trips, lo, j);
+                lo = i;
+            } else {
+                sort(keys, trips, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && keys[j] < keys[j - 1]; j--) {
+                swap(keys, trips, j, j - 1);
+            }
+        }
+    }
+
+    private static void swap(long[] keys, int[] trips, int a, int b) {
+        long key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        int trip = trips[a];
+        trips[a] = trips[b];
+        trips[b] = trip;
+    }
+
+    private StringDictionary[] dictionaries() {
+        return new StringDictionary[] { routes, vehicles, drivers, attendants };
+    }
+
+    private void allocate(int capacity) {
+        route = route == null ? new int[capacity] : Arrays.copyOf(route, capacity);
+        vehicle = vehicle == null ? new int[capacity] : Arrays.copyOf(vehicle, capacity);
+        driver = driver == null ? new int[capacity] : Arrays.copyOf(driver, capacity);
+        attendant = attendant == null ? new int[capacity] : Arrays.copyOf(attendant, capacity);
+        tripCode = tripCode == null ? new int[capacity] : Arrays.copyOf(tripCode, capacity);
+        departure = departure == null ? new long[capacity] : Arrays.copyOf(departure, capacity);
+        arrival = arrival == null ? new long[capacity] : Arrays.copyOf(arrival, capacity);
+        fare = fare == null ? new long[capacity] : Arrays.copyOf(fare, capacity);
+    }
+}
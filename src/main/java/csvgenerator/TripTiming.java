@@ -0,0 +1,169 @@
+package csvgenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Trip timing engine.
+ * - Resolves an arrival clock time ("HH:mm" as minute of day) against a departure instant,
+ *   rolling over midnight (and over several days when a minimum duration is known), so
+ *   arrival is always after departure.
+ * - Keeps streaming per-route duration statistics (count/min/max/mean/variance, Welford)
+ *   in primitive arrays indexed through a LongIntHashMap.
+ * All instants are epoch seconds as produced by TimestampCodec.
+ */
+public final class TripTiming {
+
+    private static final long SECONDS_PER_DAY = 86400L;
+
+    private final LongIntHashMap routeSlots = new LongIntHashMap(1024, -1);
+    private long[] routeIds = new long[256];
+    private long[] counts = new long[256];
+    private long[] minDurations = new long[256];
+    private long[] maxDurations = new long[256];
+    private double[] means = new double[256];
+    private double[] m2s = new double[256];
+    private int routes;
+
+    private long resolved;
+    private long rolledOver;
+
+    /**
+     * Earliest instant at or after departure + minDurationSeconds whose time of day is
+     * arrivalMinuteOfDay. With minDurationSeconds = 0 an arrival clock time earlier than
+     * (or equal to) the departure clock time rolls over to the next day.
+     */
+    public static long arrivalAfter(long departure, int arrivalMinuteOfDay, long minDurationSeconds) {
+        long earliest = departure + Math.max(1L, minDurationSeconds);
+        long dayStart = Math.floorDiv(earliest, SECONDS_PER_DAY) * SECONDS_PER_DAY;
+        long candidate = dayStart + arrivalMinuteOfDay * 60L;
+        if (candidate < earliest) {
+            candidate += SECONDS_PER_DAY;
+        }
+        return candidate;
+    }
+
+    /** Resolves the arrival for a trip on the given route and records its duration. */
+    public long resolveArrival(long routeId, long departure, int arrivalMinuteOfDay) {
+        return resolveArrival(routeId, departure, arrivalMinuteOfDay, 0L);
+    }
+
+    public long resolveArrival(long routeId, long departure, int arrivalMinuteOfDay, long minDurationSeconds) {
+        long arrival = arrivalAfter(departure, arrivalMinuteOfDay, minDurationSeconds);
+        recordResolved(routeId, departure, arrival);
+        return arrival;
+    }
+
+    /** Counts a resolved trip and records its duration; also replays trips restored from a checkpoint. */
+    public void recordResolved(long routeId, long departure, long arrival) {
+        resolved++;
+        if (Math.floorDiv(arrival, SECONDS_PER_DAY) != Math.floorDiv(departure, SECONDS_PER_DAY)) {
+            rolledOver++;
+        }
+        record(routeId, arrival - departure);
+    }
+
+    /** Adds one observed duration (seconds) to the route's running statistics. */
+    public void record(long routeId, long durationSeconds) {
+        int slot = routeSlots.get(routeId);
+        if (slot < 0) {
+            slot = routes++;
+            ensureCapacity(routes);
+            routeSlots.put(routeId, slot);
+            routeIds[slot] = routeId;
+            minDurations[slot] = Long.MAX_VALUE;
+            maxDurations[slot] = Long.MIN_VALUE;
+        }
+        long n = ++counts[slot];
+        double delta = durationSeconds - means[slot];
+        means[slot] += delta / n;
+        m2s[slot] += delta * (durationSeconds - means[slot]);
+        if (durationSeconds < minDurations[slot])
+            minDurations[slot] = durationSeconds;
+        if (durationSeconds > maxDurations[slot])
+            maxDurations[slot] = durationSeconds;
+    }
+
+    /** Mean observed duration for the route in seconds, or -1 if none was recorded. */
+    public long typicalDuration(long routeId) {
+        int slot = routeSlots.get(routeId);
+        return slot < 0 ? -1L : Math.round(means[slot]);
+    }
+
+    public DurationStats stats(long routeId) {
+        int slot = routeSlots.get(routeId);
+        return slot < 0 ? null : statsAt(slot);
+    }
+
+    public List<DurationStats> allStats() {
+        List<DurationStats> all = new ArrayList<>(routes);
+        for (int slot = 0; slot < routes; slot++) {
+            all.add(statsAt(slot));
+        }
+        return all;
+    }
+
+    public long resolvedCount() {
+        return resolved;
+    }
+
+    public long rolledOverCount() {
+        return rolledOver;
+    }
+
+    public void printSummary() {
+        System.out.println("=== TRIP TIMING SUMMARY ===");
+        System.out.println("Trips timed: " + resolved);
+        System.out.println("Arrivals rolled past midnight: " + rolledOver);
+        System.out.println("Routes with duration stats: " + routes);
+        if (routes > 0) {
+            long shortest = Long.MAX_VALUE;
+            long longest = Long.MIN_VALUE;
+            for (int slot = 0; slot < routes; slot++) {
+                shortest = Math.min(shortest, minDurations[slot]);
+                longest = Math.max(longest, maxDurations[slot]);
+            }
+            System.out.printf(Locale.ROOT, "Shortest trip: %.1f h, longest trip: %.1f h%n",
+                    shortest / 3600.0, longest / 3600.0);
+        }
+    }
+
+    private DurationStats statsAt(int slot) {
+        double variance = counts[slot] > 1 ? m2s[slot] / (counts[slot] - 1) : 0.0;
+        return new DurationStats(routeIds[slot], counts[slot], minDurations[slot], maxDurations[slot],
+                means[slot], Math.sqrt(variance));
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= routeIds.length)
+            return;
+        int capacity = Math.max(required, routeIds.length * 2);
+        routeIds = Arrays.copyOf(routeIds, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        minDurations = Arrays.copyOf(minDurations, capacity);
+        maxDurations = Arrays.copyOf(maxDurations, capacity);
+        means = Arrays.copyOf(means, capacity);
+        m2s = Arrays.copyOf(m2s, capacity);
+    }
+
+    /** Immutable snapshot of one route's duration statistics (seconds). */
+    public static final class DurationStats {
+        public final long routeId;
+        public final long count;
+        public final long min;
+        public final long max;
+        public final double mean;
+        public final double stdDev;
+
+        DurationStats(long routeId, long count, long min, long max, double mean, double stdDev) {
+            this.routeId = routeId;
+            this.count = count;
+            this.min = min;
+            this.max = max;
+            this.mean = mean;
+            this.stdDev = stdDev;
+        }
+    }
+}
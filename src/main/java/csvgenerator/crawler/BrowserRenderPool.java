@@ -0,0 +1,204 @@
+package csvgenerator.crawler;
+
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.BrowserType;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Playwright;
+import com.microsoft.playwright.PlaywrightException;
+import com.microsoft.playwright.Route;
+import com.microsoft.playwright.TimeoutError;
+import com.microsoft.playwright.options.WaitUntilState;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Fixed pool of warm headless Chromium contexts for listing pages that are rendered by
+ * JavaScript. Crawl workers lease a slot, render one page and hand the slot back.
+ * - Playwright objects are not thread-safe, so every slot owns its own Playwright,
+ *   Browser and BrowserContext; the lease queue guarantees one thread per slot at a time.
+ * - Images, fonts, media and requests to analytics/ad hosts are aborted in the context's
+ *   route handler, so a render only loads documents, scripts and XHR.
+ * - A slot's context is replaced after MAX_RENDERS_PER_CONTEXT pages or after an error
+ *   (and its browser relaunched if it died), so long crawls do not accumulate state.
+ * The URL can be anything Chromium can open, including locally served HTML fixtures.
+ */
+public final class BrowserRenderPool implements AutoCloseable {
+
+    public static final List<String> DEFAULT_BLOCKED_HOSTS = List.of("google-analytics.com",
+            "googletagmanager.com", "doubleclick.net", "facebook.net", "facebook.com", "hotjar.com",
+            "clarity.ms");
+
+    private static final Set<String> BLOCKED_RESOURCE_TYPES = Set.of("image", "font", "media");
+    private static final int MAX_RENDERS_PER_CONTEXT = 200;
+
+    private final String userAgent;
+    private final double timeoutMillis;
+    private final List<String> blockedHosts;
+    private final List<Slot> slots = new ArrayList<>();
+    private final BlockingQueue<Slot> idle;
+
+    /** Launches size browsers up front; throws PlaywrightException if Chromium cannot start. */
+    public BrowserRenderPool(int size, String userAgent, long timeoutMillis, List<String> blockedHosts) {
+        this.userAgent = userAgent;
+        this.timeoutMillis = timeoutMillis;
+        this.blockedHosts = List.copyOf(blockedHosts);
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, size));
+        try {
+            for (int i = 0; i < Math.max(1, size); i++) {
+                Slot slot = new Slot();
+                slots.add(slot);
+                idle.add(slot);
+            }
+        } catch (PlaywrightException e) {
+            slots.forEach(Slot::close);
+            throw e;
+        }
+        System.out.println("Browser render pool ready: " + slots.size() + " contexts");
+    }
+
+    /**
+     * Renders url and returns the resulting DOM as HTML. When waitForSelector is set, waits
+     * (up to the timeout) for it to appear; a page where it never appears is returned as is.
+     */
+    public String render(String url, String waitForSelector) throws IOException, InterruptedException {
+        Slot slot = idle.take();
+        try {
+            return slot.render(url, waitForSelector);
+        } catch (PlaywrightException e) {
+            slot.recycle();
+            throw new IOException("Render failed for " + url + ": " + e.getMessage(), e);
+        } finally {
+            idle.put(slot);
+        }
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Waits for all leases to come back, then closes every browser. An interrupt does not cut
+     * the wait short (a render in flight keeps its browser); it is re-asserted afterwards.
+     */
+    @Override
+    public void close() {
+        boolean interrupted = false;
+        for (int closed = 0; closed < slots.size();) {
+            try {
+                idle.take().close();
+                closed++;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private void filter(Route route) {
+        String type = route.request().resourceType();
+        if (BLOCKED_RESOURCE_TYPES.contains(type) || isBlockedHost(route.request().url())) {
+            route.abort();
+        } else {
+            route.resume();
+        }
+    }
+
+    private boolean isBlockedHost(String url) {
+        String host;
+        try {
+            host = URI.create(url).getHost();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if (host == null)
+            return false;
+        host = host.toLowerCase(Locale.ROOT);
+        for (String blocked : blockedHosts) {
+            if (host.equals(blocked) || host.endsWith("." + blocked))
+                return true;
+        }
+        return false;
+    }
+
+    private final class Slot {
+        private final Playwright playwright;
+        private Browser browser;
+        private BrowserContext context;
+        private int renders;
+
+        Slot() {
+            playwright = Playwright.create();
+            try {
+                browser = launch();
+                context = newContext();
+            } catch (PlaywrightException e) {
+                playwright.close();
+                throw e;
+            }
+        }
+
+        String render(String url, String waitForSelector) {
+            if (renders >= MAX_RENDERS_PER_CONTEXT)
+                recycle();
+            renders++;
+            Page page = context.newPage();
+            try {
+                page.navigate(url, new Page.NavigateOptions().setWaitUntil(WaitUntilState.DOMCONTENTLOADED));
+                if (waitForSelector != null) {
+                    try {
+                        page.waitForSelector(waitForSelector);
+                    } catch (TimeoutError e) {
+                        // No matching element: the parser will find no rows on this page
+                    }
+                }
+                return page.content();
+            } finally {
+                page.close();
+            }
+        }
+
+        /** Fresh context (and browser, if it is gone); errors are left for the next render to report. */
+        void recycle() {
+            renders = 0;
+            try {
+                context.close();
+            } catch (PlaywrightException e) {
+                // Already closed with its browser
+            }
+            try {
+                if (!browser.isConnected())
+                    browser = launch();
+                context = newContext();
+            } catch (PlaywrightException e) {
+                System.err.println("Warning: could not recycle browser context: " + e.getMessage());
+            }
+        }
+
+        void close() {
+            try {
+                playwright.close(); // closes its browser and contexts
+            } catch (PlaywrightException e) {
+                System.err.println("Warning: error closing browser: " + e.getMessage());
+            }
+        }
+
+        private Browser launch() {
+            return playwright.chromium().launch(new BrowserType.LaunchOptions().setHeadless(true));
+        }
+
+        private BrowserContext newContext() {
+            BrowserContext created = browser.newContext(new Browser.NewContextOptions().setUserAgent(userAgent));
+            created.setDefaultTimeout(timeoutMillis);
+            created.route("**/*", BrowserRenderPool.this::filter);
+            return created;
+        }
+    }
+}
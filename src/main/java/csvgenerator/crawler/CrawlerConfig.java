@@ -0,0 +1,139 @@
+package csvgenerator.crawler;
+
+import csvgenerator.TicketSynthesizer.Format;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Crawler settings, read from a properties file (e.g. crawler.properties).
+ *
+ *   userAgent=data-fakker-crawler/1.0
+ *   threads=8                  # concurrent fetches
+ *   perHostConnections=4       # okhttp maxRequestsPerHost
+ *   minIntervalMillis=500      # per-host politeness delay (robots.txt Crawl-delay wins if larger)
+ *   maxPages=10000             # per format
+ *   timeoutSeconds=20
+ *   cacheDir=.crawl-cache      # enables incremental re-crawls (HttpPageCache); unset = full crawl
+ *   render=auto                # auto: render in BrowserRenderPool only pages whose static HTML has
+ *                              # no rows and no links (SPA shells); always; off
+ *   render.contexts=2          # warm browser contexts
+ *   render.timeoutSeconds=30
+ *   render.blockHosts=...      # extra hosts to block, besides the built-in analytics/ad hosts
+ *
+ *   benxe.seeds=https://host/ve-xe-khach?page=1, ...
+ *   benxe.links=a.route-link              # pages to follow (route listings)
+ *   benxe.next=a.pagination-next          # pagination
+ *   benxe.row=.ticket-item                # one ticket per matched element
+ *   benxe.field.company=.company-name     # one selector per output column; "selector@attr" reads an attribute
+ *   benxe.dateParam=date                  # query parameter used when no date selector matches
+ *
+ * Output columns are the TicketSynthesizer.Format headers, so the files match what
+ * MergedRouteProcessor and TripGenerator read. Missing "route" is built from fromStation /
+ * toStation (nhaxe: prefixed with "[company] "); "url" is the page URL.
+ */
+public final class CrawlerConfig {
+
+    private final Properties properties;
+
+    public CrawlerConfig(Properties properties) {
+        this.properties = properties;
+    }
+
+    public static CrawlerConfig load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return new CrawlerConfig(properties);
+    }
+
+    public String userAgent() {
+        return properties.getProperty("userAgent", "data-fakker-crawler/1.0");
+    }
+
+    public int threads() {
+        return intValue("threads", 8);
+    }
+
+    public int perHostConnections() {
+        return intValue("perHostConnections", 4);
+    }
+
+    public long minIntervalMillis() {
+        return intValue("minIntervalMillis", 500);
+    }
+
+    public int maxPages() {
+        return intValue("maxPages", 10000);
+    }
+
+    public int timeoutSeconds() {
+        return intValue("timeoutSeconds", 20);
+    }
+
+    /** Directory of the HttpPageCache index, or null when incremental crawling is off. */
+    public Path cacheDir() {
+        String value = properties.getProperty("cacheDir");
+        return value == null || value.isBlank() ? null : Path.of(value.trim());
+    }
+
+    /** "auto", "always" or "off". */
+    public String renderMode() {
+        String mode = properties.getProperty("render", "auto").trim().toLowerCase(Locale.ROOT);
+        if (!mode.equals("auto") && !mode.equals("always") && !mode.equals("off"))
+            throw new IllegalArgumentException("render must be auto, always or off: " + mode);
+        return mode;
+    }
+
+    public int renderContexts() {
+        return intValue("render.contexts", 2);
+    }
+
+    public long renderTimeoutMillis() {
+        return intValue("render.timeoutSeconds", 30) * 1000L;
+    }
+
+    public List<String> renderBlockedHosts() {
+        List<String> hosts = new ArrayList<>(BrowserRenderPool.DEFAULT_BLOCKED_HOSTS);
+        for (String host : properties.getProperty("render.blockHosts", "").split(",")) {
+            if (!host.isBlank())
+                hosts.add(host.trim().toLowerCase(Locale.ROOT));
+        }
+        return hosts;
+    }
+
+    public List<String> seeds(Format format) {
+        List<String> seeds = new ArrayList<>();
+        for (String seed : properties.getProperty(prefix(format) + "seeds", "").split(",")) {
+            if (!seed.isBlank())
+                seeds.add(seed.trim());
+        }
+        return seeds;
+    }
+
+    /** Selector for a format-specific key such as "row", "links" or "field.price", or null. */
+    public String selector(Format format, String key) {
+        String value = properties.getProperty(prefix(format) + key);
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    public String dateParam(Format format) {
+        return properties.getProperty(prefix(format) + "dateParam", "date");
+    }
+
+    private static String prefix(Format format) {
+        return format.name().toLowerCase(Locale.ROOT) + ".";
+    }
+
+    private int intValue(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+}
@@ -0,0 +1,43 @@
+package csvgenerator.crawler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-host politeness: requests to one host are spaced at least the given interval apart,
+ * while different hosts proceed independently. Each host keeps the next free slot
+ * (System.nanoTime) in an AtomicLong; acquire() claims a slot with a CAS and sleeps until it.
+ */
+public final class HostRateLimiter {
+
+    private final ConcurrentHashMap<String, AtomicLong> nextSlot = new ConcurrentHashMap<>();
+
+    /** Blocks until a request to host may start, intervalMillis after the previous one. */
+    public void acquire(String host, long intervalMillis) throws InterruptedException {
+        AtomicLong next = slot(host);
+        long interval = TimeUnit.MILLISECONDS.toNanos(Math.max(0, intervalMillis));
+        while (true) {
+            long current = next.get();
+            long now = System.nanoTime();
+            long start = current == Long.MIN_VALUE ? now : Math.max(current, now);
+            if (next.compareAndSet(current, start + interval)) {
+                long wait = start - now;
+                if (wait > 0)
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                return;
+            }
+        }
+    }
+
+    /** Pushes the host's next slot out, e.g. after a 429 with Retry-After. */
+    public void backOff(String host, long millis) {
+        long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        slot(host).accumulateAndGet(until, (current, candidate) ->
+                current == Long.MIN_VALUE ? candidate : Math.max(current, candidate));
+    }
+
+    private AtomicLong slot(String host) {
+        return nextSlot.computeIfAbsent(host, h -> new AtomicLong(Long.MIN_VALUE));
+    }
+}
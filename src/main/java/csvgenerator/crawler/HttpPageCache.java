@@ -0,0 +1,181 @@
+package csvgenerator.crawler;
+
+import csvgenerator.Hash64;
+import csvgenerator.LongHashSet;
+import csvgenerator.TicketSynthesizer.Format;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk state for incremental re-crawls, kept in one gzip'd index file (crawl-index.bin).
+ * - Per page URL: ETag / Last-Modified validators for conditional requests, a Hash64 of the
+ *   body and the links found on it. A 304, or a 200 whose body hashes to the stored value,
+ *   counts as unchanged: the crawler follows the stored links without re-parsing the page.
+ * - Per ticket format: Hash64 of every row already written, so pages that did change only
+ *   append rows that are not yet in the ticket CSV.
+ * Bodies are not stored; the hash is enough to detect changes.
+ */
+public final class HttpPageCache {
+
+    public static final String INDEX_NAME = "crawl-index.bin";
+
+    private static final int MAGIC = 0x44464349; // "DFCI"
+    private static final int VERSION = 1;
+
+    /** Cached state of one page. */
+    public static final class Entry {
+        public final String etag;
+        public final String lastModified;
+        public final long contentHash;
+        public final List<String> links;
+
+        Entry(String etag, String lastModified, long contentHash, List<String> links) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentHash = contentHash;
+            this.links = links;
+        }
+    }
+
+    private final Path index;
+    private final Map<String, Entry> pages = new ConcurrentHashMap<>();
+    private final Map<Format, LongHashSet> rows = new EnumMap<>(Format.class);
+
+    private HttpPageCache(Path index) {
+        this.index = index;
+        for (Format format : Format.values()) {
+            rows.put(format, new LongHashSet());
+        }
+    }
+
+    /** Loads the index from dir, or starts empty when there is none. */
+    public static HttpPageCache open(Path dir) throws IOException {
+        HttpPageCache cache = new HttpPageCache(dir.resolve(INDEX_NAME));
+        if (!Files.exists(cache.index))
+            return cache;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(Files.newInputStream(cache.index))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                System.err.println("Warning: ignoring crawl index with unknown format: " + cache.index);
+                return cache;
+            }
+            int pageCount = in.readInt();
+            for (int i = 0; i < pageCount; i++) {
+                String url = in.readUTF();
+                String etag = in.readUTF();
+                String lastModified = in.readUTF();
+                long hash = in.readLong();
+                int linkCount = in.readInt();
+                List<String> links = new ArrayList<>(linkCount);
+                for (int l = 0; l < linkCount; l++) {
+                    links.add(in.readUTF());
+                }
+                cache.pages.put(url, new Entry(etag, lastModified, hash, links));
+            }
+            for (Format format : Format.values()) {
+                LongHashSet set = cache.rows.get(format);
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    set.add(in.readLong());
+                }
+            }
+        }
+        return cache;
+    }
+
+    public Entry get(String url) {
+        return pages.get(url);
+    }
+
+    public static long contentHash(String body) {
+        return Hash64.hash(body.getBytes(StandardCharsets.UTF_8), 0);
+    }
+
+    /** Records a fetched (changed) page; empty strings stand for missing validators. */
+    public void put(String url, String etag, String lastModified, long contentHash, List<String> links) {
+        pages.put(url, new Entry(nullToEmpty(etag), nullToEmpty(lastModified), contentHash, List.copyOf(links)));
+    }
+
+    /** Keeps the links and hash but refreshes validators (200 with identical content). */
+    public void revalidated(String url, Entry entry, String etag, String lastModified) {
+        put(url, etag == null ? entry.etag : etag, lastModified == null ? entry.lastModified : lastModified,
+                entry.contentHash, entry.links);
+    }
+
+    /** True if the row was not written before; the url column is ignored so re-listed tickets dedup. */
+    public boolean addRow(Format format, String[] row) {
+        long h = 0;
+        for (int i = 0; i < row.length - 1; i++) {
+            h = Hash64.mix(h, Hash64.hash(row[i].getBytes(StandardCharsets.UTF_8), 0));
+        }
+        LongHashSet set = rows.get(format);
+        synchronized (set) {
+            return set.add(h);
+        }
+    }
+
+    /** Forgets the written rows of a format when its ticket CSV is started from scratch (before crawling). */
+    public void resetRows(Format format) {
+        rows.put(format, new LongHashSet());
+    }
+
+    public int pageCount() {
+        return pages.size();
+    }
+
+    /** Writes the index atomically (temp file + move). */
+    public void save() throws IOException {
+        Files.createDirectories(index.toAbsolutePath().getParent());
+        Path tmp = index.resolveSibling(INDEX_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tmp))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(pages.size());
+            for (Map.Entry<String, Entry> page : pages.entrySet()) {
+                Entry entry = page.getValue();
+                out.writeUTF(page.getKey());
+                out.writeUTF(entry.etag);
+                out.writeUTF(entry.lastModified);
+                out.writeLong(entry.contentHash);
+                out.writeInt(entry.links.size());
+                for (String link : entry.links) {
+                    out.writeUTF(link);
+                }
+            }
+            for (Format format : Format.values()) {
+                LongHashSet set = rows.get(format);
+                synchronized (set) {
+                    out.writeInt(set.size());
+                    set.forEach(value -> {
+                        try {
+                            out.writeLong(value);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                }
+            }
+        }
+        Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,100 @@
+package csvgenerator.crawler;
+
+import crawlercommons.robots.BaseRobotRules;
+import crawlercommons.robots.SimpleRobotRulesParser;
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * robots.txt rules per origin (scheme://host:port), fetched once through the shared client
+ * and parsed with crawler-commons. Fetch failures follow crawler-commons' failedFetch()
+ * semantics (4xx: allow all, 5xx/network: defer, i.e. disallow for this run).
+ */
+public final class RobotsCache {
+
+    private final OkHttpClient client;
+    private final String userAgent;
+    private final HostRateLimiter limiter;
+    private final long intervalMillis;
+    private final SimpleRobotRulesParser parser = new SimpleRobotRulesParser();
+    private final ConcurrentHashMap<String, CompletableFuture<BaseRobotRules>> rules = new ConcurrentHashMap<>();
+
+    public RobotsCache(OkHttpClient client, String userAgent, HostRateLimiter limiter, long intervalMillis) {
+        this.client = client;
+        this.userAgent = userAgent;
+        this.limiter = limiter;
+        this.intervalMillis = intervalMillis;
+    }
+
+    public boolean isAllowed(String url) {
+        return rulesFor(url).isAllowed(url);
+    }
+
+    /** Crawl-delay from robots.txt in milliseconds, or 0 when unset. */
+    public long crawlDelayMillis(String url) {
+        long delay = rulesFor(url).getCrawlDelay();
+        return delay == BaseRobotRules.UNSET_CRAWL_DELAY ? 0L : Math.max(0L, delay);
+    }
+
+    private BaseRobotRules rulesFor(String url) {
+        String origin = origin(url);
+        CompletableFuture<BaseRobotRules> cached = rules.get(origin);
+        if (cached == null) {
+            CompletableFuture<BaseRobotRules> fetching = new CompletableFuture<>();
+            cached = rules.putIfAbsent(origin, fetching);
+            if (cached == null) {
+                // First caller for the origin fetches outside the map's bin lock (the fetch waits
+                // for the host's rate limit); later callers for the same origin wait on the future
+                cached = fetching;
+                try {
+                    fetching.complete(fetch(origin));
+                } catch (RuntimeException e) {
+                    rules.remove(origin, fetching);
+                    fetching.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        }
+        return cached.join();
+    }
+
+    private BaseRobotRules fetch(String origin) {
+        String robotsUrl = origin + "/robots.txt";
+        try {
+            limiter.acquire(URI.create(origin).getHost(), intervalMillis);
+            Request request = new Request.Builder().url(robotsUrl).header("User-Agent", userAgent).build();
+            try (Response response = client.newCall(request).execute()) {
+                ResponseBody body = response.body();
+                if (!response.isSuccessful() || body == null)
+                    return parser.failedFetch(response.code());
+                String contentType = body.contentType() == null ? "text/plain" : body.contentType().toString();
+                return parser.parseContent(robotsUrl, body.bytes(), contentType, List.of(robotName()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return parser.failedFetch(503);
+        } catch (IOException e) {
+            System.err.println("Warning: could not fetch " + robotsUrl + ": " + e.getMessage());
+            return parser.failedFetch(503);
+        }
+    }
+
+    /** Product token of the user agent ("data-fakker-crawler/1.0" -> "data-fakker-crawler"), lower-cased. */
+    private String robotName() {
+        int slash = userAgent.indexOf('/');
+        return (slash < 0 ? userAgent : userAgent.substring(0, slash)).trim().toLowerCase(Locale.ROOT);
+    }
+
+    static String origin(String url) {
+        URI uri = URI.create(url);
+        return uri.getScheme() + "://" + uri.getHost() + (uri.getPort() < 0 ? "" : ":" + uri.getPort());
+    }
+}
@@ -0,0 +1,320 @@
+package csvgenerator.crawler;
+
+import csvgenerator.CsvFiles;
+import csvgenerator.PipelineMetrics;
+import csvgenerator.RowEncoder;
+import csvgenerator.TicketSynthesizer.Format;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Crawls ticket listings into tickets_benxe.csv / tickets_nhaxe.csv, the inputs of
+ * MergedRouteProcessor and TripGenerator.
+ * - One OkHttpClient (shared connection pool, maxRequestsPerHost) serves all worker threads.
+ * - Every request passes robots.txt (RobotsCache) and the per-host HostRateLimiter, spaced
+ *   by max(minIntervalMillis, Crawl-delay); 429/5xx responses back the host off and retry.
+ * - Pages are parsed with TicketPageParser; followed links are deduplicated and capped at
+ *   maxPages per format. Rows are written with RowEncoder in the Format '|' layout.
+ * - Pages are parsed from the static HTML first; in render=auto mode only pages that yield
+ *   neither rows nor links (JavaScript shells) are rendered through a BrowserRenderPool,
+ *   which is started on first use. If Chromium cannot start, crawling continues static-only.
+ * - With cacheDir set, re-crawls are incremental (HttpPageCache): requests carry
+ *   If-None-Match / If-Modified-Since, unchanged pages (304 or same content hash) are not
+ *   re-parsed, and only rows not yet in the existing ticket CSV are appended to it. When
+ *   that CSV is missing or empty the crawl is a full one (no validators sent).
+ * Seeds and selectors come from CrawlerConfig, so the crawler can be pointed at any base
+ * URL (including a local stub server such as MockWebServer) without code changes.
+ *
+ * Usage: TicketCrawler [--config crawler.properties] [--format benxe|nhaxe|both] [--out .]
+ */
+public final class TicketCrawler {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final CrawlerConfig config;
+    private final OkHttpClient client;
+    private final HostRateLimiter limiter = new HostRateLimiter();
+    private final RobotsCache robots;
+    private final TicketPageParser parser;
+    private final HttpPageCache cache; // null: full crawl
+    private PipelineMetrics metrics;
+    private BrowserRenderPool renderPool; // started lazily, see renderPool()
+    private boolean renderUnavailable;
+
+    /** A fetched page; body is null for 304 Not Modified. */
+    private static final class Fetched {
+        final String body;
+        final String etag;
+        final String lastModified;
+
+        Fetched(String body, String etag, String lastModified) {
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    public TicketCrawler(CrawlerConfig config) throws IOException {
+        this(config, newClient(config), config.cacheDir() == null ? null : HttpPageCache.open(config.cacheDir()));
+    }
+
+    /** Uses the given client (e.g. one with interceptors) and page cache (null: full crawl). */
+    public TicketCrawler(CrawlerConfig config, OkHttpClient client, HttpPageCache cache) {
+        this.config = config;
+        this.client = client;
+        this.cache = cache;
+        this.robots = new RobotsCache(client, config.userAgent(), limiter, config.minIntervalMillis());
+        this.parser = new TicketPageParser(config);
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i], args[i + 1]);
+        }
+        String format = options.getOrDefault("--format", "both").toLowerCase(Locale.ROOT);
+        Path out = Paths.get(options.getOrDefault("--out", "."));
+        try {
+            TicketCrawler crawler = new TicketCrawler(
+                    CrawlerConfig.load(Paths.get(options.getOrDefault("--config", "crawler.properties"))));
+            try {
+                if (!format.equals("nhaxe"))
+                    crawler.crawl(Format.BENXE, out.resolve(Format.BENXE.fileName));
+                if (!format.equals("benxe"))
+                    crawler.crawl(Format.NHAXE, out.resolve(Format.NHAXE.fileName));
+            } finally {
+                crawler.shutdown();
+            }
+            System.out.println("Ticket crawl finished successfully!");
+        } catch (Exception e) {
+            System.err.println("Error crawling tickets: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    public static OkHttpClient newClient(CrawlerConfig config) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Math.max(1, config.threads()));
+        dispatcher.setMaxRequestsPerHost(Math.max(1, config.perHostConnections()));
+        return new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(Math.max(1, config.threads()), 5, TimeUnit.MINUTES))
+                .connectTimeout(config.timeoutSeconds(), TimeUnit.SECONDS)
+                .readTimeout(config.timeoutSeconds(), TimeUnit.SECONDS)
+                .callTimeout(config.timeoutSeconds() * 2L, TimeUnit.SECONDS)
+                .followRedirects(true)
+                .build();
+    }
+
+    /** Crawls one format from its seeds into output; returns the number of ticket rows written. */
+    public long crawl(Format format, Path output) throws Exception {
+        List<String> seeds = config.seeds(format);
+        if (seeds.isEmpty())
+            throw new IOException("No " + format.name().toLowerCase(Locale.ROOT) + ".seeds configured");
+
+        // Incremental runs append to the existing file; otherwise start over with a header
+        boolean append = cache != null && CsvFiles.size(output) > 0;
+        if (cache != null && !append)
+            cache.resetRows(format);
+        try (PipelineMetrics runMetrics = new PipelineMetrics("crawl-" + format.name().toLowerCase(Locale.ROOT));
+                RowEncoder out = append ? CsvFiles.appender(output, '|') : CsvFiles.encoder(output, '|')) {
+            metrics = runMetrics;
+            if (!append)
+                out.writeLine(format.header);
+
+            Set<String> seen = ConcurrentHashMap.newKeySet();
+            AtomicInteger budget = new AtomicInteger(config.maxPages());
+            ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, config.threads()));
+            AtomicInteger pending = new AtomicInteger(); // queued or running pages
+            try {
+                for (String seed : seeds) {
+                    enqueue(seed, format, append, out, seen, budget, pool, pending);
+                }
+                synchronized (pending) {
+                    while (pending.get() > 0)
+                        pending.wait();
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+
+            metrics.add(PipelineMetrics.ROWS_WRITTEN, out.rowCount());
+            metrics.add(PipelineMetrics.BYTES_WRITTEN, out.bytesWritten());
+            if (cache != null)
+                cache.save();
+            System.out.println("Crawled " + metrics.count("crawl.pages") + " pages (" + metrics.count("crawl.unchanged")
+                    + " unchanged), " + (append ? "appended " : "") + out.rowCount() + " "
+                    + format.name().toLowerCase(Locale.ROOT) + " tickets -> " + output);
+            return out.rowCount();
+        }
+    }
+
+    /** Closes pooled connections and dispatcher threads of the shared client. */
+    public void shutdown() throws InterruptedException {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+        synchronized (this) {
+            if (renderPool != null)
+                renderPool.close();
+            renderPool = null;
+        }
+    }
+
+    /**
+     * Fetches and parses url on the pool. Cached validators are only used when appending
+     * (incremental): a file started from scratch needs every page's rows, so nothing counts
+     * as unchanged and the page entries are rewritten from the fresh responses.
+     */
+    private void enqueue(String url, Format format, boolean incremental, RowEncoder out, Set<String> seen,
+            AtomicInteger budget, ExecutorService pool, AtomicInteger pending) {
+        if (!seen.add(url) || budget.getAndDecrement() <= 0)
+            return;
+        pending.incrementAndGet();
+        pool.execute(() -> {
+            try {
+                HttpPageCache.Entry cached = incremental ? cache.get(url) : null;
+                Fetched fetched = fetch(url, cached);
+                if (fetched == null)
+                    return;
+                metrics.increment("crawl.pages");
+                long contentHash = fetched.body == null ? 0L : HttpPageCache.contentHash(fetched.body);
+                if (cached != null && (fetched.body == null || contentHash == cached.contentHash)) {
+                    // Unchanged: keep crawling through the links seen last time, without parsing
+                    metrics.increment("crawl.unchanged");
+                    cache.revalidated(url, cached, fetched.etag, fetched.lastModified);
+                    for (String link : cached.links) {
+                        enqueue(link, format, incremental, out, seen, budget, pool, pending);
+                    }
+                    return;
+                }
+                if (fetched.body == null)
+                    return; // 304 without a cache entry: nothing to reuse
+
+                TicketPageParser.Page page = parse(fetched.body, url, format);
+                synchronized (out) {
+                    for (String[] row : page.rows) {
+                        if (cache != null && !cache.addRow(format, row))
+                            continue;
+                        for (String field : row) {
+                            out.appendString(field);
+                        }
+                        out.endRow();
+                    }
+                }
+                if (cache != null)
+                    cache.put(url, fetched.etag, fetched.lastModified, contentHash, page.links);
+                for (String link : page.links) {
+                    enqueue(link, format, incremental, out, seen, budget, pool, pending);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                metrics.increment("crawl.failed");
+                System.err.println("Warning: failed to crawl " + url + ": " + e.getMessage());
+            } finally {
+                if (pending.decrementAndGet() == 0) {
+                    synchronized (pending) {
+                        pending.notifyAll();
+                    }
+                }
+            }
+        });
+    }
+
+    /** Static parse, falling back to a browser render as configured by render=auto|always|off. */
+    private TicketPageParser.Page parse(String html, String url, Format format)
+            throws IOException, InterruptedException {
+        String mode = config.renderMode();
+        if (!mode.equals("always")) {
+            TicketPageParser.Page page = parser.parse(html, url, format);
+            if (mode.equals("off") || !page.rows.isEmpty() || !page.links.isEmpty())
+                return page;
+        }
+        BrowserRenderPool pool = renderPool();
+        if (pool == null)
+            return parser.parse(html, url, format);
+        // The browser requests the page again, so it counts against the host's rate limit
+        limiter.acquire(URI.create(url).getHost(), Math.max(config.minIntervalMillis(), robots.crawlDelayMillis(url)));
+        metrics.increment("crawl.rendered");
+        return parser.parse(pool.render(url, config.selector(format, "row")), url, format);
+    }
+
+    private synchronized BrowserRenderPool renderPool() {
+        if (renderPool == null && !renderUnavailable) {
+            try {
+                renderPool = new BrowserRenderPool(config.renderContexts(), config.userAgent(),
+                        config.renderTimeoutMillis(), config.renderBlockedHosts());
+            } catch (RuntimeException e) {
+                renderUnavailable = true;
+                System.err.println("Warning: browser rendering unavailable, using static HTML only: " + e.getMessage());
+            }
+        }
+        return renderPool;
+    }
+
+    /**
+     * The page (body null for 304 when cached validators were sent), or null when robots.txt
+     * disallows it or the server keeps failing.
+     */
+    private Fetched fetch(String url, HttpPageCache.Entry cached) throws IOException, InterruptedException {
+        if (!robots.isAllowed(url)) {
+            metrics.increment("crawl.robots_disallowed");
+            return null;
+        }
+        String host = URI.create(url).getHost();
+        long interval = Math.max(config.minIntervalMillis(), robots.crawlDelayMillis(url));
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            limiter.acquire(host, interval);
+            Request.Builder request = new Request.Builder().url(url).header("User-Agent", config.userAgent());
+            if (cached != null && !cached.etag.isEmpty())
+                request.header("If-None-Match", cached.etag);
+            if (cached != null && !cached.lastModified.isEmpty())
+                request.header("If-Modified-Since", cached.lastModified);
+            try (Response response = client.newCall(request.build()).execute()) {
+                ResponseBody body = response.body();
+                if (response.code() == 304 && cached != null)
+                    return new Fetched(null, response.header("ETag"), response.header("Last-Modified"));
+                if (response.isSuccessful() && body != null) {
+                    String html = body.string();
+                    metrics.add(PipelineMetrics.BYTES_READ, html.length());
+                    return new Fetched(html, response.header("ETag"), response.header("Last-Modified"));
+                }
+                int code = response.code();
+                metrics.increment("crawl.http_" + code);
+                if (code != 429 && code < 500)
+                    return null;
+                limiter.backOff(host, retryAfterMillis(response.header("Retry-After"), attempt));
+            }
+        }
+        return null;
+    }
+
+    private static long retryAfterMillis(String retryAfter, int attempt) {
+        if (retryAfter != null) {
+            try {
+                return Long.parseLong(retryAfter.trim()) * 1000L;
+            } catch (NumberFormatException e) {
+                // HTTP-date form: fall back to exponential backoff
+            }
+        }
+        return 1000L << attempt;
+    }
+}
@@ -0,0 +1,139 @@
+package csvgenerator.crawler;
+
+import csvgenerator.TicketSynthesizer.Format;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+/**
+ * Turns a fetched listing page into ticket rows (in Format header column order) and the
+ * links to crawl next, using the CSS selectors from CrawlerConfig.
+ * Field values are whitespace-normalized and never contain '|' or line breaks, so each
+ * row is one well-formed line of tickets_benxe.csv / tickets_nhaxe.csv.
+ */
+public final class TicketPageParser {
+
+    /** Rows and outgoing links of one page. */
+    public static final class Page {
+        public final List<String[]> rows = new ArrayList<>();
+        public final List<String> links = new ArrayList<>();
+    }
+
+    private final CrawlerConfig config;
+
+    public TicketPageParser(CrawlerConfig config) {
+        this.config = config;
+    }
+
+    public Page parse(String html, String url, Format format) {
+        Document document = Jsoup.parse(html, url);
+        Page page = new Page();
+        String[] columns = format.header.split("\\|");
+
+        String rowSelector = config.selector(format, "row");
+        if (rowSelector != null) {
+            for (Element element : document.select(rowSelector)) {
+                String[] row = new String[columns.length];
+                for (int c = 0; c < columns.length; c++) {
+                    row[c] = extract(element, config.selector(format, "field." + columns[c]));
+                }
+                if (complete(row, columns, format, url))
+                    page.rows.add(row);
+            }
+        }
+
+        for (String key : new String[] { "links", "next" }) {
+            String selector = config.selector(format, key);
+            if (selector == null)
+                continue;
+            for (Element link : document.select(selector)) {
+                String target = link.absUrl("href");
+                if (!target.isEmpty() && target.startsWith("http"))
+                    page.links.add(stripFragment(target));
+            }
+        }
+        return page;
+    }
+
+    /** Fills route, date and url when the page does not carry them; false if the row is unusable. */
+    private boolean complete(String[] row, String[] columns, Format format, String url) {
+        int route = indexOf(columns, "route");
+        int company = indexOf(columns, "company");
+        int from = indexOf(columns, "fromStation");
+        int to = indexOf(columns, "toStation");
+        int date = indexOf(columns, "date");
+        int source = indexOf(columns, "url");
+
+        if (row[route].isEmpty() && !row[from].isEmpty() && !row[to].isEmpty()) {
+            row[route] = row[from] + " đi " + row[to];
+            if (format == Format.NHAXE && !row[company].isEmpty())
+                row[route] = "[" + row[company] + "] " + row[route];
+        }
+        if (row[date].isEmpty())
+            row[date] = queryParameter(url, config.dateParam(format));
+        row[date] = normalizeDate(row[date]);
+        row[source] = clean(url);
+        // Processors need a route, times and a date; everything else may be empty
+        return !row[route].isEmpty() && !row[indexOf(columns, "fromHour")].isEmpty() && !row[date].isEmpty();
+    }
+
+    /** "selector" -> text, "selector@attr" -> attribute, "@attr" -> attribute of the row; "" when unset or not found. */
+    private static String extract(Element row, String selector) {
+        if (selector == null)
+            return "";
+        String attribute = null;
+        int at = selector.lastIndexOf('@');
+        if (at >= 0) {
+            attribute = selector.substring(at + 1);
+            selector = selector.substring(0, at);
+        }
+        Element match = selector.isEmpty() ? row : row.selectFirst(selector);
+        if (match == null)
+            return "";
+        return clean(attribute == null ? match.text() : match.attr(attribute));
+    }
+
+    /** Processors parse "dd-MM-yyyy"; ISO dates and '/' separators are converted. */
+    static String normalizeDate(String value) {
+        String date = value.trim().replace('/', '-');
+        if (date.matches("\\d{4}-\\d{1,2}-\\d{1,2}")) {
+            String[] parts = date.split("-");
+            return parts[2] + "-" + parts[1] + "-" + parts[0];
+        }
+        return date;
+    }
+
+    private static String queryParameter(String url, String name) {
+        String query = URI.create(url).getRawQuery();
+        if (query == null)
+            return "";
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name))
+                return clean(URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return "";
+    }
+
+    private static String clean(String value) {
+        return value.replace('|', '/').replaceAll("\\s+", " ").trim();
+    }
+
+    private static String stripFragment(String url) {
+        int hash = url.indexOf('#');
+        return hash < 0 ? url : url.substring(0, hash);
+    }
+
+    private static int indexOf(String[] columns, String name) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equals(name))
+                return i;
+        }
+        throw new IllegalStateException("Ticket format has no column " + name);
+    }
+}
@@ -0,0 +1,133 @@
+package csvgenerator.crawler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import csvgenerator.TicketSynthesizer.Format;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Renders a JavaScript-built listing (src/test/resources/crawler/benxe-rendered.html) in
+ * headless Chromium. Skipped when Playwright cannot start a browser on this machine.
+ */
+class BrowserRenderPoolTest {
+
+    private static final String PAGE_1 = "/ve-xe-khach?page=1&date=2025-06-22";
+    private static final String PAGE_2 = "/ve-xe-khach?page=2&date=2025-06-22"; // JavaScript shell
+    private static final String RENDERED_ROW = "Bến xe Giáp Bát đi Bến xe Miền Đông|Nhà xe Kumho|1.050.000đ|40"
+            + "|Giường nằm|19:15|Bến xe Giáp Bát|21:45|Bến xe Miền Đông|26h30||22-06-2025|";
+
+    private static BrowserRenderPool pool; // null: Chromium unavailable
+
+    private final MockWebServer server = new MockWebServer();
+    private final List<String> requested = new ArrayList<>(); // request paths in arrival order
+
+    @BeforeAll
+    static void startPool() {
+        try {
+            pool = new BrowserRenderPool(1, "data-fakker-crawler/1.0", 30_000, BrowserRenderPool.DEFAULT_BLOCKED_HOSTS);
+        } catch (RuntimeException e) {
+            System.err.println("Skipping browser tests: " + e.getMessage());
+        }
+    }
+
+    @AfterAll
+    static void closePool() {
+        if (pool != null)
+            pool.close();
+    }
+
+    @BeforeEach
+    void startServer() throws IOException {
+        assumeTrue(pool != null, "Chromium is not available");
+        Map<String, String> pages = Map.of(
+                "/robots.txt", CrawlerFixtures.resource("robots.txt"),
+                PAGE_1, CrawlerFixtures.resource("benxe-page1.html"),
+                PAGE_2, CrawlerFixtures.resource("benxe-rendered.html"));
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (!request.getPath().equals("/favicon.ico")) { // Chromium's own request, not the page's
+                    synchronized (requested) {
+                        requested.add(request.getPath());
+                    }
+                }
+                String body = pages.get(request.getPath());
+                if (body == null)
+                    return new MockResponse().setResponseCode(404);
+                return new MockResponse().setHeader("Content-Type",
+                        request.getPath().endsWith(".txt") ? "text/plain" : "text/html; charset=utf-8").setBody(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    void rendersScriptRowsWithoutImagesOrFonts() throws Exception {
+        String html = pool.render(url(PAGE_2), ".ticket-item");
+
+        TicketPageParser.Page page = new TicketPageParser(new CrawlerConfig(config()))
+                .parse(html, url(PAGE_2), Format.BENXE);
+        assertEquals(1, page.rows.size());
+        assertEquals(RENDERED_ROW + url(PAGE_2), String.join("|", page.rows.get(0)));
+        assertEquals(List.of(PAGE_2), requested(), "only the document is loaded; image and font are blocked");
+    }
+
+    @Test
+    void autoModeRendersOnlyPagesWithoutRowsOrLinks(@TempDir Path dir) throws Exception {
+        Path output = dir.resolve(Format.BENXE.fileName);
+        TicketCrawler crawler = new TicketCrawler(new CrawlerConfig(config()));
+        try {
+            assertEquals(3L, crawler.crawl(Format.BENXE, output));
+        } finally {
+            crawler.shutdown();
+        }
+
+        List<String> lines = CrawlerFixtures.lines(output);
+        assertEquals(4, lines.size());
+        assertEquals(RENDERED_ROW + url(PAGE_2), lines.get(3));
+        // Page 1 has static rows and is parsed as is; the shell is fetched once and rendered once
+        assertEquals(List.of("/robots.txt", PAGE_1, PAGE_2, PAGE_2), requested());
+        assertFalse(requested().stream().anyMatch(path -> path.startsWith("/assets/")));
+    }
+
+    /** The sample crawler.properties, seeded from the stub server, render=auto, no cache. */
+    private Properties config() throws IOException {
+        Properties properties = CrawlerFixtures.config(url(PAGE_1));
+        properties.setProperty("minIntervalMillis", "0");
+        properties.setProperty("render", "auto");
+        properties.setProperty("render.contexts", "1");
+        return properties;
+    }
+
+    private List<String> requested() {
+        synchronized (requested) {
+            return new ArrayList<>(requested);
+        }
+    }
+
+    private String url(String path) {
+        return server.url(path).toString();
+    }
+}
@@ -0,0 +1,53 @@
+package csvgenerator.crawler;
+
+import csvgenerator.CsvFiles;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/** Fixture pages (src/test/resources/crawler/), crawler configuration and output reading for the crawler tests. */
+final class CrawlerFixtures {
+
+    private CrawlerFixtures() {
+    }
+
+    /** The sample crawler.properties seeded with benxeSeed, single-threaded, without a cache. */
+    static Properties config(String benxeSeed) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(Paths.get("crawler.properties"), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        properties.remove("cacheDir");
+        properties.setProperty("benxe.seeds", benxeSeed);
+        properties.setProperty("threads", "1");
+        return properties;
+    }
+
+    /** A file under src/test/resources/crawler/. */
+    static String resource(String name) throws IOException {
+        try (InputStream in = CrawlerFixtures.class.getResourceAsStream("/crawler/" + name)) {
+            if (in == null)
+                throw new IOException("Missing test resource crawler/" + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /** Lines of a crawl output, header included. */
+    static List<String> lines(Path output) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = CsvFiles.reader(output)) {
+            String line;
+            while ((line = reader.readLine()) != null)
+                lines.add(line);
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,235 @@
+package csvgenerator.crawler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import csvgenerator.TicketSynthesizer.Format;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Crawls the fixture pages in src/test/resources/crawler/ from a local MockWebServer with
+ * the sample crawler.properties, pointed at the server through benxe.seeds.
+ */
+class TicketCrawlerTest {
+
+    private static final String PAGE_1 = "/ve-xe-khach?page=1&date=2025-06-22";
+    private static final String PAGE_2 = "/ve-xe-khach?page=2&date=2025-06-22";
+    private static final long MIN_INTERVAL_MILLIS = 300;
+    private static final String LAST_MODIFIED = "Sun, 22 Jun 2025 00:00:00 GMT";
+
+    /** One request as the stub server saw it. */
+    private record Hit(String path, String ifNoneMatch, String ifModifiedSince, int status, long nanos) {
+    }
+
+    private final MockWebServer server = new MockWebServer();
+    private final Map<String, String> pages = new ConcurrentHashMap<>();
+    private final List<Hit> hits = new ArrayList<>(); // requests in arrival order
+    private final AtomicInteger throttled = new AtomicInteger(); // 429s still to serve for PAGE_2
+
+    @BeforeEach
+    void startServer() throws IOException {
+        pages.put("/robots.txt", CrawlerFixtures.resource("robots.txt"));
+        pages.put(PAGE_1, CrawlerFixtures.resource("benxe-page1.html"));
+        pages.put(PAGE_2, CrawlerFixtures.resource("benxe-page2.html"));
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                MockResponse response = respond(request);
+                synchronized (hits) {
+                    hits.add(new Hit(request.getPath(), request.getHeader("If-None-Match"),
+                            request.getHeader("If-Modified-Since"), status(response), System.nanoTime()));
+                }
+                return response;
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    void writesTicketRowsInFormatLayout(@TempDir Path dir) throws Exception {
+        Path output = dir.resolve(Format.BENXE.fileName);
+        assertEquals(3L, crawl(output, null));
+
+        assertEquals(List.of(
+                Format.BENXE.header,
+                "Bến xe Miền Tây đi Bến xe Cà Mau|Nhà xe Phương Trang|350.000đ|36|Giường nằm|22:00|Bến xe Miền Tây"
+                        + "|05:45|Bến xe Cà Mau|7h45|Đón / trả tận nơi|22-06-2025|" + url(PAGE_1),
+                "Bến xe Miền Đông đi Bến xe Đà Lạt|Nhà xe Thành Bưởi|280.000đ|29|Limousine|06:30|Bến xe Miền Đông"
+                        + "|13:00|Bến xe Đà Lạt|6h30||22-06-2025|" + url(PAGE_1),
+                "Bến xe Giáp Bát đi Bến xe Miền Đông|Nhà xe Kumho|1.050.000đ|40|Giường nằm|19:15|Bến xe Giáp Bát"
+                        + "|21:45|Bến xe Miền Đông|26h30||22-06-2025|" + url(PAGE_2)),
+                CrawlerFixtures.lines(output));
+    }
+
+    @Test
+    void obeysRobotsAndRateLimits(@TempDir Path dir) throws Exception {
+        throttled.set(1);
+        crawl(dir.resolve(Format.BENXE.fileName), null);
+
+        List<Hit> seen = hits();
+        List<String> paths = seen.stream().map(Hit::path).toList();
+        assertEquals(List.of("/robots.txt", PAGE_1, PAGE_2, PAGE_2), paths);
+        assertFalse(paths.stream().anyMatch(path -> path.startsWith("/private/")), "robots.txt disallows /private/");
+
+        // Requests to the host are spaced by minIntervalMillis (minus timer slack) ...
+        for (int i = 1; i < seen.size(); i++) {
+            long gap = TimeUnit.NANOSECONDS.toMillis(seen.get(i).nanos() - seen.get(i - 1).nanos());
+            assertTrue(gap >= MIN_INTERVAL_MILLIS - 50, "request " + i + " came " + gap + " ms after the previous one");
+        }
+        // ... and the 429 pushes the retry out by its Retry-After
+        assertEquals(429, seen.get(2).status());
+        long retryGap = TimeUnit.NANOSECONDS.toMillis(seen.get(3).nanos() - seen.get(2).nanos());
+        assertTrue(retryGap >= 900, "retry came " + retryGap + " ms after the 429");
+    }
+
+    @Test
+    void recrawlRevalidatesAndAppendsOnlyNewRows(@TempDir Path dir) throws Exception {
+        Path output = dir.resolve(Format.BENXE.fileName);
+        Path cacheDir = dir.resolve("cache");
+        assertEquals(3L, crawl(output, cacheDir));
+        List<String> expected = new ArrayList<>(CrawlerFixtures.lines(output));
+        clearHits();
+
+        // One more ticket on page 2; page 1 is unchanged
+        pages.put(PAGE_2, pages.get(PAGE_2).replace("</ul>", """
+                  <li class="ticket-item" data-seats="34">
+                    <span class="company-name">Nhà xe Hoàng Long</span>
+                    <span class="price">320.000đ</span>
+                    <span class="seat-type">Giường nằm</span>
+                    <span class="from-hour">08:00</span>
+                    <span class="from-station">Bến xe Giáp Bát</span>
+                    <span class="to-hour">14:30</span>
+                    <span class="to-station">Bến xe Vinh</span>
+                    <span class="duration">6h30</span>
+                  </li>
+                </ul>"""));
+        assertEquals(1L, crawl(output, cacheDir));
+
+        expected.add("Bến xe Giáp Bát đi Bến xe Vinh|Nhà xe Hoàng Long|320.000đ|34|Giường nằm|08:00"
+                + "|Bến xe Giáp Bát|14:30|Bến xe Vinh|6h30||22-06-2025|" + url(PAGE_2));
+        assertEquals(expected, CrawlerFixtures.lines(output));
+
+        // Both pages were revalidated with the validators of the first crawl
+        Hit page1 = hit(PAGE_1);
+        assertEquals(304, page1.status());
+        assertTrue(page1.ifNoneMatch() != null && page1.ifNoneMatch().startsWith("\""), "page 1 sent no If-None-Match");
+        assertEquals(LAST_MODIFIED, page1.ifModifiedSince());
+        Hit page2 = hit(PAGE_2);
+        assertEquals(200, page2.status());
+        assertTrue(page2.ifNoneMatch() != null, "page 2 sent no If-None-Match");
+    }
+
+    @Test
+    void fullCrawlWhenOutputIsGone(@TempDir Path dir) throws Exception {
+        Path output = dir.resolve(Format.BENXE.fileName);
+        Path cacheDir = dir.resolve("cache");
+        assertEquals(3L, crawl(output, cacheDir));
+        List<String> first = CrawlerFixtures.lines(output);
+        Files.delete(output);
+        clearHits();
+
+        // The cache still knows every page, but a fresh file needs all of their rows again
+        assertEquals(3L, crawl(output, cacheDir));
+        assertEquals(first, CrawlerFixtures.lines(output));
+        for (Hit hit : hits()) {
+            assertNull(hit.ifNoneMatch(), hit.path() + " sent If-None-Match");
+            assertNull(hit.ifModifiedSince(), hit.path() + " sent If-Modified-Since");
+            assertEquals(200, hit.status(), hit.path());
+        }
+    }
+
+    /** Crawls benxe into output, incrementally when cacheDir is set. */
+    private long crawl(Path output, Path cacheDir) throws Exception {
+        Properties properties = config();
+        if (cacheDir != null)
+            properties.setProperty("cacheDir", cacheDir.toString());
+        TicketCrawler crawler = new TicketCrawler(new CrawlerConfig(properties));
+        try {
+            return crawler.crawl(Format.BENXE, output);
+        } finally {
+            crawler.shutdown();
+        }
+    }
+
+    /** The sample crawler.properties, seeded from the stub server, single-threaded, static-only, no cache. */
+    private Properties config() throws IOException {
+        Properties properties = CrawlerFixtures.config(url(PAGE_1));
+        properties.setProperty("minIntervalMillis", Long.toString(MIN_INTERVAL_MILLIS));
+        properties.setProperty("render", "off");
+        return properties;
+    }
+
+    /** Pages carry an ETag (content hash) and Last-Modified; a matching If-None-Match gets a 304. */
+    private MockResponse respond(RecordedRequest request) {
+        String path = request.getPath();
+        if (path.equals(PAGE_2) && throttled.getAndDecrement() > 0)
+            return new MockResponse().setResponseCode(429).setHeader("Retry-After", "1");
+        String body = pages.get(path);
+        if (body == null)
+            return new MockResponse().setResponseCode(404);
+        if (path.endsWith(".txt"))
+            return new MockResponse().setHeader("Content-Type", "text/plain").setBody(body);
+        String etag = "\"" + Long.toHexString(HttpPageCache.contentHash(body)) + "\"";
+        if (etag.equals(request.getHeader("If-None-Match")))
+            return new MockResponse().setResponseCode(304).setHeader("ETag", etag);
+        return new MockResponse()
+                .setHeader("Content-Type", "text/html; charset=utf-8")
+                .setHeader("ETag", etag)
+                .setHeader("Last-Modified", LAST_MODIFIED)
+                .setBody(body);
+    }
+
+    /** Code of a stub response ("HTTP/1.1 304 Not Modified" -> 304). */
+    private static int status(MockResponse response) {
+        String status = response.getStatus();
+        int space = status.indexOf(' ');
+        return Integer.parseInt(status.substring(space + 1, space + 4));
+    }
+
+    private List<Hit> hits() {
+        synchronized (hits) {
+            return new ArrayList<>(hits);
+        }
+    }
+
+    private void clearHits() {
+        synchronized (hits) {
+            hits.clear();
+        }
+    }
+
+    /** The single request for a page path. */
+    private Hit hit(String path) {
+        List<Hit> matching = hits().stream().filter(hit -> hit.path().equals(path)).toList();
+        assertEquals(1, matching.size(), path + " requests");
+        return matching.get(0);
+    }
+
+    private String url(String path) {
+        return server.url(path).toString();
+    }
+}